@@ -1,26 +1,51 @@
 package edu.nadn2tetris;
 
 import java.io.BufferedWriter;
-import java.io.FileInputStream;
-import java.io.FileNotFoundException;
 import java.io.IOException;
+import java.io.StringWriter;
+import java.io.Writer;
 import java.nio.file.Files;
 import java.nio.file.Path;
 import java.nio.file.Paths;
 import java.util.ArrayList;
+import java.util.BitSet;
+import java.util.EnumMap;
+import java.util.HashMap;
 import java.util.HashSet;
 import java.util.List;
+import java.util.Map;
 import java.util.Set;
+import java.util.TreeSet;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
 
 import edu.nadn2tetris.ast.AbstractSyntaxTree;
+import edu.nadn2tetris.ast.ClassTree;
 import edu.nadn2tetris.ast.processor.ByteCodeAstGenerator;
+import edu.nadn2tetris.ast.processor.CallGraphAstGenerator;
+import edu.nadn2tetris.ast.processor.ConstantFoldingAstGenerator;
+import edu.nadn2tetris.ast.processor.InliningAstGenerator;
+import edu.nadn2tetris.ast.processor.LivenessAstGenerator;
 import edu.nadn2tetris.ast.processor.SymbolTableAstGenerator;
 import edu.nadn2tetris.ast.processor.XmlTreeAstGenerator;
 import edu.nadn2tetris.ast.AstParser;
+import edu.nadn2tetris.ast.term.subroutine.SubroutineDeclarationTree;
+import edu.nadn2tetris.common.NameTable;
 import edu.nadn2tetris.conf.Flag;
+import edu.nadn2tetris.conf.OptimizationLevel;
+import edu.nadn2tetris.ir.IrBuilder;
+import edu.nadn2tetris.pass.PassManager;
+import edu.nadn2tetris.table.CallGraph;
+import edu.nadn2tetris.table.FileSymbolTable;
 import edu.nadn2tetris.tokenizer.JackTokenizer;
+import edu.nadn2tetris.tokenizer.TokenBuffer;
 import edu.nadn2tetris.tokenizer.TokensCompiler;
 import edu.nadn2tetris.utils.FileUtils;
+import edu.nadn2tetris.writer.AsmWriter;
+import edu.nadn2tetris.writer.CodeWriter;
+import edu.nadn2tetris.writer.PeepholeOptimizer;
 import edu.nadn2tetris.writer.VMWriter;
 
 public final class JackCompiler {
@@ -30,9 +55,13 @@ public final class JackCompiler {
             throw new IllegalArgumentException("Invalid arguments count: " + args.length);
         }
 
-        final Set<Flag> flags = new HashSet<>();
+        final Map<Flag, String> flags = new EnumMap<>(Flag.class);
         for (short i = 2; i < args.length; i++) {
-            flags.add(Flag.parse(args[i]));
+            final Flag flag = Flag.parse(args[i]);
+            if (flag.isValued() && i + 1 == args.length) {
+                throw new IllegalArgumentException("Value expected after " + args[i]);
+            }
+            flags.put(flag, flag.isValued() ? args[++i] : null);
         }
 
         final Path outDir = Paths.get(args[1]);
@@ -42,7 +71,7 @@ public final class JackCompiler {
                 Files.createDirectory(outDir);
             }
 
-            compile(sourceFiles, outDir, flags);
+            compile(Paths.get(args[0]), sourceFiles, outDir, flags);
         } catch (IOException e) {
             try {
                 FileUtils.removeDir(outDir);
@@ -70,53 +99,370 @@ public final class JackCompiler {
         return sourceFiles;
     }
 
-    private static void compile(List<Path> srcFiles, Path outDir, Set<Flag> flags) throws IOException {
+    private static void compile(Path srcPath, List<Path> srcFiles, Path outDir, Map<Flag, String> flags) throws IOException {
         if (srcFiles == null || srcFiles.isEmpty()) {
             return;
         }
 
-        for (Path src : srcFiles) {
-            final Path outFile = outDir.resolve(src.getFileName().toString().replace(".jack", flags.contains(Flag.GENERATE_CODE) ? ".vm" : ".xml"));
-            Files.deleteIfExists(outFile);
-            Files.createFile(outFile);
+        // ids are shared by all files, so names repeated across classes are interned once
+        final NameTable names = new NameTable();
+        final int jobs = Math.min(getJobs(flags), srcFiles.size());
+        final PassManager passes = new PassManager(OptimizationLevel.of(flags), flags.containsKey(Flag.TIME_PASSES));
+        compileFiles(srcPath, srcFiles, outDir, flags, names, jobs, passes);
+        if (flags.containsKey(Flag.TIME_PASSES)) {
+            System.err.print(passes.report());
+        }
+    }
+
+    private static void compileFiles(
+            Path srcPath,
+            List<Path> srcFiles,
+            Path outDir,
+            Map<Flag, String> flags,
+            NameTable names,
+            int jobs,
+            PassManager passes
+    ) throws IOException {
+        final boolean wholeProgram = flags.containsKey(Flag.TREE_SHAKING) || flags.containsKey(Flag.INLINE);
+        if (flags.containsKey(Flag.ASM)) {
+            compileAsm(srcPath, srcFiles, outDir, flags, names, jobs, passes, wholeProgram);
+            return;
+        }
+
+        if (wholeProgram && flags.containsKey(Flag.GENERATE_CODE)) {
+            compileProgram(srcFiles, flags, names, jobs, passes, (i, classTree, symbolTable) -> {
+                final Path outFile = outFile(srcFiles.get(i), outDir, flags);
+                Files.deleteIfExists(outFile);
+                if (classTree != null) {
+                    generateByteCode(classTree, symbolTable, codeWriter(outFile, passes), names, flags, passes);
+                }
+            });
+            return;
+        }
+
+        runAll(srcFiles, jobs, i -> compile(srcFiles.get(i), outDir, flags, names, passes));
+    }
 
-            //TODO: режимы взаимо исключающие
-            if (flags.contains(Flag.XML_MODE)) {
-                compileXml(src, outFile);
-                continue;
+    /**
+     * Every class is lowered to Hack assembly on its own, the program is the bootstrap followed by the classes
+     * in one {@code .asm} file named after the source directory. The program starts at Sys.init if there is
+     * a Sys class, otherwise at Main.main.
+     * <p>
+     * Every called function must be compiled with the program, so a program using the OS needs the OS classes
+     * among its sources. {@link Flag#OS_TRAPS} leaves the missing functions as undefined symbols for
+     * {@link edu.nadn2tetris.hack.HackEmulator}, such a program does not run on the Hack platform.
+     */
+    private static void compileAsm(
+            Path srcPath,
+            List<Path> srcFiles,
+            Path outDir,
+            Map<Flag, String> flags,
+            NameTable names,
+            int jobs,
+            PassManager passes,
+            boolean wholeProgram
+    ) throws IOException {
+        final StringWriter[] classes = new StringWriter[srcFiles.size()];
+        final AsmWriter[] asmWriters = new AsmWriter[srcFiles.size()];
+        final ClassEmitter emitter = (i, classTree, symbolTable) -> {
+            if (classTree != null) {
+                classes[i] = new StringWriter();
+                final AsmWriter asmWriter = new AsmWriter(classes[i], className(srcFiles.get(i)));
+                asmWriters[i] = asmWriter;
+                final CodeWriter writer = passes.level.hasTreePasses() ? new PeepholeOptimizer(asmWriter) : asmWriter;
+                generateByteCode(classTree, symbolTable, writer, names, flags, passes);
             }
+        };
+
+        if (wholeProgram) {
+            compileProgram(srcFiles, flags, names, jobs, passes, emitter);
+        } else {
+            runAll(srcFiles, jobs, i -> {
+                final ClassTree classTree = parse(srcFiles.get(i), names, passes);
+                emitter.emit(i, classTree, new SymbolTableAstGenerator(names).generate(classTree));
+            });
+        }
+
+        final boolean hasSys = srcFiles.stream().anyMatch(f -> className(f).equals("Sys"));
+        final String entry = hasSys ? "Sys.init" : "Main.main";
+        if (!flags.containsKey(Flag.OS_TRAPS)) {
+            checkLinked(asmWriters, entry);
+        }
 
-            if (flags.contains(Flag.TOKENS)) {
-                compileTokens(src, outFile);
-                continue;
+        final Path outFile = outDir.resolve(className(srcPath) + ".asm");
+        try (final Writer writer = Files.newBufferedWriter(outFile)) {
+            AsmWriter.writeBootstrap(writer, entry);
+            for (StringWriter classCode : classes) {
+                if (classCode != null) {
+                    writer.write(classCode.toString());
+                }
             }
+        }
+    }
 
-            if (flags.contains(Flag.GENERATE_CODE)) {
-                compileByteCode(src, outFile);
+    private static void checkLinked(AsmWriter[] asmWriters, String entry) {
+        final Set<String> defined = new HashSet<>();
+        final Set<String> called = new TreeSet<>();
+        called.add(entry);
+        for (AsmWriter asmWriter : asmWriters) {
+            if (asmWriter != null) {
+                defined.addAll(asmWriter.definedFunctions());
+                called.addAll(asmWriter.calledFunctions());
             }
         }
+
+        called.removeAll(defined);
+        if (!called.isEmpty()) {
+            throw new IllegalStateException(
+                    "Undefined functions " + called + ", add the OS classes to the sources or pass "
+                            + "--os-traps to run the program in the Hack emulator"
+            );
+        }
+    }
+
+    private static String className(Path src) {
+        final String fileName = src.toAbsolutePath().normalize().getFileName().toString();
+
+        return fileName.endsWith(".jack") ? fileName.substring(0, fileName.length() - ".jack".length()) : fileName;
+    }
+
+    /**
+     * Whole program mode: every class is parsed first, then calls are inlined across classes
+     * and only subroutines reachable from Main.main are emitted. A class left without subroutines gets no output file.
+     */
+    private static void compileProgram(
+            List<Path> srcFiles,
+            Map<Flag, String> flags,
+            NameTable names,
+            int jobs,
+            PassManager passes,
+            ClassEmitter emitter
+    ) throws IOException {
+        final ClassTree[] classTrees = new ClassTree[srcFiles.size()];
+        final FileSymbolTable[] symbolTables = new FileSymbolTable[srcFiles.size()];
+        final CallGraph[] callGraphs = new CallGraph[srcFiles.size()];
+        runAll(srcFiles, jobs, i -> {
+            classTrees[i] = parse(srcFiles.get(i), names, passes);
+            symbolTables[i] = new SymbolTableAstGenerator(names).generate(classTrees[i]);
+        });
+
+        if (flags.containsKey(Flag.INLINE)) {
+            final InliningAstGenerator.Candidates candidates = InliningAstGenerator.candidates(
+                    classTrees,
+                    symbolTables,
+                    names,
+                    getInlineBudget(flags)
+            );
+            runAll(srcFiles, jobs, i -> {
+                passes.run("inline", () -> new InliningAstGenerator(symbolTables[i], candidates, names).generate(classTrees[i]));
+                if (passes.level.hasTreePasses()) {
+                    passes.run("fold", () -> new ConstantFoldingAstGenerator().generate(classTrees[i]));
+                }
+            });
+        }
+
+        if (!flags.containsKey(Flag.TREE_SHAKING)) {
+            runAll(srcFiles, jobs, i -> emitter.emit(i, classTrees[i], symbolTables[i]));
+            return;
+        }
+
+        runAll(srcFiles, jobs, i -> callGraphs[i] = new CallGraphAstGenerator(symbolTables[i], names).generate(classTrees[i]));
+
+        final CallGraph program = new CallGraph();
+        for (CallGraph callGraph : callGraphs) {
+            program.addAll(callGraph);
+        }
+
+        final int mainId = names.qualify(names.intern("Main"), names.intern("main"));
+        if (!program.isDefined(mainId)) {
+            throw new IllegalStateException("Tree shaking needs Main.main");
+        }
+
+        final BitSet reachable = program.reachableFrom(mainId);
+        runAll(srcFiles, jobs, i -> {
+            final boolean hasCode = shake(classTrees[i], reachable, names);
+            emitter.emit(i, hasCode ? classTrees[i] : null, symbolTables[i]);
+        });
+    }
+
+    private static int getInlineBudget(Map<Flag, String> flags) {
+        final int budget = Integer.parseInt(flags.get(Flag.INLINE));
+        if (budget < 0) {
+            throw new IllegalArgumentException("Invalid inline budget: " + budget);
+        }
+
+        return budget;
+    }
+
+    /**
+     * Drops subroutines which are not reachable
+     *
+     * @return false if the class has no subroutines left
+     */
+    private static boolean shake(ClassTree classTree, BitSet reachable, NameTable names) {
+        if (classTree.blocks == null) {
+            return false;
+        }
+
+        classTree.blocks = classTree.blocks.stream()
+                .filter(block -> !(block instanceof SubroutineDeclarationTree subroutine)
+                        || reachable.get(names.qualify(classTree.classNameId, subroutine.nameId)))
+                .toList();
+
+        return classTree.blocks.stream().anyMatch(block -> block instanceof SubroutineDeclarationTree);
     }
 
-    private static void compileByteCode(Path src, Path outFile) throws IOException {
+    /**
+     * Runs the task for every file index on the given number of threads.
+     * Fails with the error of the first failed file in the order of files, whatever the number of threads,
+     * the files still running are cancelled.
+     */
+    private static void runAll(List<Path> srcFiles, int jobs, FileTask task) throws IOException {
+        if (jobs == 1) {
+            for (int i = 0; i < srcFiles.size(); i++) {
+                task.run(i);
+            }
+            return;
+        }
+
+        final ExecutorService executor = Executors.newFixedThreadPool(jobs);
+        try {
+            final List<Future<?>> results = new ArrayList<>(srcFiles.size());
+            for (int i = 0; i < srcFiles.size(); i++) {
+                final int index = i;
+                results.add(executor.submit(() -> {
+                    task.run(index);
+                    return null;
+                }));
+            }
+
+            // the files before a failed one have all succeeded, as they would have one by one
+            for (Future<?> result : results) {
+                try {
+                    result.get();
+                } catch (ExecutionException e) {
+                    final Throwable failure = e.getCause();
+                    if (failure instanceof IOException ioException) {
+                        throw ioException;
+                    }
+                    if (failure instanceof Error error) {
+                        throw error;
+                    }
+                    throw (RuntimeException) failure;
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                    throw new IllegalStateException("Compilation interrupted", e);
+                }
+            }
+        } finally {
+            executor.shutdownNow();
+        }
+    }
+
+    private static int getJobs(Map<Flag, String> flags) {
+        if (!flags.containsKey(Flag.JOBS)) {
+            return Runtime.getRuntime().availableProcessors();
+        }
+
+        final int jobs = Integer.parseInt(flags.get(Flag.JOBS));
+        if (jobs < 1) {
+            throw new IllegalArgumentException("Invalid jobs count: " + jobs);
+        }
+
+        return jobs;
+    }
+
+    /**
+     * Per file pipeline, shares nothing but the name table with other files
+     */
+    private static void compile(Path src, Path outDir, Map<Flag, String> flags, NameTable names, PassManager passes) throws IOException {
+        final Path outFile = outFile(src, outDir, flags);
+        Files.deleteIfExists(outFile);
+        Files.createFile(outFile);
+
+        //TODO: режимы взаимо исключающие
+        if (flags.containsKey(Flag.XML_MODE)) {
+            compileXml(src, outFile, names);
+            return;
+        }
+
+        if (flags.containsKey(Flag.TOKENS)) {
+            compileTokens(src, outFile, names);
+            return;
+        }
+
+        if (flags.containsKey(Flag.GENERATE_CODE)) {
+            compileByteCode(src, outFile, names, flags, passes);
+        }
+    }
+
+    private static Path outFile(Path src, Path outDir, Map<Flag, String> flags) {
+        return outDir.resolve(src.getFileName().toString().replace(".jack", flags.containsKey(Flag.GENERATE_CODE) ? ".vm" : ".xml"));
+    }
+
+    private static void compileByteCode(
+            Path src,
+            Path outFile,
+            NameTable names,
+            Map<Flag, String> flags,
+            PassManager passes
+    ) throws IOException {
+        final ClassTree classTree = parse(src, names, passes);
+        generateByteCode(classTree, new SymbolTableAstGenerator(names).generate(classTree), codeWriter(outFile, passes), names, flags, passes);
+    }
+
+    /**
+     * @return class tree with the tree level optimizations applied
+     */
+    private static ClassTree parse(Path src, NameTable names, PassManager passes) throws IOException {
         try (
                 final AstParser engine = new AstParser(
-                        new JackTokenizer(new FileInputStream(src.toFile()))
+                        lex(src, names)
                 )
         ) {
-            final AbstractSyntaxTree classTree = engine.compileClass();
-            try (final ByteCodeAstGenerator byteCodeGenerator = new ByteCodeAstGenerator(
-                    new SymbolTableAstGenerator().generate(classTree),
-                    new VMWriter(Files.newBufferedWriter(outFile))
-            )) {
-                byteCodeGenerator.generate(classTree);
-            }
+            final ClassTree classTree = (ClassTree) engine.compileClass();
+            passes.runAstPasses(classTree);
+
+            return classTree;
         }
     }
 
-    private static void compileXml(Path src, Path outDir) throws IOException {
+    private static void generateByteCode(
+            ClassTree classTree,
+            FileSymbolTable symbolTable,
+            CodeWriter codeWriter,
+            NameTable names,
+            Map<Flag, String> flags,
+            PassManager passes
+    ) throws IOException {
+        final Map<Integer, LivenessAstGenerator.LocalSlots> liveness = new HashMap<>();
+        if (passes.level.optimizesCode()) {
+            passes.run("liveness", () -> liveness.putAll(LivenessAstGenerator.ofClass(classTree, symbolTable, names)));
+        }
+
+        // functions go through the IR on their way to the writer
+        final CodeWriter irBuilder = new IrBuilder(codeWriter, passes.irPasses());
+        try (final ByteCodeAstGenerator byteCodeGenerator = new ByteCodeAstGenerator(
+                symbolTable,
+                irBuilder,
+                names,
+                flags,
+                liveness
+        )) {
+            passes.run("codegen", () -> byteCodeGenerator.generate(classTree));
+        }
+    }
+
+    private static CodeWriter codeWriter(Path outFile, PassManager passes) throws IOException {
+        final VMWriter vmWriter = new VMWriter(Files.newBufferedWriter(outFile));
+
+        return passes.level.hasTreePasses() ? new PeepholeOptimizer(vmWriter) : vmWriter;
+    }
+
+    private static void compileXml(Path src, Path outDir, NameTable names) throws IOException {
         try (
                 final AstParser engine = new AstParser(
-                        new JackTokenizer(new FileInputStream(src.toFile()))
+                        lex(src, names)
                 );
                 final BufferedWriter writer = Files.newBufferedWriter(outDir);
         ) {
@@ -125,14 +471,33 @@ public final class JackCompiler {
         }
     }
 
-    private static void compileTokens(Path src, Path outDir) throws IOException {
+    private static void compileTokens(Path src, Path outDir, NameTable names) throws IOException {
         try (
                 final TokensCompiler tokensCompiler = new TokensCompiler(
-                        new JackTokenizer(new FileInputStream(src.toFile()))
+                        lex(src, names)
                 );
                 final BufferedWriter writer = Files.newBufferedWriter(outDir);
         ) {
             writer.write(tokensCompiler.generate());
         }
     }
-}
\ No newline at end of file
+
+    @FunctionalInterface
+    private interface FileTask {
+        void run(int fileIndex) throws IOException;
+    }
+
+    /**
+     * Output of a generated class, the class tree is null if tree shaking left the class without code
+     */
+    @FunctionalInterface
+    private interface ClassEmitter {
+        void emit(int fileIndex, ClassTree classTree, FileSymbolTable symbolTable) throws IOException;
+    }
+
+    private static TokenBuffer lex(Path src, NameTable names) throws IOException {
+        try (final JackTokenizer tokenizer = JackTokenizer.map(src)) {
+            return TokenBuffer.of(tokenizer, names);
+        }
+    }
+}
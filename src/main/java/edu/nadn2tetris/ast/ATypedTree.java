@@ -3,6 +3,7 @@ package edu.nadn2tetris.ast;
 public abstract class ATypedTree extends AbstractSyntaxTree {
     public Type type;
     public String classNameType;
+    public int classNameTypeId = -1;
 
     protected ATypedTree(NodeKind nodeKind) {
         super(nodeKind);
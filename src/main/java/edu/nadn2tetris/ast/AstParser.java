@@ -3,10 +3,12 @@ package edu.nadn2tetris.ast;
 import java.io.Closeable;
 import java.io.IOException;
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.Collections;
 import java.util.List;
 
 import edu.nadn2tetris.ast.term.ATermSyntaxTree;
+import edu.nadn2tetris.ast.declaration.ADeclarationTree;
 import edu.nadn2tetris.ast.declaration.ClassVarDeclarationTree;
 import edu.nadn2tetris.ast.declaration.VarDeclarationTree;
 import edu.nadn2tetris.ast.statement.DoStatementTree;
@@ -28,62 +30,75 @@ import edu.nadn2tetris.ast.term.subroutine.SubroutineCallTree;
 import edu.nadn2tetris.common.Keyword;
 import edu.nadn2tetris.common.TokenType;
 import edu.nadn2tetris.tokenizer.JackTokenizer;
+import edu.nadn2tetris.tokenizer.TokenBuffer;
 
 /**
  * Creates AST tree
  */
 public final class AstParser implements Closeable {
+    private final TokenBuffer tokens;
     private final JackTokenizer tokenizer;
+    private int pos = -1; // current token
     private boolean hasBufferedToken;
 
     public AstParser(JackTokenizer tokenizer) {
+        this.tokens = TokenBuffer.of(tokenizer);
         this.tokenizer = tokenizer;
     }
 
+    /**
+     * Parses already lexed tokens, the same buffer may be parsed any number of times.
+     */
+    public AstParser(TokenBuffer tokens) {
+        this.tokens = tokens;
+        this.tokenizer = null;
+    }
+
     public AbstractSyntaxTree compileClass() {
         advance(); // to class
 
-        if (tokenizer.tokenType() != TokenType.KEYWORD || tokenizer.keyword() != Keyword.CLASS) {
-            throwUnexpectedToken(tokenizer);
+        if (tokenType() != TokenType.KEYWORD || keyword() != Keyword.CLASS) {
+            throwUnexpectedToken();
         }
         advance(); // skip class
 
         final ClassTree classTree = new ClassTree();
-        classTree.className = tokenizer.identifier();
+        classTree.className = identifier();
+        classTree.classNameId = nameId();
         classTree.blocks = new ArrayList<>();
         advance(); // skip className
 
         advance(); // skip {
         // empty class
-        while (tokenizer.hasMoreTokens()) {
-            if (!isClassBlock(tokenizer)) {
-                throwUnexpectedToken(tokenizer);
+        while (hasMoreTokens()) {
+            if (!isClassBlock()) {
+                throwUnexpectedToken();
             }
 
-            if (isClassVarDec(tokenizer.keyword())) {
+            if (isClassVarDec(keyword())) {
                 classTree.blocks.add(compileClassVarDec());
                 advance();
-            } else if (isSubroutineDec(tokenizer.keyword())) {
+            } else if (isSubroutineDec(keyword())) {
                 classTree.blocks.add(compileSubroutine());
                 advance();
             } else {
-                throwUnexpectedToken(tokenizer);
+                throwUnexpectedToken();
             }
         }
 
         return classTree;
     }
 
-    private static boolean isClassBlock(JackTokenizer tokenizer) {
-        if (tokenizer.tokenType() != TokenType.KEYWORD) {
+    private boolean isClassBlock() {
+        if (tokenType() != TokenType.KEYWORD) {
             return false;
         }
 
-        if (isSubroutineDec(tokenizer.keyword())) {
+        if (isSubroutineDec(keyword())) {
             return true;
         }
 
-        return isClassVarDec(tokenizer.keyword());
+        return isClassVarDec(keyword());
     }
 
     private static boolean isSubroutineDec(Keyword keyword) {
@@ -95,41 +110,44 @@ public final class AstParser implements Closeable {
     }
 
     private ClassVarDeclarationTree compileClassVarDec() {
-        if (tokenizer.tokenType() != TokenType.KEYWORD || !isClassVarDec(tokenizer.keyword())) {
-            throwUnexpectedToken(tokenizer);
+        if (tokenType() != TokenType.KEYWORD || !isClassVarDec(keyword())) {
+            throwUnexpectedToken();
         }
 
         final ClassVarDeclarationTree classVarDeclarationTree = new ClassVarDeclarationTree();
-        classVarDeclarationTree.declarationType = tokenizer.keyword() == Keyword.STATIC ? ClassVarDeclarationTree.DeclarationType.STATIC : ClassVarDeclarationTree.DeclarationType.FIELD;
+        classVarDeclarationTree.declarationType = keyword() == Keyword.STATIC ? ClassVarDeclarationTree.DeclarationType.STATIC : ClassVarDeclarationTree.DeclarationType.FIELD;
 
         advance(); // skip field or static
-        classVarDeclarationTree.type = getType(tokenizer);
+        classVarDeclarationTree.type = getType();
         if (classVarDeclarationTree.type == Type.CLASS) {
-            classVarDeclarationTree.classNameType = tokenizer.identifier();
+            classVarDeclarationTree.classNameType = identifier();
+            classVarDeclarationTree.classNameTypeId = nameId();
         }
 
         advance(); //skip type
-        classVarDeclarationTree.varNames = getVarNamesList();
+        compileVarNames(classVarDeclarationTree);
 
         return classVarDeclarationTree;
     }
 
     private SubroutineDeclarationTree compileSubroutine() {
-        if (!isSubroutineDec(tokenizer.keyword())) {
-            throwUnexpectedToken(tokenizer);
+        if (!isSubroutineDec(keyword())) {
+            throwUnexpectedToken();
         }
 
         final SubroutineDeclarationTree subroutineDeclarationTree = new SubroutineDeclarationTree();
-        subroutineDeclarationTree.subroutineType = getSubroutineDeclarationType(tokenizer.keyword());
+        subroutineDeclarationTree.subroutineType = getSubroutineDeclarationType(keyword());
 
         advance(); // skip constructor or method or function
-        subroutineDeclarationTree.type = getType(tokenizer);
+        subroutineDeclarationTree.type = getType();
         if (subroutineDeclarationTree.type == Type.CLASS) {
-            subroutineDeclarationTree.classNameType = tokenizer.identifier();
+            subroutineDeclarationTree.classNameType = identifier();
+            subroutineDeclarationTree.classNameTypeId = nameId();
         }
 
         advance(); // skip type
-        subroutineDeclarationTree.name = tokenizer.identifier();
+        subroutineDeclarationTree.name = identifier();
+        subroutineDeclarationTree.nameId = nameId();
 
         advance(); // skip name
         subroutineDeclarationTree.parameterList = compileParameterList();
@@ -149,20 +167,20 @@ public final class AstParser implements Closeable {
     }
 
     private SubroutineBodyTree compileSubroutineBody() {
-        if (tokenizer.tokenType() != TokenType.SYMBOL || tokenizer.symbol() != '{') {
-            throwUnexpectedToken(tokenizer);
+        if (tokenType() != TokenType.SYMBOL || symbol() != '{') {
+            throwUnexpectedToken();
         }
 
         advance(); // skip {
         // empty method
-        if (tokenizer.tokenType() == TokenType.SYMBOL && tokenizer.symbol() == '}') {
+        if (tokenType() == TokenType.SYMBOL && symbol() == '}') {
             return new SubroutineBodyTree(new ArrayList<>());
         }
 
         final SubroutineBodyTree subroutineBodyTree = new SubroutineBodyTree();
         subroutineBodyTree.nodes = new ArrayList<>();
         // var declarations on top
-        while (tokenizer.tokenType() == TokenType.KEYWORD && tokenizer.keyword() == Keyword.VAR) {
+        while (tokenType() == TokenType.KEYWORD && keyword() == Keyword.VAR) {
             subroutineBodyTree.nodes.add(compileVarDec());
             advance();
         }
@@ -174,28 +192,30 @@ public final class AstParser implements Closeable {
     }
 
     private List<ParameterTree> compileParameterList() {
-        if (tokenizer.tokenType() != TokenType.SYMBOL || tokenizer.symbol() != '(') {
-            throwUnexpectedToken(tokenizer);
+        if (tokenType() != TokenType.SYMBOL || symbol() != '(') {
+            throwUnexpectedToken();
         }
 
         final List<ParameterTree> parameterTrees = new ArrayList<>();
         advance(); // (
-        if (tokenizer.tokenType() == TokenType.SYMBOL && tokenizer.symbol() == ')') {
+        if (tokenType() == TokenType.SYMBOL && symbol() == ')') {
             return Collections.emptyList();
         } else {
             bufferToken();
         }
 
-        while (tokenizer.tokenType() != TokenType.SYMBOL || tokenizer.symbol() != ')') {
+        while (tokenType() != TokenType.SYMBOL || symbol() != ')') {
             advance(); // skip ( or ,
             ParameterTree parameterTree = new ParameterTree();
-            parameterTree.type = getType(tokenizer);
+            parameterTree.type = getType();
             if (parameterTree.type == Type.CLASS) {
-                parameterTree.classNameType = tokenizer.identifier();
+                parameterTree.classNameType = identifier();
+                parameterTree.classNameTypeId = nameId();
             }
 
             advance();
-            parameterTree.name = tokenizer.identifier();
+            parameterTree.name = identifier();
+            parameterTree.nameId = nameId();
             advance();
 
             parameterTrees.add(parameterTree);
@@ -205,51 +225,58 @@ public final class AstParser implements Closeable {
     }
 
     private VarDeclarationTree compileVarDec() {
-        if (tokenizer.tokenType() != TokenType.KEYWORD || tokenizer.keyword() != Keyword.VAR) {
-            throw new IllegalStateException("Unexpected token: " + tokenizer.tokenType());
+        if (tokenType() != TokenType.KEYWORD || keyword() != Keyword.VAR) {
+            throw new IllegalStateException("Unexpected token: " + tokenType());
         }
         advance(); // skip var
 
         final VarDeclarationTree varDeclarationTree = new VarDeclarationTree();
-        varDeclarationTree.type = getType(tokenizer);
-        varDeclarationTree.varNames = new ArrayList<>();
+        varDeclarationTree.type = getType();
 
         if (varDeclarationTree.type == Type.CLASS) {
-            varDeclarationTree.classNameType = tokenizer.identifier();
+            varDeclarationTree.classNameType = identifier();
+            varDeclarationTree.classNameTypeId = nameId();
         }
 
         advance();
-        varDeclarationTree.varNames.addAll(getVarNamesList());
+        compileVarNames(varDeclarationTree);
 
         return varDeclarationTree;
     }
 
-    private List<String> getVarNamesList() {
-        if (tokenizer.tokenType() != TokenType.IDENTIFIER) {
-            throw new IllegalStateException("Unexpected token: " + tokenizer.tokenType());
+    private void compileVarNames(ADeclarationTree declarationTree) {
+        if (tokenType() != TokenType.IDENTIFIER) {
+            throw new IllegalStateException("Unexpected token: " + tokenType());
         }
 
         final List<String> varNames = new ArrayList<>();
-        varNames.add(tokenizer.identifier());
+        int[] varNameIds = new int[4];
+        varNames.add(identifier());
+        varNameIds[0] = nameId();
         advance();
-        while (tokenizer.symbol() != ';') {
+        while (symbol() != ';') {
             advance(); // skip ,
-            varNames.add(tokenizer.identifier());
+            if (varNames.size() == varNameIds.length) {
+                varNameIds = Arrays.copyOf(varNameIds, varNameIds.length * 2);
+            }
+            varNameIds[varNames.size()] = nameId();
+            varNames.add(identifier());
             advance();
         }
 
-        return varNames;
+        declarationTree.varNames = varNames;
+        declarationTree.varNameIds = Arrays.copyOf(varNameIds, varNames.size());
     }
 
     private List<StatementTree> compileStatements() {
         // empty statements block
-        if (!isStatement(tokenizer)) {
+        if (!isStatement()) {
             bufferToken();
             return Collections.emptyList();
         }
 
         final List<StatementTree> statementTrees = new ArrayList<>();
-        while (isStatement(tokenizer)) {
+        while (isStatement()) {
             statementTrees.add(compileStatement());
             advance();
         }
@@ -259,34 +286,35 @@ public final class AstParser implements Closeable {
     }
 
     private StatementTree compileStatement() {
-        if (!isStatement(tokenizer)) {
-            throwUnexpectedToken(tokenizer);
+        if (!isStatement()) {
+            throwUnexpectedToken();
         }
 
-        return switch (tokenizer.keyword()) {
+        return switch (keyword()) {
             case LET -> compileLet();
             case IF -> compileIf();
             case WHILE -> compileWhile();
             case DO -> compileDo();
             case RETURN -> compileReturn();
-            default -> throw new IllegalStateException("Unsupported type " + tokenizer.keyword());
+            default -> throw new IllegalStateException("Unsupported type " + keyword());
         };
     }
 
     private LetStatementTree compileLet() {
-        if (tokenizer.tokenType() != TokenType.KEYWORD || tokenizer.keyword() != Keyword.LET) {
-            throwUnexpectedToken(tokenizer);
+        if (tokenType() != TokenType.KEYWORD || keyword() != Keyword.LET) {
+            throwUnexpectedToken();
         }
 
         advance(); // skip let
         final LetStatementTree letStatementTree = new LetStatementTree();
-        letStatementTree.identifierName = tokenizer.identifier();
+        letStatementTree.identifierName = identifier();
+        letStatementTree.identifierId = nameId();
 
         advance(); // skip identifier
-        final boolean array = tokenizer.symbol() == '[';
+        final boolean array = symbol() == '[';
         if (array) {
             advance(); // skip [
-            letStatementTree.arraySyntaxTree = new ArraySyntaxTree(letStatementTree.identifierName, compileExpression());
+            letStatementTree.arraySyntaxTree = new ArraySyntaxTree(letStatementTree.identifierName, letStatementTree.identifierId, compileExpression());
 
             advance(); // next
             advance(); // skip ]
@@ -300,8 +328,8 @@ public final class AstParser implements Closeable {
     }
 
     private IfStatementTree compileIf() {
-        if (tokenizer.tokenType() != TokenType.KEYWORD || tokenizer.keyword() != Keyword.IF) {
-            throwUnexpectedToken(tokenizer);
+        if (tokenType() != TokenType.KEYWORD || keyword() != Keyword.IF) {
+            throwUnexpectedToken();
         }
 
         advance(); // skip if
@@ -317,7 +345,7 @@ public final class AstParser implements Closeable {
         advance(); // to }
         advance(); // skip }
 
-        if (tokenizer.tokenType() != TokenType.KEYWORD || tokenizer.keyword() != Keyword.ELSE) {
+        if (tokenType() != TokenType.KEYWORD || keyword() != Keyword.ELSE) {
             bufferToken();
             return ifStatementTree;
         }
@@ -331,8 +359,8 @@ public final class AstParser implements Closeable {
     }
 
     private WhileStatementTree compileWhile() {
-        if (tokenizer.tokenType() != TokenType.KEYWORD || tokenizer.keyword() != Keyword.WHILE) {
-            throw new IllegalStateException("Unexpected keyword: " + tokenizer.keyword());
+        if (tokenType() != TokenType.KEYWORD || keyword() != Keyword.WHILE) {
+            throw new IllegalStateException("Unexpected keyword: " + keyword());
         }
 
         final WhileStatementTree whileStatementTree = new WhileStatementTree();
@@ -350,8 +378,8 @@ public final class AstParser implements Closeable {
     }
 
     private DoStatementTree compileDo() {
-        if (tokenizer.tokenType() != TokenType.KEYWORD || tokenizer.keyword() != Keyword.DO) {
-            throw new IllegalStateException("Unexpected keyword: " + tokenizer.keyword());
+        if (tokenType() != TokenType.KEYWORD || keyword() != Keyword.DO) {
+            throw new IllegalStateException("Unexpected keyword: " + keyword());
         }
 
         advance(); // skip DO
@@ -363,12 +391,12 @@ public final class AstParser implements Closeable {
     }
 
     private ReturnStatementTree compileReturn() {
-        if (tokenizer.tokenType() != TokenType.KEYWORD || tokenizer.keyword() != Keyword.RETURN) {
-            throw new IllegalStateException("Unexpected keyword: " + tokenizer.keyword());
+        if (tokenType() != TokenType.KEYWORD || keyword() != Keyword.RETURN) {
+            throw new IllegalStateException("Unexpected keyword: " + keyword());
         }
 
         advance(); // skip return
-        if (tokenizer.tokenType() == TokenType.SYMBOL && tokenizer.symbol() == ';') {
+        if (tokenType() == TokenType.SYMBOL && symbol() == ';') {
             return new ReturnStatementTree();
         }
 
@@ -396,7 +424,7 @@ public final class AstParser implements Closeable {
         }
 
         // term
-        if (tokenizer.tokenType() != TokenType.SYMBOL || !isOp(tokenizer.symbol())) {
+        if (tokenType() != TokenType.SYMBOL || !isOp(symbol())) {
             bufferToken();
             return term;
         }
@@ -411,7 +439,7 @@ public final class AstParser implements Closeable {
     }
 
     private ATermSyntaxTree compileTerm() {
-        final TokenType tokenType = tokenizer.tokenType();
+        final TokenType tokenType = tokenType();
         return switch (tokenType) {
             case IDENTIFIER -> compileTermIdentifier();
             case SYMBOL -> compileTermSymbol();
@@ -420,11 +448,11 @@ public final class AstParser implements Closeable {
     }
 
     private ATermSyntaxTree compileTermConstant() {
-        return switch (tokenizer.tokenType()) {
-            case INT_CONST -> new IntegerConstantTree(tokenizer.intVal());
-            case STRING_CONST -> new StringConstantTree(tokenizer.stringVal());
-            case KEYWORD -> new KeywordConstantTree(convert(tokenizer.keyword()));
-            default -> throw new IllegalStateException("Unexpected token " + tokenizer.tokenType());
+        return switch (tokenType()) {
+            case INT_CONST -> new IntegerConstantTree(intVal());
+            case STRING_CONST -> new StringConstantTree(stringVal());
+            case KEYWORD -> new KeywordConstantTree(convert(keyword()));
+            default -> throw new IllegalStateException("Unexpected token " + tokenType());
         };
     }
 
@@ -439,12 +467,12 @@ public final class AstParser implements Closeable {
     }
 
     private ATermSyntaxTree compileTermSymbol() {
-        if (isOp(tokenizer.symbol())) {
-            return new OperatorTree(convert(tokenizer.symbol()));
+        if (isOp(symbol())) {
+            return new OperatorTree(convert(symbol()));
         }
 
         // ( expression )
-        if (tokenizer.symbol() == '(') {
+        if (symbol() == '(') {
             advance();
             ATermSyntaxTree expressionTree = compileExpression();
             expressionTree.expression = true;
@@ -476,46 +504,47 @@ public final class AstParser implements Closeable {
     }
 
     private ATermSyntaxTree compileTermIdentifier() {
-        if (tokenizer.tokenType() != TokenType.IDENTIFIER) {
-            throw new IllegalStateException("Unexpected token " + tokenizer.tokenType());
+        if (tokenType() != TokenType.IDENTIFIER) {
+            throw new IllegalStateException("Unexpected token " + tokenType());
         }
 
-        final String identifier = tokenizer.identifier();
+        final String identifier = identifier();
+        final int identifierId = nameId();
 
         advance();
-        final boolean varName = tokenizer.tokenType() != TokenType.SYMBOL || tokenizer.symbol() == ';';
+        final boolean varName = tokenType() != TokenType.SYMBOL || symbol() == ';';
         if (varName) {
             bufferToken();
-            return new IdentifierTree(identifier);
+            return new IdentifierTree(identifier, identifierId);
         }
 
-        if (tokenizer.symbol() == '[') {
+        if (symbol() == '[') {
             advance(); // [
-            final ArraySyntaxTree arraySyntaxTree = new ArraySyntaxTree(identifier, compileExpression());
+            final ArraySyntaxTree arraySyntaxTree = new ArraySyntaxTree(identifier, identifierId, compileExpression());
             advance(); // ]
 
             return arraySyntaxTree;
         }
 
-        if (tokenizer.symbol() == '(') {
+        if (symbol() == '(') {
             final List<ATermSyntaxTree> expressionList = compileExpressionList();
 
-            return new SubroutineCallTree(identifier, expressionList);
+            return new SubroutineCallTree(identifier, identifierId, -1, identifierId, expressionList);
         }
 
-        if (tokenizer.symbol() == '.') {
-            String subroutineIdentifier = identifier + tokenizer.symbol();
+        if (symbol() == '.') {
             advance();
-            subroutineIdentifier += tokenizer.identifier();
+            final int subroutineId = nameId();
+            final int qualifiedId = tokens.names().qualify(identifierId, subroutineId);
 
             advance();
             final List<ATermSyntaxTree> expressionTrees = compileExpressionList();
 
-            return new SubroutineCallTree(subroutineIdentifier, expressionTrees);
+            return new SubroutineCallTree(tokens.names().name(qualifiedId), qualifiedId, identifierId, subroutineId, expressionTrees);
         }
 
         bufferToken();
-        return new IdentifierTree(identifier);
+        return new IdentifierTree(identifier, identifierId);
     }
 
     private SubroutineCallTree compileSubroutineCall() {
@@ -528,12 +557,12 @@ public final class AstParser implements Closeable {
     }
 
     private List<ATermSyntaxTree> compileExpressionList() {
-        if (tokenizer.tokenType() != TokenType.SYMBOL || tokenizer.symbol() == ')') {
-            throw new IllegalStateException("Unexpected token " + tokenizer.tokenType());
+        if (tokenType() != TokenType.SYMBOL || symbol() == ')') {
+            throw new IllegalStateException("Unexpected token " + tokenType());
         }
 
         advance(); // skip (
-        if (tokenizer.tokenType() == TokenType.SYMBOL && tokenizer.symbol() == ')') {
+        if (tokenType() == TokenType.SYMBOL && symbol() == ')') {
             return Collections.emptyList();
         }
 
@@ -541,7 +570,7 @@ public final class AstParser implements Closeable {
         expressionTreeList.add(compileExpression());
 
         advance(); // to , or )
-        while (tokenizer.tokenType() == TokenType.SYMBOL && tokenizer.symbol() == ',') {
+        while (tokenType() == TokenType.SYMBOL && symbol() == ',') {
             advance(); // skip ,
             expressionTreeList.add(compileExpression());
             advance(); // to , or )
@@ -550,14 +579,14 @@ public final class AstParser implements Closeable {
         return expressionTreeList;
     }
 
-    private static Type getType(JackTokenizer tokenizer) {
-        if (tokenizer.tokenType() == TokenType.KEYWORD) {
-            return switch (tokenizer.keyword()) {
+    private Type getType() {
+        if (tokenType() == TokenType.KEYWORD) {
+            return switch (keyword()) {
                 case INT -> Type.INTEGER;
                 case CHAR -> Type.CHAR;
                 case BOOLEAN -> Type.BOOLEAN;
                 case VOID -> Type.VOID;
-                default -> throw new IllegalStateException("Unexpected keyword: " + tokenizer.keyword());
+                default -> throw new IllegalStateException("Unexpected keyword: " + keyword());
             };
         }
 
@@ -574,36 +603,73 @@ public final class AstParser implements Closeable {
             return;
         }
 
-        tokenizer.advance();
+        if (!hasMoreTokens()) {
+            throw new IllegalStateException("End of file!");
+        }
+        pos++;
+    }
+
+    private boolean hasMoreTokens() {
+        return pos + 1 < tokens.size();
     }
 
-    private static boolean isStatement(JackTokenizer tokenizer) {
-        if (tokenizer.tokenType() != TokenType.KEYWORD) {
+    private TokenType tokenType() {
+        return tokens.tokenType(pos);
+    }
+
+    private Keyword keyword() {
+        return tokens.keyword(pos);
+    }
+
+    private char symbol() {
+        return tokens.symbol(pos);
+    }
+
+    private String identifier() {
+        return tokens.identifier(pos);
+    }
+
+    private int nameId() {
+        return tokens.nameId(pos);
+    }
+
+    private short intVal() {
+        return tokens.intVal(pos);
+    }
+
+    private String stringVal() {
+        return tokens.stringVal(pos);
+    }
+
+    private boolean isStatement() {
+        if (tokenType() != TokenType.KEYWORD) {
             return false;
         }
 
-        return switch (tokenizer.keyword()) {
+        return switch (keyword()) {
             case LET, RETURN, IF, WHILE, DO -> true;
             default -> false;
         };
     }
 
-    private static void throwUnexpectedToken(JackTokenizer tokenizer) {
-        throw new IllegalStateException("Unexpected token: " + getCurrentToken(tokenizer));
+    private void throwUnexpectedToken() {
+        throw new IllegalStateException("Unexpected token: " + getCurrentToken());
     }
 
-    private static String getCurrentToken(JackTokenizer tokenizer) {
-        return switch (tokenizer.tokenType()) {
-            case INT_CONST -> String.valueOf(tokenizer.intVal());
-            case SYMBOL -> String.valueOf(tokenizer.symbol());
-            case IDENTIFIER -> tokenizer.identifier();
-            case KEYWORD -> tokenizer.keyword().name();
-            case STRING_CONST -> tokenizer.stringVal();
+    private String getCurrentToken() {
+        return switch (tokenType()) {
+            case INT_CONST -> String.valueOf(intVal());
+            case SYMBOL -> String.valueOf(symbol());
+            case IDENTIFIER -> identifier();
+            case KEYWORD -> keyword().name();
+            case STRING_CONST -> stringVal();
         };
     }
 
     @Override
     public void close() throws IOException {
-        this.tokenizer.close();
+        if (tokenizer != null) {
+            tokenizer.close();
+        }
     }
 }
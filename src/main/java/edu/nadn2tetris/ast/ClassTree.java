@@ -5,6 +5,7 @@ import java.util.List;
 public final class ClassTree extends AbstractSyntaxTree {
     public List<AbstractSyntaxTree> blocks;
     public String className;
+    public int classNameId = -1;
 
     public ClassTree() {
         super(NodeKind.CLASS);
@@ -7,6 +7,7 @@ import edu.nadn2tetris.ast.NodeKind;
 
 public abstract class ADeclarationTree extends ATypedTree {
     public List<String> varNames;
+    public int[] varNameIds;
 
     protected ADeclarationTree(NodeKind nodeKind) {
         super(nodeKind);
@@ -2,12 +2,10 @@ package edu.nadn2tetris.ast.processor;
 
 import java.io.Closeable;
 import java.io.IOException;
+import java.util.Arrays;
 import java.util.HashMap;
-import java.util.HashSet;
 import java.util.List;
 import java.util.Map;
-import java.util.Set;
-import java.util.Stack;
 
 import edu.nadn2tetris.ast.AbstractSyntaxTree;
 import edu.nadn2tetris.ast.ClassTree;
@@ -28,22 +26,80 @@ import edu.nadn2tetris.ast.term.StringConstantTree;
 import edu.nadn2tetris.ast.term.subroutine.SubroutineBodyTree;
 import edu.nadn2tetris.ast.term.subroutine.SubroutineCallTree;
 import edu.nadn2tetris.ast.term.subroutine.SubroutineDeclarationTree;
+import edu.nadn2tetris.common.NameTable;
+import edu.nadn2tetris.conf.Flag;
+import edu.nadn2tetris.conf.OptimizationLevel;
 import edu.nadn2tetris.table.FileSymbolTable;
 import edu.nadn2tetris.table.IdentifierInfo;
 import edu.nadn2tetris.table.Kind;
+import edu.nadn2tetris.writer.CodeWriter;
 import edu.nadn2tetris.writer.Command;
 import edu.nadn2tetris.writer.Segment;
-import edu.nadn2tetris.writer.VMWriter;
 
 public final class ByteCodeAstGenerator implements AstGenerator<Boolean>, Closeable {
     private final FileSymbolTable symbolTable;
-    private final VMWriter vmWriter;
-    private final Map<String, Short> labelIndex = new HashMap<>();
-    private String className;
+    private final CodeWriter vmWriter;
+    private static final int NOT_REDUCIBLE = Integer.MIN_VALUE;
+    // frame state of an operation whose constant operand is reduced, see compileExpression
+    private static final int REDUCED = -1;
+
+    private final NameTable names;
+    private final boolean optimize;
+    private final int maxMultiplyChain; // longest inline replacement of Math.multiply, in VM instructions
+    private final boolean poolStrings;
+    // literal -> static slot, slots follow the class statics
+    private final Map<String, Short> stringPool = new HashMap<>();
+    private int classNameId;
+    // slots by qualified subroutine name id, subroutines missing here are analysed on the way
+    private final Map<Integer, LivenessAstGenerator.LocalSlots> liveness;
+    private LivenessAstGenerator.LocalSlots localSlots; // null if every local keeps its own slot
+    private int labelCount; // labels are numbered from 0 in every subroutine
+    private int tailCallEntry = -1; // label self tail calls jump to, -1 if the subroutine has none
+    private boolean method;
+    // local or argument array whose base pointer 1 holds under -O, null if unknown
+    private Segment thatSegment;
+    private short thatIndex;
+    private static final int TOUCHES_THAT = 1;
+    private static final int CALLS = 2;
+    private static final int MAX_SCAN_DEPTH = 64;
+    // compileCondition results
+    private static final int INVERTED = 1;
+    private static final int CANONICAL = 2;
+    // expression stack of compileExpression, reused by all expressions
+    private ATermSyntaxTree[] frames = new ATermSyntaxTree[32];
+    private int[] frameStates = new int[32];
+    private int frameCount;
+
+    public ByteCodeAstGenerator(FileSymbolTable symbolTable, CodeWriter vmWriter, NameTable names) {
+        this(symbolTable, vmWriter, names, Map.of());
+    }
+
+    /**
+     * @param flags {@link OptimizationLevel#O2} and above replace multiplication and division by constants
+     *              with inline code, {@link Flag#STRING_POOL} builds every string literal once
+     */
+    public ByteCodeAstGenerator(FileSymbolTable symbolTable, CodeWriter vmWriter, NameTable names, Map<Flag, String> flags) {
+        this(symbolTable, vmWriter, names, flags, Map.of());
+    }
 
-    public ByteCodeAstGenerator(FileSymbolTable symbolTable, VMWriter vmWriter) {
+    /**
+     * @param liveness local slots from {@link LivenessAstGenerator#ofClass}, used from {@link OptimizationLevel#O2}
+     */
+    public ByteCodeAstGenerator(
+            FileSymbolTable symbolTable,
+            CodeWriter vmWriter,
+            NameTable names,
+            Map<Flag, String> flags,
+            Map<Integer, LivenessAstGenerator.LocalSlots> liveness
+    ) {
         this.symbolTable = symbolTable;
         this.vmWriter = vmWriter;
+        this.names = names;
+        final OptimizationLevel level = OptimizationLevel.of(flags);
+        this.optimize = level.optimizesCode();
+        this.maxMultiplyChain = level.maxMultiplyChain();
+        this.poolStrings = flags.containsKey(Flag.STRING_POOL);
+        this.liveness = liveness;
     }
 
     @Override
@@ -66,7 +122,7 @@ public final class ByteCodeAstGenerator implements AstGenerator<Boolean>, Closea
             return;
         }
 
-        this.className = classNode.className;
+        this.classNameId = classNode.classNameId;
         classNode.blocks.stream()
                 .filter(n -> n.getNodeKind() == NodeKind.SUBROUTINE_DECLARATION)
                 .forEach(this::handleSyntaxTree);
@@ -75,11 +131,30 @@ public final class ByteCodeAstGenerator implements AstGenerator<Boolean>, Closea
     private void compileSubroutineDeclaration(AbstractSyntaxTree node) {
         final SubroutineDeclarationTree subroutineDeclarationTree = (SubroutineDeclarationTree) node;
 
-        final String methodName = className + "." + subroutineDeclarationTree.name;
-        vmWriter.writeFunction(methodName, symbolTable.getMethodVarCount(methodName));
-
+        final int methodId = names.qualify(classNameId, subroutineDeclarationTree.nameId);
         final SubroutineDeclarationTree.SubroutineType functionType = subroutineDeclarationTree.subroutineType;
-        if (functionType == SubroutineDeclarationTree.SubroutineType.METHOD) {
+        this.method = functionType == SubroutineDeclarationTree.SubroutineType.METHOD;
+        this.labelCount = 0;
+        this.tailCallEntry = -1;
+        this.thatSegment = null;
+        if (optimize) {
+            localSlots = liveness.get(methodId);
+            if (localSlots == null) {
+                localSlots = new LivenessAstGenerator(symbolTable, methodId).generate(subroutineDeclarationTree);
+            }
+            vmWriter.writeFunction(names.name(methodId), localSlots.count);
+
+            // a constructor call allocates a new object, so only functions and methods loop
+            if (functionType != SubroutineDeclarationTree.SubroutineType.CONSTRUCTOR
+                    && hasSelfTailCall(subroutineDeclarationTree, methodId)) {
+                tailCallEntry = newLabel();
+                writeLabel(tailCallEntry); // before the method prologue, which reloads this
+            }
+        } else {
+            vmWriter.writeFunction(names.name(methodId), symbolTable.getMethodVarCount(methodId));
+        }
+
+        if (method) {
             vmWriter.writePush(Segment.ARGUMENT, (short) 0);
             vmWriter.writePop(Segment.POINTER, (short) 0);
         }
@@ -89,74 +164,229 @@ public final class ByteCodeAstGenerator implements AstGenerator<Boolean>, Closea
             vmWriter.writePush(Segment.CONSTANT, symbolTable.getClassFieldsCount());
             vmWriter.writeCall("Memory.alloc", 1);
             vmWriter.writePop(Segment.POINTER, (short) 0);
-            writeConstructorBody(body);
+            writeConstructorBody(methodId, body);
         } else {
-            compileFunctionBody(methodName, body);
+            compileFunctionBody(methodId, body);
         }
     }
 
-    private void compileStatement(AbstractSyntaxTree node, String methodName) {
+    private void compileStatement(AbstractSyntaxTree node, int methodId) {
         switch (node.getNodeKind()) {
-            case LET_STATEMENT -> compileLet((LetStatementTree) node, methodName);
-            case DO_STATEMENT -> compileDo((DoStatementTree) node, methodName);
-            case IF_STATEMENT -> compileIfStatement((IfStatementTree) node, methodName);
-            case WHILE_STATEMENT -> compileWhileStatement((WhileStatementTree) node, methodName);
-            case RETURN_STATEMENT -> compileReturnStatement((ReturnStatementTree) node, methodName);
+            case LET_STATEMENT -> compileLet((LetStatementTree) node, methodId);
+            case DO_STATEMENT -> compileDo((DoStatementTree) node, methodId);
+            case IF_STATEMENT -> compileIfStatement((IfStatementTree) node, methodId);
+            case WHILE_STATEMENT -> compileWhileStatement((WhileStatementTree) node, methodId);
+            case RETURN_STATEMENT -> compileReturnStatement((ReturnStatementTree) node, methodId);
             default -> throw new IllegalStateException("Unexpected node kind: " + node.getNodeKind());
         }
     }
 
-    private void compileWhileStatement(WhileStatementTree node, String methodName) {
-        final String labelPrefix = methodName + "_while";
-        final short suffix = getLabelIndex(labelPrefix);
-
-        final String whileBodyStart = labelPrefix + "_start_" + suffix;
-        final String whileBodyEnd = labelPrefix + "_end_" + suffix;
-        final String conditionCheck = labelPrefix + "_check_" + suffix;
+    private void compileWhileStatement(WhileStatementTree node, int methodId) {
+        final int whileBodyStart = newLabel();
+        final int conditionCheck = newLabel();
+        if (optimize) {
+            compileRotatedWhile(node, methodId, whileBodyStart, conditionCheck);
+            return;
+        }
 
-        vmWriter.writeLabel(conditionCheck);
-        compileExpression(node.condition, methodName);
+        final int whileBodyEnd = newLabel();
+        writeLabel(conditionCheck);
+        compileExpression(node.condition, methodId);
         vmWriter.writeIf(whileBodyStart);
         vmWriter.writeGoto(whileBodyEnd);
 
-        vmWriter.writeLabel(whileBodyStart);
-        compileStatements(node.body, methodName);
+        writeLabel(whileBodyStart);
+        compileStatements(node.body, methodId);
         vmWriter.writeGoto(conditionCheck);
 
-        vmWriter.writeLabel(whileBodyEnd);
+        writeLabel(whileBodyEnd);
     }
 
-    private void compileIfStatement(IfStatementTree node, String methodName) {
-        final String labelPrefix = methodName + "_if";
-        final short ifSuffix = getLabelIndex(labelPrefix);
-        final String ifLabel = labelPrefix + "_" + ifSuffix;
+    /**
+     * The condition is tested at the bottom, an iteration costs the condition and a single if-goto:
+     * goto check, label start, body, label check, condition, if-goto start
+     */
+    private void compileRotatedWhile(WhileStatementTree node, int methodId, int whileBodyStart, int conditionCheck) {
+        final boolean endless = ConstantFoldingAstGenerator.isConstant(node.condition)
+                && ConstantFoldingAstGenerator.valueOf(node.condition) != 0;
+        if (!endless) {
+            vmWriter.writeGoto(conditionCheck);
+        }
+
+        writeLabel(whileBodyStart);
+        compileStatements(node.body, methodId);
+        if (endless) {
+            vmWriter.writeGoto(whileBodyStart);
+            return;
+        }
+
+        writeLabel(conditionCheck);
+        final int condition = compileCondition(node.condition, methodId);
+        if ((condition & INVERTED) != 0) {
+            writeFalse(condition);
+        }
+        vmWriter.writeIf(whileBodyStart);
+    }
+
+    /**
+     * Jump code for an {@code if}, the branch sense of the condition decides which body falls through:
+     * an inverted condition jumps over the if body to the else body or the end, otherwise an if without else
+     * jumps over its body on {@code not} of a canonical condition and into it for other values.
+     */
+    private void compileBranchingIf(IfStatementTree node, int methodId, int ifLabel, int endIfLabel) {
+        final int condition = compileCondition(node.condition, methodId);
+        final boolean inverted = (condition & INVERTED) != 0;
+        final boolean hasElse = node.elseBody != null && !node.elseBody.isEmpty();
+        if (!inverted && hasElse) {
+            vmWriter.writeIf(ifLabel);
+            compileStatements(node.elseBody, methodId);
+            vmWriter.writeGoto(endIfLabel);
+            writeLabel(ifLabel);
+            compileStatements(node.ifBody, methodId);
+            writeLabel(endIfLabel);
+            return;
+        }
+
+        if (!inverted && !hasElse && (condition & CANONICAL) == 0) {
+            vmWriter.writeIf(ifLabel);
+            vmWriter.writeGoto(endIfLabel);
+            writeLabel(ifLabel);
+            compileStatements(node.ifBody, methodId);
+            writeLabel(endIfLabel);
+            return;
+        }
+
+        if (!inverted) {
+            writeFalse(condition);
+        }
+
+        if (!hasElse) {
+            vmWriter.writeIf(endIfLabel);
+            compileStatements(node.ifBody, methodId);
+            writeLabel(endIfLabel);
+            return;
+        }
 
-        compileExpression(node.condition, methodName); // result on stack
         vmWriter.writeIf(ifLabel);
-        compileStatements(node.elseBody, methodName);
+        compileStatements(node.ifBody, methodId);
+        vmWriter.writeGoto(endIfLabel);
+        writeLabel(ifLabel);
+        compileStatements(node.elseBody, methodId);
+        writeLabel(endIfLabel);
+    }
+
+    /**
+     * Pushes the condition with {@code ~} and comparisons with 0 at its root folded into the branch sense.
+     * {@code ~c} is dropped only for canonical booleans (0 / -1), for other values {@code ~c} and {@code c} are both true.
+     *
+     * @return {@link #INVERTED} if the pushed value is true when the condition is false,
+     * {@link #CANONICAL} if the pushed value is 0 or -1
+     */
+    private int compileCondition(ATermSyntaxTree condition, int methodId) {
+        boolean inverted = false;
+        ATermSyntaxTree term = condition;
+        while (true) {
+            if (term instanceof OperatorTree operator && operator.value == OperatorTree.Op.NOT
+                    && operator.right == null && isCanonicalBoolean(operator.left)) {
+                term = operator.left;
+                inverted = !inverted;
+                continue;
+            }
+
+            // x = 0 is true exactly when x is false
+            if (term instanceof OperatorTree operator && operator.value == OperatorTree.Op.EQ) {
+                if (isZero(operator.right)) {
+                    term = operator.left;
+                    inverted = !inverted;
+                    continue;
+                }
+                if (isZero(operator.left)) {
+                    term = operator.right;
+                    inverted = !inverted;
+                    continue;
+                }
+            }
+
+            break;
+        }
+
+        compileExpression(term, methodId);
+
+        return (inverted ? INVERTED : 0) | (isCanonicalBoolean(term) ? CANONICAL : 0);
+    }
+
+    /**
+     * Replaces the pushed condition with true if it is false, {@code not} is enough for 0 / -1 only
+     */
+    private void writeFalse(int condition) {
+        if ((condition & CANONICAL) != 0) {
+            vmWriter.writeArithmetic(Command.NOT);
+            return;
+        }
+
+        vmWriter.writePush(Segment.CONSTANT, (short) 0);
+        vmWriter.writeArithmetic(Command.EQ);
+    }
+
+    private static boolean isZero(ATermSyntaxTree term) {
+        return ConstantFoldingAstGenerator.isConstant(term) && ConstantFoldingAstGenerator.valueOf(term) == 0;
+    }
+
+    private static boolean isCanonicalBoolean(ATermSyntaxTree term) {
+        if (term instanceof KeywordConstantTree keyword) {
+            return keyword.value == KeywordConstantTree.Keyword.TRUE || keyword.value == KeywordConstantTree.Keyword.FALSE;
+        }
+
+        if (!(term instanceof OperatorTree operator)) {
+            return false;
+        }
+
+        return switch (operator.value) {
+            case EQ, LS, GT -> operator.right != null;
+            case NOT -> operator.right == null && isCanonicalBoolean(operator.left);
+            case AND, OR -> isCanonicalBoolean(operator.left) && isCanonicalBoolean(operator.right);
+            default -> false;
+        };
+    }
+
+    private void compileIfStatement(IfStatementTree node, int methodId) {
+        final int ifLabel = newLabel();
+        final int endIfLabel = newLabel();
+        if (optimize) {
+            compileBranchingIf(node, methodId, ifLabel, endIfLabel);
+            return;
+        }
+
+        compileExpression(node.condition, methodId); // result on stack
+        vmWriter.writeIf(ifLabel);
+        compileStatements(node.elseBody, methodId);
 
-        final String endIfLabel = labelPrefix + "_end_" + ifSuffix;
         vmWriter.writeGoto(endIfLabel);
 
-        vmWriter.writeLabel(ifLabel);
-        compileStatements(node.ifBody, methodName);
+        writeLabel(ifLabel);
+        compileStatements(node.ifBody, methodId);
 
-        vmWriter.writeLabel(endIfLabel);
+        writeLabel(endIfLabel);
     }
 
-    private void compileStatements(List<StatementTree> statementTrees, String methodName) {
+    private void compileStatements(List<StatementTree> statementTrees, int methodId) {
         if (statementTrees == null || statementTrees.isEmpty()) {
             return;
         }
 
         for (StatementTree statementTree : statementTrees) {
-            compileStatement(statementTree, methodName);
+            compileStatement(statementTree, methodId);
         }
     }
 
-    private void compileReturnStatement(ReturnStatementTree node, String methodName) {
+    private void compileReturnStatement(ReturnStatementTree node, int methodId) {
+        if (tailCallEntry >= 0 && isSelfTailCall(node, methodId)) {
+            compileTailCall((SubroutineCallTree) node.expression, methodId);
+            return;
+        }
+
         if (node.expression != null) {
-            compileExpression(node.expression, methodName);
+            compileExpression(node.expression, methodId);
         } else {
             vmWriter.writePush(Segment.CONSTANT, (short) 0);
         }
@@ -164,76 +394,329 @@ public final class ByteCodeAstGenerator implements AstGenerator<Boolean>, Closea
         vmWriter.writeReturn();
     }
 
-    private void compileDo(DoStatementTree node, String methodName) {
-        compileExpression(node.subroutineCallTree, methodName);
+    /**
+     * {@code return f(args)} of f itself reassigns the arguments and jumps back to the entry,
+     * locals which are read before written get their zero back.
+     */
+    private void compileTailCall(SubroutineCallTree call, int methodId) {
+        final boolean newReceiver = method && call.receiverId >= 0;
+        if (newReceiver) {
+            compileReceiver(call, methodId);
+        }
+
+        // all arguments are evaluated before any of them is overwritten
+        for (ATermSyntaxTree arg : call.argList) {
+            compileExpression(arg, methodId);
+        }
+
+        final int offset = method ? 1 : 0;
+        for (int i = call.argList.size() - 1; i >= 0; i--) {
+            vmWriter.writePop(Segment.ARGUMENT, (short) (i + offset));
+        }
+        if (newReceiver) {
+            vmWriter.writePop(Segment.ARGUMENT, (short) 0);
+        }
+
+        for (short slot = 0; slot < localSlots.count; slot++) {
+            if (localSlots.isLiveAtEntry(slot)) {
+                vmWriter.writePush(Segment.CONSTANT, (short) 0);
+                vmWriter.writePop(Segment.LOCAL, slot);
+            }
+        }
+
+        vmWriter.writeGoto(tailCallEntry);
+    }
+
+    private boolean hasSelfTailCall(SubroutineDeclarationTree subroutine, int methodId) {
+        final List<AbstractSyntaxTree> nodes = subroutine.subroutineBodyTree.nodes;
+        if (nodes == null) {
+            return false;
+        }
+
+        for (AbstractSyntaxTree node : nodes) {
+            if (node instanceof StatementTree statement && hasSelfTailCall(statement, methodId)) {
+                return true;
+            }
+        }
+
+        return false;
+    }
+
+    private boolean hasSelfTailCall(List<StatementTree> statements, int methodId) {
+        if (statements == null) {
+            return false;
+        }
+
+        for (StatementTree statement : statements) {
+            if (hasSelfTailCall(statement, methodId)) {
+                return true;
+            }
+        }
+
+        return false;
+    }
+
+    private boolean hasSelfTailCall(StatementTree statement, int methodId) {
+        return switch (statement.getNodeKind()) {
+            case RETURN_STATEMENT -> isSelfTailCall((ReturnStatementTree) statement, methodId);
+            case IF_STATEMENT -> hasSelfTailCall(((IfStatementTree) statement).ifBody, methodId)
+                    || hasSelfTailCall(((IfStatementTree) statement).elseBody, methodId);
+            case WHILE_STATEMENT -> hasSelfTailCall(((WhileStatementTree) statement).body, methodId);
+            default -> false;
+        };
+    }
+
+    /**
+     * The call has to be compiled the way the subroutine is entered: {@code sub(..)} or {@code var.sub(..)}
+     * in a method, {@code Class.sub(..)} in a function
+     */
+    private boolean isSelfTailCall(ReturnStatementTree node, int methodId) {
+        return node.expression instanceof SubroutineCallTree call
+                && isMethodCall(call, methodId) == method
+                && calleeIdOf(call, methodId) == methodId
+                && call.argList.size() + (method ? 1 : 0) == symbolTable.getArgCount(methodId);
+    }
+
+    private void compileDo(DoStatementTree node, int methodId) {
+        compileExpression(node.subroutineCallTree, methodId);
         vmWriter.writePop(Segment.TEMP, (short) 0);
     }
 
-    private void compileLet(LetStatementTree node, String methodName) {
-        final IdentifierInfo identifierInfo = getIdentifierInfo(methodName, node.identifierName);
+    private void compileLet(LetStatementTree node, int methodId) {
+        final IdentifierInfo identifierInfo = getIdentifierInfo(methodId, node.identifierId);
         final Segment segment = getSegment(identifierInfo.kind);
         final boolean isArray = node.arraySyntaxTree != null;
         if (isArray) {
-            vmWriter.writePush(segment, identifierInfo.index);
-            compileExpression(node.arraySyntaxTree.expressionTree, methodName);
-            vmWriter.writeArithmetic(Command.ADD);
-            vmWriter.writePop(Segment.TEMP, (short) 0); // save addr
-            compileExpression(node.expression, methodName);
+            compileArrayLet(node, segment, indexOf(identifierInfo), methodId);
+            return;
+        }
+
+        compileExpression(node.expression, methodId);
+        final short index = indexOf(identifierInfo);
+        if (index < 0) {
+            vmWriter.writePop(Segment.TEMP, (short) 0); // never read
+            return;
+        }
+        vmWriter.writePop(segment, index);
+        if (segment == thatSegment && index == thatIndex) {
+            thatSegment = null; // the array variable now points elsewhere
+        }
+    }
 
-            vmWriter.writePush(Segment.TEMP, (short) 0); // get arrayAddr
+    /**
+     * Under -O a constant index stores straight into {@code that k} after the value,
+     * and a value which never moves pointer 1 is stored without the round trip through temp 0.
+     */
+    private void compileArrayLet(LetStatementTree node, Segment segment, short index, int methodId) {
+        final ATermSyntaxTree arrayIndex = node.arraySyntaxTree.expressionTree;
+        final int effects = optimize ? scan(node.expression, 0) : TOUCHES_THAT | CALLS;
+
+        // the base is read after the value, a call in the value could change a field or static base
+        if (optimize && arrayIndex instanceof IntegerConstantTree constant
+                && (isStackSegment(segment) || (effects & CALLS) == 0)) {
+            compileExpression(node.expression, methodId);
+            writeArrayBase(segment, index);
+            vmWriter.writePop(Segment.THAT, constant.value);
+            return;
+        }
+
+        vmWriter.writePush(segment, index);
+        compileExpression(arrayIndex, methodId);
+        vmWriter.writeArithmetic(Command.ADD);
+        if ((effects & TOUCHES_THAT) == 0) {
             vmWriter.writePop(Segment.POINTER, (short) 1);
-            vmWriter.writePop(Segment.THAT, (short) 0); //save expression result
+            thatSegment = null;
+            compileExpression(node.expression, methodId);
+            vmWriter.writePop(Segment.THAT, (short) 0);
             return;
         }
 
-        compileExpression(node.expression, methodName);
-        vmWriter.writePop(segment, identifierInfo.index);
+        // the value may move pointer 1 or call a subroutine which uses temp 0 itself
+        compileExpression(node.expression, methodId);
+        vmWriter.writePop(Segment.TEMP, (short) 0); // save expression result
+        vmWriter.writePop(Segment.POINTER, (short) 1); // set that addr
+        vmWriter.writePush(Segment.TEMP, (short) 0);
+        vmWriter.writePop(Segment.THAT, (short) 0);
+        thatSegment = null;
     }
 
-    private void compileExpression(ATermSyntaxTree expression, String methodName) {
-        final Stack<ATermSyntaxTree> terms = new Stack<>();
-        terms.add(expression);
+    /**
+     * Points pointer 1 at the array, nothing is emitted if it already points there
+     */
+    private void writeArrayBase(Segment segment, short index) {
+        if (segment == thatSegment && index == thatIndex) {
+            return;
+        }
+
+        vmWriter.writePush(segment, index);
+        vmWriter.writePop(Segment.POINTER, (short) 1);
+        // fields and statics may be changed by any call, only locals and arguments are tracked
+        if (isStackSegment(segment)) {
+            thatSegment = segment;
+            thatIndex = index;
+        } else {
+            thatSegment = null;
+        }
+    }
 
-        final Set<ATermSyntaxTree> visited = new HashSet<>();
-        while (!terms.isEmpty()) {
-            final ATermSyntaxTree currTerm = terms.pop();
-            boolean handleCurrent = currTerm.expression || (currTerm.left == null || visited.contains(currTerm.left)) && (currTerm.right == null || visited.contains(currTerm.right));
-            if (handleCurrent) {
-                compileTerm(currTerm, methodName);
-                visited.add(currTerm);
-                continue;
-            }
+    private static boolean isStackSegment(Segment segment) {
+        return segment == Segment.LOCAL || segment == Segment.ARGUMENT;
+    }
 
-            if (!visited.contains(currTerm)) {
-                terms.add(currTerm);
+    /**
+     * @return {@link #TOUCHES_THAT} if the term reads an array, {@link #CALLS} if it calls a subroutine,
+     * too deep terms are assumed to do both
+     */
+    private static int scan(ATermSyntaxTree term, int depth) {
+        if (term == null) {
+            return 0;
+        }
+        if (depth == MAX_SCAN_DEPTH) {
+            return TOUCHES_THAT | CALLS;
+        }
+
+        int effects = scan(term.left, depth + 1) | scan(term.right, depth + 1);
+        if (term instanceof ArraySyntaxTree array) {
+            effects |= TOUCHES_THAT | scan(array.expressionTree, depth + 1);
+        } else if (term instanceof SubroutineCallTree call) {
+            effects |= CALLS;
+            for (ATermSyntaxTree arg : call.argList) {
+                effects |= scan(arg, depth + 1);
             }
+        } else if (term instanceof StringConstantTree) {
+            effects |= CALLS;
+        }
 
-            if (currTerm.right != null && !visited.contains(currTerm.right)) {
-                terms.add(currTerm.right);
+        return effects;
+    }
+
+    /**
+     * Post-order emission over an explicit stack of (term, state) frames kept between calls,
+     * so neither deep nesting nor the amount of expressions costs JVM stack or allocations.
+     * The state of a frame counts how many of its children are already emitted.
+     */
+    private void compileExpression(ATermSyntaxTree expression, int methodId) {
+        final int base = frameCount;
+        pushFrame(expression);
+        while (frameCount > base) {
+            final int top = frameCount - 1;
+            final ATermSyntaxTree term = frames[top];
+            final int state = frameStates[top]++;
+            switch (term.getNodeKind()) {
+                case OP -> stepOperation((OperatorTree) term, state, top);
+                case SUBROUTINE_CALL -> stepSubroutineCall((SubroutineCallTree) term, state, methodId);
+                case ARRAY -> stepArray((ArraySyntaxTree) term, state, methodId);
+                default -> {
+                    compileTerm(term, methodId);
+                    frameCount--;
+                }
             }
+        }
+    }
+
+    private void pushFrame(ATermSyntaxTree term) {
+        if (frameCount == frames.length) {
+            frames = Arrays.copyOf(frames, frameCount * 2);
+            frameStates = Arrays.copyOf(frameStates, frameCount * 2);
+        }
 
-            if (currTerm.left != null && !visited.contains(currTerm.left)) {
-                terms.add(currTerm.left);
+        frames[frameCount] = term;
+        frameStates[frameCount++] = 0;
+    }
+
+    private void popFrame() {
+        frames[--frameCount] = null;
+    }
+
+    private void stepOperation(OperatorTree operator, int state, int top) {
+        if (state == REDUCED) {
+            writeMultiply(reducibleFactor(operator));
+            popFrame();
+            return;
+        }
+
+        if (state == 0 && optimize) {
+            final int factor = reducibleFactor(operator);
+            if (factor != NOT_REDUCIBLE) {
+                final ATermSyntaxTree operand = reducedOperand(operator);
+                if (factor == 0 && isTrivial(operand)) {
+                    vmWriter.writePush(Segment.CONSTANT, (short) 0);
+                    popFrame();
+                    return;
+                }
+
+                frameStates[top] = REDUCED;
+                pushFrame(operand);
+                return;
             }
         }
+
+        if (state == 0) {
+            pushFrame(operator.left);
+        } else if (state == 1 && operator.right != null) {
+            pushFrame(operator.right);
+        } else {
+            compileOperation(operator);
+            popFrame();
+        }
+    }
+
+    private void stepSubroutineCall(SubroutineCallTree call, int state, int methodId) {
+        if (state == 0) {
+            compileReceiver(call, methodId);
+        }
+
+        if (state < call.argList.size()) {
+            pushFrame(call.argList.get(state));
+        } else {
+            writeCall(call, methodId);
+            popFrame();
+        }
     }
 
-    private void compileTerm(ATermSyntaxTree termSyntaxTree, String methodName) {
-        if (termSyntaxTree.expression) {
-            termSyntaxTree.expression = false;
-            compileExpression(termSyntaxTree, methodName);
-            termSyntaxTree.expression = true;
+    private void stepArray(ArraySyntaxTree array, int state, int methodId) {
+        if (state == 0) {
+            final IdentifierInfo identifierInfo = getIdentifierInfo(methodId, array.identifierId);
+            if (optimize && array.expressionTree instanceof IntegerConstantTree constant) {
+                writeArrayBase(getSegment(identifierInfo.kind), indexOf(identifierInfo));
+                vmWriter.writePush(Segment.THAT, constant.value);
+                popFrame();
+                return;
+            }
+
+            vmWriter.writePush(getSegment(identifierInfo.kind), indexOf(identifierInfo));
+            pushFrame(array.expressionTree);
             return;
         }
 
+        vmWriter.writeArithmetic(Command.ADD);
+        vmWriter.writePop(Segment.POINTER, (short) 1); // set that addr
+        vmWriter.writePush(Segment.THAT, (short) 0); // push that data
+        thatSegment = null;
+        popFrame();
+    }
+
+    /**
+     * Control flow merges at labels, so pointer 1 is not known to hold an array after one
+     */
+    private void writeLabel(int label) {
+        thatSegment = null;
+        vmWriter.writeLabel(label);
+    }
+
+    private void compileTerm(ATermSyntaxTree termSyntaxTree, int methodId) {
         switch (termSyntaxTree.getNodeKind()) {
-            case IDENTIFIER -> compileIdentifier((IdentifierTree) termSyntaxTree, methodName);
+            case IDENTIFIER -> compileIdentifier((IdentifierTree) termSyntaxTree, methodId);
             case INTEGER_CONSTANT -> compileIntegerConstant((IntegerConstantTree) termSyntaxTree);
-            case STRING_CONSTANT -> compileStringConstant((StringConstantTree) termSyntaxTree);
+            case STRING_CONSTANT -> {
+                if (poolStrings) {
+                    compilePooledStringConstant((StringConstantTree) termSyntaxTree);
+                } else {
+                    compileStringConstant((StringConstantTree) termSyntaxTree);
+                }
+            }
             case KEYWORD -> compileKeyword((KeywordConstantTree) termSyntaxTree);
-            case OP -> compileOperation((OperatorTree) termSyntaxTree);
-            case SUBROUTINE_CALL -> compileSubroutineCall((SubroutineCallTree) termSyntaxTree, methodName);
-            case ARRAY -> compileArray((ArraySyntaxTree) termSyntaxTree, methodName);
+            default -> throw new IllegalStateException("Unexpected node kind: " + termSyntaxTree.getNodeKind());
         }
     }
 
@@ -246,46 +729,63 @@ public final class ByteCodeAstGenerator implements AstGenerator<Boolean>, Closea
         }
     }
 
-    private void compileArray(ArraySyntaxTree termSyntaxTree, String methodName) {
-        final IdentifierInfo identifierInfo = getIdentifierInfo(methodName, termSyntaxTree.identifierName);
-        vmWriter.writePush(getSegment(identifierInfo.kind), identifierInfo.index);
-        compileExpression(termSyntaxTree.expressionTree, methodName);
-        vmWriter.writeArithmetic(Command.ADD);
-        vmWriter.writePop(Segment.POINTER, (short) 1); // set that addr
-        vmWriter.writePush(Segment.THAT, (short) 0); // push that data
+    /**
+     * Identical literals of a class share a static slot, the string is built on the first evaluation:
+     * an empty slot is 0, a built string is a heap address, so later evaluations skip straight to the push.
+     * Pooled strings must not be disposed or modified by the program.
+     */
+    private void compilePooledStringConstant(StringConstantTree termSyntaxTree) {
+        final short slot = stringPool.computeIfAbsent(
+                termSyntaxTree.value,
+                v -> (short) (symbolTable.getClassStaticsCount() + stringPool.size())
+        );
+
+        final int built = newLabel();
+
+        vmWriter.writePush(Segment.STATIC, slot);
+        vmWriter.writeIf(built);
+        compileStringConstant(termSyntaxTree);
+        vmWriter.writePop(Segment.STATIC, slot);
+        writeLabel(built);
+        vmWriter.writePush(Segment.STATIC, slot);
     }
 
-    private void compileSubroutineCall(SubroutineCallTree termSyntaxTree, String methodName) {
-        final String[] split = termSyntaxTree.identifierName.split("\\.");
+    /**
+     * Pushes the object a method is called on, nothing for a function
+     */
+    private void compileReceiver(SubroutineCallTree call, int methodId) {
+        if (call.receiverId < 0) { // this method call
+            vmWriter.writePush(Segment.POINTER, (short) 0);
+            return;
+        }
 
-        final String identifierName;
-        final boolean systemCall = split.length > 1;
+        final IdentifierInfo receiver = symbolTable.get(methodId, call.receiverId);
+        if (receiver != null) { // method call
+            vmWriter.writePush(getSegment(receiver.kind), indexOf(receiver));
+        }
+    }
 
-        final boolean hasArgs = termSyntaxTree.argList != null && !termSyntaxTree.argList.isEmpty();
-        int paramN = hasArgs ? termSyntaxTree.argList.size() : 0;
+    private void writeCall(SubroutineCallTree call, int methodId) {
+        final int paramN = call.argList.size() + (isMethodCall(call, methodId) ? 1 : 0);
 
-        if (systemCall) {
-            final IdentifierInfo identifierInfo = symbolTable.get(methodName, split[0]);
-            if (identifierInfo != null) { // method call
-                paramN += 1;
-                identifierName = identifierInfo.classType + "." + split[1];
-                vmWriter.writePush(getSegment(identifierInfo.kind), identifierInfo.index);
-            } else { //system.call
-                identifierName = termSyntaxTree.identifierName;
-            }
-        } else { // this method call
-            paramN += 1;
-            vmWriter.writePush(Segment.POINTER, (short) 0); // set this on stack
-            identifierName = className + "." + split[0];
+        vmWriter.writeCall(names.name(calleeIdOf(call, methodId)), paramN);
+    }
+
+    private boolean isMethodCall(SubroutineCallTree call, int methodId) {
+        return call.receiverId < 0 || symbolTable.get(methodId, call.receiverId) != null;
+    }
+
+    private int calleeIdOf(SubroutineCallTree call, int methodId) {
+        if (call.receiverId < 0) { // this method call
+            return names.qualify(classNameId, call.subroutineId);
         }
 
-        if (hasArgs) {
-            for (ATermSyntaxTree param : termSyntaxTree.argList) {
-                compileExpression(param, methodName);
-            }
+        final IdentifierInfo receiver = symbolTable.get(methodId, call.receiverId);
+        if (receiver != null) { // method call
+            return names.qualify(receiver.classTypeId, call.subroutineId);
         }
 
-        vmWriter.writeCall(identifierName, paramN);
+        return call.identifierId; //system.call
     }
 
     private void compileKeyword(KeywordConstantTree termSyntaxTree) {
@@ -294,7 +794,8 @@ public final class ByteCodeAstGenerator implements AstGenerator<Boolean>, Closea
         }
 
         if (termSyntaxTree.value == KeywordConstantTree.Keyword.TRUE) {
-            vmWriter.writePush(Segment.CONSTANT, (short) 1);
+            vmWriter.writePush(Segment.CONSTANT, (short) 0);
+            vmWriter.writeArithmetic(Command.NOT); // -1, all bits set
         }
 
         if (termSyntaxTree.value == KeywordConstantTree.Keyword.FALSE) {
@@ -320,16 +821,108 @@ public final class ByteCodeAstGenerator implements AstGenerator<Boolean>, Closea
         vmWriter.writeArithmetic(parse(termSyntaxTree.value));
     }
 
-    private short getLabelIndex(String labelPrefix) {
-        labelIndex.compute(labelPrefix, (k, i) -> {
-            if (i == null) {
-                return (short) 0;
+    /**
+     * Strength reduction of {@code *} and {@code /} with a constant operand: x / 1 and x / -1 are x * 1 and x * -1.
+     *
+     * @return factor the other operand is multiplied by or {@link #NOT_REDUCIBLE} if the operation is a call
+     */
+    private int reducibleFactor(OperatorTree operator) {
+        if (operator.left == null || operator.right == null) {
+            return NOT_REDUCIBLE;
+        }
+
+        if (operator.value == OperatorTree.Op.DIV) {
+            if (!ConstantFoldingAstGenerator.isConstant(operator.right)) {
+                return NOT_REDUCIBLE;
+            }
+
+            final short divisor = ConstantFoldingAstGenerator.valueOf(operator.right);
+            return divisor == 1 || divisor == -1 ? divisor : NOT_REDUCIBLE; // no shifts in the VM
+        }
+
+        if (operator.value != OperatorTree.Op.MUL) {
+            return NOT_REDUCIBLE;
+        }
+
+        final short factor;
+        if (ConstantFoldingAstGenerator.isConstant(operator.right)) {
+            factor = ConstantFoldingAstGenerator.valueOf(operator.right);
+        } else if (ConstantFoldingAstGenerator.isConstant(operator.left)) {
+            factor = ConstantFoldingAstGenerator.valueOf(operator.left);
+        } else {
+            return NOT_REDUCIBLE;
+        }
+
+        if (factor == Short.MIN_VALUE || multiplyChainLength(Math.abs(factor)) > maxMultiplyChain) {
+            return NOT_REDUCIBLE;
+        }
+
+        return factor;
+    }
+
+    /**
+     * @return the operand which is not the constant of a reducible operation
+     */
+    private static ATermSyntaxTree reducedOperand(OperatorTree operator) {
+        return ConstantFoldingAstGenerator.isConstant(operator.right) ? operator.left : operator.right;
+    }
+
+    private static boolean isTrivial(ATermSyntaxTree term) {
+        return term instanceof IdentifierTree || ConstantFoldingAstGenerator.isConstant(term);
+    }
+
+    /**
+     * Multiplies the top of the stack by the factor, 0 drops the operand which is still evaluated for its side effects
+     */
+    private void writeMultiply(int factor) {
+        if (factor == 0) {
+            vmWriter.writePop(Segment.TEMP, (short) 1);
+            vmWriter.writePush(Segment.CONSTANT, (short) 0);
+            return;
+        }
+
+        writePositiveMultiply(Math.abs(factor));
+        if (factor < 0) {
+            vmWriter.writeArithmetic(Command.NEG);
+        }
+    }
+
+    /**
+     * Multiplies the top of the stack by a positive factor with doublings and additions, binary digits from the top.
+     * temp 1 keeps the multiplicand, temp 2 is used to double the accumulator.
+     */
+    private void writePositiveMultiply(int factor) {
+        final boolean additions = Integer.bitCount(factor) > 1;
+        if (additions) {
+            vmWriter.writePop(Segment.TEMP, (short) 1);
+            vmWriter.writePush(Segment.TEMP, (short) 1);
+        }
+
+        for (int bit = Integer.highestOneBit(factor) >> 1; bit != 0; bit >>= 1) {
+            vmWriter.writePop(Segment.TEMP, (short) 2);
+            vmWriter.writePush(Segment.TEMP, (short) 2);
+            vmWriter.writePush(Segment.TEMP, (short) 2);
+            vmWriter.writeArithmetic(Command.ADD);
+            if ((factor & bit) != 0) {
+                vmWriter.writePush(Segment.TEMP, (short) 1);
+                vmWriter.writeArithmetic(Command.ADD);
             }
+        }
+    }
 
-            return (short) (i + 1);
-        });
+    private static int multiplyChainLength(int factor) {
+        if (factor <= 1) {
+            return 0;
+        }
+
+        final int doublings = 31 - Integer.numberOfLeadingZeros(factor);
+        final int additions = Integer.bitCount(factor) - 1;
 
-        return labelIndex.get(labelPrefix);
+        return (additions > 0 ? 2 : 0) + doublings * 4 + additions * 2;
+    }
+
+    private int newLabel() {
+        return labelCount++;
     }
 
     public Command parse(OperatorTree.Op op) {
@@ -351,10 +944,10 @@ public final class ByteCodeAstGenerator implements AstGenerator<Boolean>, Closea
         vmWriter.writePush(Segment.CONSTANT, termSyntaxTree.value);
     }
 
-    private void compileIdentifier(IdentifierTree termSyntaxTree, String methodName) {
-        final IdentifierInfo identifierInfo = getIdentifierInfo(methodName, termSyntaxTree.varName);
+    private void compileIdentifier(IdentifierTree termSyntaxTree, int methodId) {
+        final IdentifierInfo identifierInfo = getIdentifierInfo(methodId, termSyntaxTree.varId);
 
-        vmWriter.writePush(getSegment(identifierInfo.kind), identifierInfo.index);
+        vmWriter.writePush(getSegment(identifierInfo.kind), indexOf(identifierInfo));
     }
 
     private Segment getSegment(Kind kind) {
@@ -377,27 +970,36 @@ public final class ByteCodeAstGenerator implements AstGenerator<Boolean>, Closea
         throw new IllegalStateException("Unexpected kind: " + kind);
     }
 
-    private void writeConstructorBody(SubroutineBodyTree bodyTree) {
-        final String methodName = className + ".new";
-
+    private void writeConstructorBody(int methodId, SubroutineBodyTree bodyTree) {
         final List<StatementTree> statements = bodyTree.nodes.stream().filter(n -> n instanceof StatementTree).map(n -> (StatementTree) n).toList();
 
-        compileStatements(statements, methodName);
+        compileStatements(statements, methodId);
 
         vmWriter.writePush(Segment.POINTER, (short) 0);
         vmWriter.writeReturn();
     }
 
-    private void compileFunctionBody(String methodName, SubroutineBodyTree bodyTree) {
+    private void compileFunctionBody(int methodId, SubroutineBodyTree bodyTree) {
         final List<StatementTree> statements = bodyTree.nodes.stream().filter(n -> n instanceof StatementTree).map(n -> (StatementTree) n).toList();
 
-        compileStatements(statements, methodName);
+        compileStatements(statements, methodId);
+    }
+
+    /**
+     * @return index in the segment of the identifier, locals are moved to their shared slots
+     */
+    private short indexOf(IdentifierInfo identifierInfo) {
+        if (localSlots == null || identifierInfo.kind != Kind.VAR) {
+            return identifierInfo.index;
+        }
+
+        return localSlots.slotOf(identifierInfo.index);
     }
 
-    private IdentifierInfo getIdentifierInfo(String methodName, String identifierName) {
-        final IdentifierInfo identifierInfo = symbolTable.get(methodName, identifierName);
+    private IdentifierInfo getIdentifierInfo(int methodId, int identifierId) {
+        final IdentifierInfo identifierInfo = symbolTable.get(methodId, identifierId);
         if (identifierInfo == null) {
-            throw new IllegalStateException("Undefined identifier: " + identifierName);
+            throw new IllegalStateException("Undefined identifier: " + names.name(identifierId));
         }
 
         return identifierInfo;
@@ -0,0 +1,135 @@
+package edu.nadn2tetris.ast.processor;
+
+import java.util.List;
+
+import edu.nadn2tetris.ast.AbstractSyntaxTree;
+import edu.nadn2tetris.ast.ClassTree;
+import edu.nadn2tetris.ast.statement.DoStatementTree;
+import edu.nadn2tetris.ast.statement.IfStatementTree;
+import edu.nadn2tetris.ast.statement.LetStatementTree;
+import edu.nadn2tetris.ast.statement.ReturnStatementTree;
+import edu.nadn2tetris.ast.statement.StatementTree;
+import edu.nadn2tetris.ast.statement.WhileStatementTree;
+import edu.nadn2tetris.ast.term.ATermSyntaxTree;
+import edu.nadn2tetris.ast.term.ArraySyntaxTree;
+import edu.nadn2tetris.ast.term.subroutine.SubroutineCallTree;
+import edu.nadn2tetris.ast.term.subroutine.SubroutineDeclarationTree;
+import edu.nadn2tetris.common.NameTable;
+import edu.nadn2tetris.table.CallGraph;
+import edu.nadn2tetris.table.FileSymbolTable;
+import edu.nadn2tetris.table.IdentifierInfo;
+
+/**
+ * Collects subroutines of a class and their call targets, targets are resolved the same way as by
+ * {@link ByteCodeAstGenerator}: {@code sub()} is a call of this class, {@code var.sub()} of the class type of var
+ * and {@code Class.sub()} is taken as it is.
+ */
+public final class CallGraphAstGenerator implements AstGenerator<CallGraph> {
+    private final FileSymbolTable symbolTable;
+    private final NameTable names;
+    private final CallGraph callGraph = new CallGraph();
+    private int classNameId;
+
+    public CallGraphAstGenerator(FileSymbolTable symbolTable, NameTable names) {
+        this.symbolTable = symbolTable;
+        this.names = names;
+    }
+
+    @Override
+    public CallGraph generate(AbstractSyntaxTree root) {
+        final ClassTree classTree = (ClassTree) root;
+        if (classTree.blocks == null) {
+            return callGraph;
+        }
+
+        this.classNameId = classTree.classNameId;
+        for (AbstractSyntaxTree block : classTree.blocks) {
+            if (block instanceof SubroutineDeclarationTree subroutine) {
+                final int methodId = names.qualify(classNameId, subroutine.nameId);
+                callGraph.define(methodId);
+                if (subroutine.subroutineBodyTree.nodes == null) {
+                    continue;
+                }
+
+                for (AbstractSyntaxTree node : subroutine.subroutineBodyTree.nodes) {
+                    if (node instanceof StatementTree statement) {
+                        visitStatement(statement, methodId);
+                    }
+                }
+            }
+        }
+
+        return callGraph;
+    }
+
+    private void visitStatements(List<StatementTree> statements, int methodId) {
+        if (statements == null) {
+            return;
+        }
+
+        for (StatementTree statement : statements) {
+            visitStatement(statement, methodId);
+        }
+    }
+
+    private void visitStatement(StatementTree statement, int methodId) {
+        switch (statement.getNodeKind()) {
+            case LET_STATEMENT -> {
+                final LetStatementTree let = (LetStatementTree) statement;
+                if (let.arraySyntaxTree != null) {
+                    visitTerm(let.arraySyntaxTree, methodId);
+                }
+                visitTerm(let.expression, methodId);
+            }
+            case IF_STATEMENT -> {
+                final IfStatementTree ifStatement = (IfStatementTree) statement;
+                visitTerm(ifStatement.condition, methodId);
+                visitStatements(ifStatement.ifBody, methodId);
+                visitStatements(ifStatement.elseBody, methodId);
+            }
+            case WHILE_STATEMENT -> {
+                final WhileStatementTree whileStatement = (WhileStatementTree) statement;
+                visitTerm(whileStatement.condition, methodId);
+                visitStatements(whileStatement.body, methodId);
+            }
+            case DO_STATEMENT -> visitTerm(((DoStatementTree) statement).subroutineCallTree, methodId);
+            case RETURN_STATEMENT -> {
+                final ReturnStatementTree returnStatement = (ReturnStatementTree) statement;
+                if (returnStatement.expression != null) {
+                    visitTerm(returnStatement.expression, methodId);
+                }
+            }
+            default -> throw new IllegalStateException("Unexpected node kind: " + statement.getNodeKind());
+        }
+    }
+
+    private void visitTerm(ATermSyntaxTree term, int methodId) {
+        if (term == null) {
+            return;
+        }
+
+        if (term instanceof SubroutineCallTree call) {
+            callGraph.addCall(methodId, calleeOf(call, methodId));
+            if (call.argList != null) {
+                for (ATermSyntaxTree arg : call.argList) {
+                    visitTerm(arg, methodId);
+                }
+            }
+        } else if (term instanceof ArraySyntaxTree array) {
+            visitTerm(array.expressionTree, methodId);
+        }
+
+        visitTerm(term.left, methodId);
+        visitTerm(term.right, methodId);
+    }
+
+    private int calleeOf(SubroutineCallTree call, int methodId) {
+        if (call.receiverId < 0) {
+            return names.qualify(classNameId, call.subroutineId);
+        }
+
+        final IdentifierInfo receiver = symbolTable.get(methodId, call.receiverId);
+
+        return receiver != null ? names.qualify(receiver.classTypeId, call.subroutineId) : call.identifierId;
+    }
+}
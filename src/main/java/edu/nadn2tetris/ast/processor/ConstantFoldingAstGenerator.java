@@ -0,0 +1,216 @@
+package edu.nadn2tetris.ast.processor;
+
+import java.util.List;
+
+import edu.nadn2tetris.ast.AbstractSyntaxTree;
+import edu.nadn2tetris.ast.ClassTree;
+import edu.nadn2tetris.ast.statement.DoStatementTree;
+import edu.nadn2tetris.ast.statement.IfStatementTree;
+import edu.nadn2tetris.ast.statement.LetStatementTree;
+import edu.nadn2tetris.ast.statement.ReturnStatementTree;
+import edu.nadn2tetris.ast.statement.StatementTree;
+import edu.nadn2tetris.ast.statement.WhileStatementTree;
+import edu.nadn2tetris.ast.term.ATermSyntaxTree;
+import edu.nadn2tetris.ast.term.ArraySyntaxTree;
+import edu.nadn2tetris.ast.term.IntegerConstantTree;
+import edu.nadn2tetris.ast.term.KeywordConstantTree;
+import edu.nadn2tetris.ast.term.OperatorTree;
+import edu.nadn2tetris.ast.term.subroutine.SubroutineCallTree;
+import edu.nadn2tetris.ast.term.subroutine.SubroutineDeclarationTree;
+
+/**
+ * Evaluates operators over constants at compile time, the tree is rewritten in place.
+ * Arithmetic wraps around like the 16-bit Hack ALU, {@code true} is -1, {@code false} and {@code null} are 0.
+ * A folded value is a single {@code push constant}, negative values get a trailing {@code neg} or {@code not}.
+ */
+public final class ConstantFoldingAstGenerator implements AstGenerator<AbstractSyntaxTree> {
+    private static final short TRUE = -1;
+    private static final short FALSE = 0;
+
+    @Override
+    public AbstractSyntaxTree generate(AbstractSyntaxTree root) {
+        final ClassTree classTree = (ClassTree) root;
+        if (classTree.blocks == null) {
+            return root;
+        }
+
+        for (AbstractSyntaxTree block : classTree.blocks) {
+            if (block instanceof SubroutineDeclarationTree subroutine && subroutine.subroutineBodyTree.nodes != null) {
+                for (AbstractSyntaxTree node : subroutine.subroutineBodyTree.nodes) {
+                    if (node instanceof StatementTree statement) {
+                        foldStatement(statement);
+                    }
+                }
+            }
+        }
+
+        return root;
+    }
+
+    private void foldStatements(List<StatementTree> statements) {
+        if (statements == null) {
+            return;
+        }
+
+        for (StatementTree statement : statements) {
+            foldStatement(statement);
+        }
+    }
+
+    private void foldStatement(StatementTree statement) {
+        switch (statement.getNodeKind()) {
+            case LET_STATEMENT -> {
+                final LetStatementTree let = (LetStatementTree) statement;
+                if (let.arraySyntaxTree != null) {
+                    let.arraySyntaxTree = (ArraySyntaxTree) fold(let.arraySyntaxTree);
+                }
+                let.expression = fold(let.expression);
+            }
+            case IF_STATEMENT -> {
+                final IfStatementTree ifStatement = (IfStatementTree) statement;
+                ifStatement.condition = fold(ifStatement.condition);
+                foldStatements(ifStatement.ifBody);
+                foldStatements(ifStatement.elseBody);
+            }
+            case WHILE_STATEMENT -> {
+                final WhileStatementTree whileStatement = (WhileStatementTree) statement;
+                whileStatement.condition = fold(whileStatement.condition);
+                foldStatements(whileStatement.body);
+            }
+            case DO_STATEMENT -> fold(((DoStatementTree) statement).subroutineCallTree);
+            case RETURN_STATEMENT -> {
+                final ReturnStatementTree returnStatement = (ReturnStatementTree) statement;
+                if (returnStatement.expression != null) {
+                    returnStatement.expression = fold(returnStatement.expression);
+                }
+            }
+            default -> throw new IllegalStateException("Unexpected node kind: " + statement.getNodeKind());
+        }
+    }
+
+    /**
+     * @return the term itself or a constant it evaluates to
+     */
+    private ATermSyntaxTree fold(ATermSyntaxTree term) {
+        switch (term.getNodeKind()) {
+            case SUBROUTINE_CALL -> {
+                final List<ATermSyntaxTree> args = ((SubroutineCallTree) term).argList;
+                for (int i = 0; i < args.size(); i++) {
+                    args.set(i, fold(args.get(i)));
+                }
+                return term;
+            }
+            case ARRAY -> {
+                final ArraySyntaxTree array = (ArraySyntaxTree) term;
+                final ATermSyntaxTree index = fold(array.expressionTree);
+                if (index == array.expressionTree) {
+                    return term;
+                }
+
+                final ArraySyntaxTree folded = new ArraySyntaxTree(array.identifierName, array.identifierId, index);
+                folded.expression = array.expression;
+                return folded;
+            }
+            case OP -> {
+                return foldOperator((OperatorTree) term);
+            }
+            default -> {
+                return term;
+            }
+        }
+    }
+
+    private ATermSyntaxTree foldOperator(OperatorTree operator) {
+        if (operator.left != null) {
+            operator.left = fold(operator.left);
+        }
+        if (operator.right != null) {
+            operator.right = fold(operator.right);
+        }
+
+        if (operator.left == null || !isConstant(operator.left)) {
+            return operator;
+        }
+
+        final short left = valueOf(operator.left);
+        if (operator.right == null) {
+            return switch (operator.value) {
+                case NOT -> constant((short) ~left);
+                case NEG -> constant((short) -left);
+                default -> operator;
+            };
+        }
+
+        if (!isConstant(operator.right)) {
+            return operator;
+        }
+
+        final short right = valueOf(operator.right);
+        return switch (operator.value) {
+            case ADD -> constant((short) (left + right));
+            case SUB -> constant((short) (left - right));
+            case MUL -> constant((short) (left * right));
+            // Math.divide rounds toward zero like Java, but cannot take abs of -32768
+            case DIV -> right == 0 || left == Short.MIN_VALUE || right == Short.MIN_VALUE
+                    ? operator
+                    : constant((short) (left / right));
+            case AND -> constant((short) (left & right));
+            case OR -> constant((short) (left | right));
+            case EQ -> constant(left == right ? TRUE : FALSE);
+            // lt and gt may be implemented as a sign test of x - y, keep them when it overflows
+            case LS -> overflows(left - right) ? operator : constant(left < right ? TRUE : FALSE);
+            case GT -> overflows(left - right) ? operator : constant(left > right ? TRUE : FALSE);
+            default -> operator;
+        };
+    }
+
+    private static boolean overflows(int value) {
+        return value != (short) value;
+    }
+
+    /**
+     * Constants as they are produced by this pass: {@code k}, {@code k; neg}, {@code k; not} and keyword constants
+     */
+    static boolean isConstant(ATermSyntaxTree term) {
+        if (term instanceof IntegerConstantTree) {
+            return true;
+        }
+
+        if (term instanceof KeywordConstantTree keyword) {
+            return keyword.value != KeywordConstantTree.Keyword.THIS;
+        }
+
+        return term instanceof OperatorTree operator
+                && (operator.value == OperatorTree.Op.NEG || operator.value == OperatorTree.Op.NOT)
+                && operator.right == null
+                && operator.left instanceof IntegerConstantTree;
+    }
+
+    static short valueOf(ATermSyntaxTree term) {
+        if (term instanceof IntegerConstantTree integer) {
+            return integer.value;
+        }
+
+        if (term instanceof KeywordConstantTree keyword) {
+            return keyword.value == KeywordConstantTree.Keyword.TRUE ? TRUE : FALSE;
+        }
+
+        final OperatorTree operator = (OperatorTree) term;
+        final short value = ((IntegerConstantTree) operator.left).value;
+
+        return operator.value == OperatorTree.Op.NEG ? (short) -value : (short) ~value;
+    }
+
+    static ATermSyntaxTree constant(short value) {
+        if (value >= 0) {
+            return new IntegerConstantTree(value);
+        }
+
+        // -1 and -32768 have no positive negation in range
+        final boolean not = value == TRUE || value == Short.MIN_VALUE;
+        final OperatorTree operator = new OperatorTree(not ? OperatorTree.Op.NOT : OperatorTree.Op.NEG);
+        operator.left = new IntegerConstantTree(not ? (short) ~value : (short) -value);
+
+        return operator;
+    }
+}
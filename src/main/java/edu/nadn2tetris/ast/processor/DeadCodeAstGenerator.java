@@ -0,0 +1,121 @@
+package edu.nadn2tetris.ast.processor;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import edu.nadn2tetris.ast.AbstractSyntaxTree;
+import edu.nadn2tetris.ast.ClassTree;
+import edu.nadn2tetris.ast.statement.IfStatementTree;
+import edu.nadn2tetris.ast.statement.StatementTree;
+import edu.nadn2tetris.ast.statement.WhileStatementTree;
+import edu.nadn2tetris.ast.term.subroutine.SubroutineBodyTree;
+import edu.nadn2tetris.ast.term.subroutine.SubroutineDeclarationTree;
+
+/**
+ * Drops statements which can never run: everything after a {@code return}, a {@code while} with a constant
+ * true condition or an {@code if} whose both branches end that way, {@code while (false)} loops and
+ * the dead branch of an {@code if} with a constant condition, the live branch is spliced in its place.
+ * Conditions are expected to be folded by {@link ConstantFoldingAstGenerator} first, any non-zero constant is true.
+ */
+public final class DeadCodeAstGenerator implements AstGenerator<AbstractSyntaxTree> {
+
+    @Override
+    public AbstractSyntaxTree generate(AbstractSyntaxTree root) {
+        final ClassTree classTree = (ClassTree) root;
+        if (classTree.blocks == null) {
+            return root;
+        }
+
+        for (AbstractSyntaxTree block : classTree.blocks) {
+            if (block instanceof SubroutineDeclarationTree subroutine && subroutine.subroutineBodyTree.nodes != null) {
+                eliminate(subroutine.subroutineBodyTree);
+            }
+        }
+
+        return root;
+    }
+
+    private void eliminate(SubroutineBodyTree body) {
+        final List<AbstractSyntaxTree> nodes = new ArrayList<>(body.nodes.size());
+        final List<StatementTree> statements = new ArrayList<>(body.nodes.size());
+        for (AbstractSyntaxTree node : body.nodes) {
+            if (node instanceof StatementTree statement) {
+                statements.add(statement);
+            } else {
+                nodes.add(node);
+            }
+        }
+
+        final List<StatementTree> live = new ArrayList<>(statements.size());
+        eliminate(statements, live);
+        nodes.addAll(live);
+        body.nodes = nodes;
+    }
+
+    /**
+     * Appends the reachable statements to live
+     *
+     * @return true if control never leaves the statements through their end
+     */
+    private boolean eliminate(List<StatementTree> statements, List<StatementTree> live) {
+        if (statements == null) {
+            return false;
+        }
+
+        for (StatementTree statement : statements) {
+            if (eliminate(statement, live)) {
+                return true;
+            }
+        }
+
+        return false;
+    }
+
+    private boolean eliminate(StatementTree statement, List<StatementTree> live) {
+        switch (statement.getNodeKind()) {
+            case RETURN_STATEMENT -> {
+                live.add(statement);
+                return true;
+            }
+            case IF_STATEMENT -> {
+                final IfStatementTree ifStatement = (IfStatementTree) statement;
+                if (ConstantFoldingAstGenerator.isConstant(ifStatement.condition)) {
+                    return ConstantFoldingAstGenerator.valueOf(ifStatement.condition) != 0
+                            ? eliminate(ifStatement.ifBody, live)
+                            : eliminate(ifStatement.elseBody, live);
+                }
+
+                final List<StatementTree> ifBody = new ArrayList<>();
+                final List<StatementTree> elseBody = new ArrayList<>();
+                final boolean ifTerminates = eliminate(ifStatement.ifBody, ifBody);
+                final boolean elseTerminates = eliminate(ifStatement.elseBody, elseBody);
+                ifStatement.ifBody = ifBody;
+                if (ifStatement.elseBody != null) {
+                    ifStatement.elseBody = elseBody;
+                }
+                live.add(statement);
+
+                return ifTerminates && elseTerminates;
+            }
+            case WHILE_STATEMENT -> {
+                final WhileStatementTree whileStatement = (WhileStatementTree) statement;
+                final boolean constant = ConstantFoldingAstGenerator.isConstant(whileStatement.condition);
+                if (constant && ConstantFoldingAstGenerator.valueOf(whileStatement.condition) == 0) {
+                    return false;
+                }
+
+                final List<StatementTree> body = new ArrayList<>();
+                eliminate(whileStatement.body, body);
+                whileStatement.body = body;
+                live.add(statement);
+
+                // Jack has no break, only a return leaves an endless loop
+                return constant;
+            }
+            default -> {
+                live.add(statement);
+                return false;
+            }
+        }
+    }
+}
@@ -0,0 +1,501 @@
+package edu.nadn2tetris.ast.processor;
+
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import edu.nadn2tetris.ast.AbstractSyntaxTree;
+import edu.nadn2tetris.ast.ClassTree;
+import edu.nadn2tetris.ast.statement.DoStatementTree;
+import edu.nadn2tetris.ast.statement.IfStatementTree;
+import edu.nadn2tetris.ast.statement.LetStatementTree;
+import edu.nadn2tetris.ast.statement.ReturnStatementTree;
+import edu.nadn2tetris.ast.statement.StatementTree;
+import edu.nadn2tetris.ast.statement.WhileStatementTree;
+import edu.nadn2tetris.ast.term.ATermSyntaxTree;
+import edu.nadn2tetris.ast.term.ArraySyntaxTree;
+import edu.nadn2tetris.ast.term.IdentifierTree;
+import edu.nadn2tetris.ast.term.IntegerConstantTree;
+import edu.nadn2tetris.ast.term.KeywordConstantTree;
+import edu.nadn2tetris.ast.term.OperatorTree;
+import edu.nadn2tetris.ast.term.StringConstantTree;
+import edu.nadn2tetris.ast.term.subroutine.SubroutineCallTree;
+import edu.nadn2tetris.ast.term.subroutine.SubroutineDeclarationTree;
+import edu.nadn2tetris.common.NameTable;
+import edu.nadn2tetris.table.FileSymbolTable;
+import edu.nadn2tetris.table.IdentifierInfo;
+import edu.nadn2tetris.table.Kind;
+
+/**
+ * Replaces calls of leaf functions and methods whose body is a single {@code return expression} with the expression.
+ * Jack has no statement expressions, so only such bodies can take the place of a call inside an expression.
+ * <p>
+ * Names of the callee are remapped into the caller: parameters become copies of the arguments,
+ * a field of the callee becomes {@code receiver[index]} (an object is the array of its fields),
+ * fields and statics of the same class stay as they are if the caller sees them under the same name.
+ * Callees reading their locals and calls with arguments that call, allocate or would be evaluated
+ * more than once are left alone.
+ */
+public final class InliningAstGenerator implements AstGenerator<AbstractSyntaxTree> {
+    private final FileSymbolTable symbolTable;
+    private final Candidates candidates;
+    private final NameTable names;
+    private int classNameId;
+    private int inlined;
+
+    public InliningAstGenerator(FileSymbolTable symbolTable, Candidates candidates, NameTable names) {
+        this.symbolTable = symbolTable;
+        this.candidates = candidates;
+        this.names = names;
+    }
+
+    @Override
+    public AbstractSyntaxTree generate(AbstractSyntaxTree root) {
+        final ClassTree classTree = (ClassTree) root;
+        if (classTree.blocks == null) {
+            return root;
+        }
+
+        this.classNameId = classTree.classNameId;
+        for (AbstractSyntaxTree block : classTree.blocks) {
+            if (block instanceof SubroutineDeclarationTree subroutine && subroutine.subroutineBodyTree.nodes != null) {
+                final int methodId = names.qualify(classNameId, subroutine.nameId);
+                for (AbstractSyntaxTree node : subroutine.subroutineBodyTree.nodes) {
+                    if (node instanceof StatementTree statement) {
+                        inlineStatement(statement, methodId);
+                    }
+                }
+            }
+        }
+
+        return root;
+    }
+
+    /**
+     * @return amount of call sites replaced so far
+     */
+    public int inlined() {
+        return inlined;
+    }
+
+    /**
+     * Subroutines of the whole program which may be inlined
+     *
+     * @param budget max amount of nodes in the returned expression
+     */
+    public static Candidates candidates(ClassTree[] classTrees, FileSymbolTable[] symbolTables, NameTable names, int budget) {
+        final Candidates candidates = new Candidates();
+        for (int i = 0; i < classTrees.length; i++) {
+            if (classTrees[i].blocks == null) {
+                continue;
+            }
+
+            for (AbstractSyntaxTree block : classTrees[i].blocks) {
+                if (!(block instanceof SubroutineDeclarationTree subroutine)
+                        || subroutine.subroutineType == SubroutineDeclarationTree.SubroutineType.CONSTRUCTOR) {
+                    continue;
+                }
+
+                final int subroutineId = names.qualify(classTrees[i].classNameId, subroutine.nameId);
+                final ATermSyntaxTree expression = returnedExpression(subroutine);
+                if (expression != null && size(expression) <= budget
+                        && isInlineable(expression, symbolTables[i], subroutineId, subroutine)) {
+                    candidates.byId.put(subroutineId, new Candidate(subroutine, symbolTables[i], classTrees[i].classNameId, subroutineId, expression));
+                }
+            }
+        }
+
+        return candidates;
+    }
+
+    private void inlineStatements(List<StatementTree> statements, int methodId) {
+        if (statements == null) {
+            return;
+        }
+
+        for (StatementTree statement : statements) {
+            inlineStatement(statement, methodId);
+        }
+    }
+
+    private void inlineStatement(StatementTree statement, int methodId) {
+        switch (statement.getNodeKind()) {
+            case LET_STATEMENT -> {
+                final LetStatementTree let = (LetStatementTree) statement;
+                if (let.arraySyntaxTree != null) {
+                    let.arraySyntaxTree = (ArraySyntaxTree) inline(let.arraySyntaxTree, methodId);
+                }
+                let.expression = inline(let.expression, methodId);
+            }
+            case IF_STATEMENT -> {
+                final IfStatementTree ifStatement = (IfStatementTree) statement;
+                ifStatement.condition = inline(ifStatement.condition, methodId);
+                inlineStatements(ifStatement.ifBody, methodId);
+                inlineStatements(ifStatement.elseBody, methodId);
+            }
+            case WHILE_STATEMENT -> {
+                final WhileStatementTree whileStatement = (WhileStatementTree) statement;
+                whileStatement.condition = inline(whileStatement.condition, methodId);
+                inlineStatements(whileStatement.body, methodId);
+            }
+            // the call itself stays, do needs a call
+            case DO_STATEMENT -> inlineArgs(((DoStatementTree) statement).subroutineCallTree, methodId);
+            case RETURN_STATEMENT -> {
+                final ReturnStatementTree returnStatement = (ReturnStatementTree) statement;
+                if (returnStatement.expression != null) {
+                    returnStatement.expression = inline(returnStatement.expression, methodId);
+                }
+            }
+            default -> throw new IllegalStateException("Unexpected node kind: " + statement.getNodeKind());
+        }
+    }
+
+    private void inlineArgs(SubroutineCallTree call, int methodId) {
+        for (int i = 0; i < call.argList.size(); i++) {
+            call.argList.set(i, inline(call.argList.get(i), methodId));
+        }
+    }
+
+    /**
+     * @return the term itself or the inlined body
+     */
+    private ATermSyntaxTree inline(ATermSyntaxTree term, int methodId) {
+        switch (term.getNodeKind()) {
+            case SUBROUTINE_CALL -> {
+                final SubroutineCallTree call = (SubroutineCallTree) term;
+                inlineArgs(call, methodId);
+
+                final ATermSyntaxTree body = inlineCall(call, methodId);
+                if (body == null) {
+                    return term;
+                }
+
+                inlined++;
+                return body;
+            }
+            case ARRAY -> {
+                final ArraySyntaxTree array = (ArraySyntaxTree) term;
+                final ATermSyntaxTree index = inline(array.expressionTree, methodId);
+                if (index == array.expressionTree) {
+                    return term;
+                }
+
+                final ArraySyntaxTree inlined = new ArraySyntaxTree(array.identifierName, array.identifierId, index);
+                inlined.expression = array.expression;
+                return inlined;
+            }
+            case OP -> {
+                if (term.left != null) {
+                    term.left = inline(term.left, methodId);
+                }
+                if (term.right != null) {
+                    term.right = inline(term.right, methodId);
+                }
+                return term;
+            }
+            default -> {
+                return term;
+            }
+        }
+    }
+
+    /**
+     * @return the body with remapped names or null if the call cannot be inlined
+     */
+    private ATermSyntaxTree inlineCall(SubroutineCallTree call, int methodId) {
+        final IdentifierInfo receiver = call.receiverId >= 0 ? symbolTable.get(methodId, call.receiverId) : null;
+        final int calleeId;
+        if (call.receiverId < 0) {
+            calleeId = names.qualify(classNameId, call.subroutineId);
+        } else if (receiver != null) {
+            calleeId = names.qualify(receiver.classTypeId, call.subroutineId);
+        } else {
+            calleeId = call.identifierId;
+        }
+
+        final Candidate callee = candidates.byId.get(calleeId);
+        if (callee == null || callee.parameterCount() != call.argList.size()) {
+            return null;
+        }
+
+        // a class name receiver calls a function, a variable or no receiver calls a method
+        final boolean method = callee.subroutine.subroutineType == SubroutineDeclarationTree.SubroutineType.METHOD;
+        if (method != (call.receiverId < 0 || receiver != null)) {
+            return null;
+        }
+
+        for (ATermSyntaxTree arg : call.argList) {
+            if (!isPure(arg)) {
+                return null;
+            }
+        }
+
+        final Site site = new Site(callee, call, receiver, methodId, method);
+        final ATermSyntaxTree body = site.copy(callee.expression);
+        if (body == null) {
+            return null;
+        }
+
+        body.expression = true;
+        return body;
+    }
+
+    private static ATermSyntaxTree returnedExpression(SubroutineDeclarationTree subroutine) {
+        if (subroutine.subroutineBodyTree.nodes == null) {
+            return null;
+        }
+
+        ReturnStatementTree returnStatement = null;
+        for (AbstractSyntaxTree node : subroutine.subroutineBodyTree.nodes) {
+            if (!(node instanceof StatementTree)) {
+                continue;
+            }
+            if (returnStatement != null || !(node instanceof ReturnStatementTree statement)) {
+                return null;
+            }
+            returnStatement = statement;
+        }
+
+        return returnStatement == null ? null : returnStatement.expression;
+    }
+
+    private static boolean isInlineable(ATermSyntaxTree term, FileSymbolTable symbolTable, int subroutineId, SubroutineDeclarationTree subroutine) {
+        if (term == null) {
+            return true;
+        }
+
+        switch (term.getNodeKind()) {
+            case SUBROUTINE_CALL, STRING_CONSTANT -> {
+                return false;
+            }
+            case IDENTIFIER -> {
+                final IdentifierInfo info = symbolTable.get(subroutineId, ((IdentifierTree) term).varId);
+                return info != null && info.kind != Kind.VAR
+                        && (info.kind != Kind.FIELD || subroutine.subroutineType == SubroutineDeclarationTree.SubroutineType.METHOD);
+            }
+            case ARRAY -> {
+                final ArraySyntaxTree array = (ArraySyntaxTree) term;
+                final IdentifierInfo info = symbolTable.get(subroutineId, array.identifierId);
+                return info != null && info.kind != Kind.VAR
+                        && isInlineable(array.expressionTree, symbolTable, subroutineId, subroutine);
+            }
+            default -> {
+                return isInlineable(term.left, symbolTable, subroutineId, subroutine)
+                        && isInlineable(term.right, symbolTable, subroutineId, subroutine);
+            }
+        }
+    }
+
+    /**
+     * Arguments without calls and allocations, so they can be moved and dropped
+     */
+    private static boolean isPure(ATermSyntaxTree term) {
+        if (term == null) {
+            return true;
+        }
+
+        return switch (term.getNodeKind()) {
+            case SUBROUTINE_CALL, STRING_CONSTANT -> false;
+            case ARRAY -> isPure(((ArraySyntaxTree) term).expressionTree);
+            default -> isPure(term.left) && isPure(term.right);
+        };
+    }
+
+    private static boolean isTrivial(ATermSyntaxTree term) {
+        return term instanceof IdentifierTree || ConstantFoldingAstGenerator.isConstant(term);
+    }
+
+    private static int size(ATermSyntaxTree term) {
+        if (term == null) {
+            return 0;
+        }
+
+        final int index = term instanceof ArraySyntaxTree array ? size(array.expressionTree) : 0;
+
+        return 1 + index + size(term.left) + size(term.right);
+    }
+
+    /**
+     * A call site being inlined, copies the callee expression with names of the caller
+     */
+    private final class Site {
+        private final Candidate callee;
+        private final SubroutineCallTree call;
+        private final IdentifierInfo receiver; // null for this
+        private final int methodId;
+        private final int argOffset;
+        private final int[] argUses;
+
+        private Site(Candidate callee, SubroutineCallTree call, IdentifierInfo receiver, int methodId, boolean method) {
+            this.callee = callee;
+            this.call = call;
+            this.receiver = receiver;
+            this.methodId = methodId;
+            this.argOffset = method ? 1 : 0; // argument 0 of a method is this
+            this.argUses = new int[call.argList.size()];
+        }
+
+        private ATermSyntaxTree copy(ATermSyntaxTree term) {
+            if (term == null) {
+                return null;
+            }
+
+            final ATermSyntaxTree copy = switch (term.getNodeKind()) {
+                case INTEGER_CONSTANT -> new IntegerConstantTree(((IntegerConstantTree) term).value);
+                case KEYWORD -> copyKeyword((KeywordConstantTree) term);
+                case IDENTIFIER -> copyIdentifier((IdentifierTree) term);
+                case ARRAY -> copyArray((ArraySyntaxTree) term);
+                case OP -> copyOperator((OperatorTree) term);
+                default -> null;
+            };
+
+            if (copy != null) {
+                copy.expression = copy.expression || term.expression;
+            }
+
+            return copy;
+        }
+
+        private ATermSyntaxTree copyKeyword(KeywordConstantTree keyword) {
+            if (keyword.value == KeywordConstantTree.Keyword.THIS && receiver != null) {
+                return new IdentifierTree(receiver.name, receiver.nameId);
+            }
+
+            return new KeywordConstantTree(keyword.value);
+        }
+
+        private ATermSyntaxTree copyOperator(OperatorTree operator) {
+            final OperatorTree copy = new OperatorTree(operator.value);
+            if (operator.left != null && (copy.left = copy(operator.left)) == null) {
+                return null;
+            }
+            if (operator.right != null && (copy.right = copy(operator.right)) == null) {
+                return null;
+            }
+
+            return copy;
+        }
+
+        private ATermSyntaxTree copyIdentifier(IdentifierTree identifier) {
+            final IdentifierInfo info = callee.symbolTable.get(callee.subroutineId, identifier.varId);
+            if (info.kind == Kind.ARG) {
+                return argument(info.index);
+            }
+
+            if (info.kind == Kind.FIELD && receiver != null) {
+                return new ArraySyntaxTree(receiver.name, receiver.nameId, new IntegerConstantTree(info.index));
+            }
+
+            return seenByCaller(info) ? new IdentifierTree(identifier.varName, identifier.varId) : null;
+        }
+
+        private ATermSyntaxTree copyArray(ArraySyntaxTree array) {
+            final ATermSyntaxTree index = copy(array.expressionTree);
+            if (index == null) {
+                return null;
+            }
+
+            final IdentifierInfo info = callee.symbolTable.get(callee.subroutineId, array.identifierId);
+            if (info.kind == Kind.ARG) {
+                // the array variable has to be a variable of the caller too
+                final ATermSyntaxTree arg = argument(info.index);
+                return arg instanceof IdentifierTree identifier
+                        ? new ArraySyntaxTree(identifier.varName, identifier.varId, index)
+                        : null;
+            }
+
+            return seenByCaller(info) ? new ArraySyntaxTree(array.identifierName, array.identifierId, index) : null;
+        }
+
+        private ATermSyntaxTree argument(int argIndex) {
+            final int i = argIndex - argOffset;
+            if (i < 0) {
+                return null; // this of a method is accessed by keyword only
+            }
+
+            final ATermSyntaxTree arg = call.argList.get(i);
+            if (++argUses[i] > 1 && !isTrivial(arg)) {
+                return null;
+            }
+
+            return copyArgument(arg);
+        }
+
+        /**
+         * A static or a field of this class which the caller resolves to the same variable
+         */
+        private boolean seenByCaller(IdentifierInfo info) {
+            if (callee.classNameId != classNameId || info.kind != Kind.STATIC && info.kind != Kind.FIELD) {
+                return false;
+            }
+
+            final IdentifierInfo callerInfo = symbolTable.get(methodId, info.nameId);
+            return callerInfo != null && callerInfo.kind == info.kind && callerInfo.index == info.index;
+        }
+    }
+
+    /**
+     * Arguments are caller terms already, they are copied as they are
+     */
+    private static ATermSyntaxTree copyArgument(ATermSyntaxTree term) {
+        if (term == null) {
+            return null;
+        }
+
+        final ATermSyntaxTree copy = switch (term.getNodeKind()) {
+            case INTEGER_CONSTANT -> new IntegerConstantTree(((IntegerConstantTree) term).value);
+            case KEYWORD -> new KeywordConstantTree(((KeywordConstantTree) term).value);
+            case IDENTIFIER -> new IdentifierTree(((IdentifierTree) term).varName, ((IdentifierTree) term).varId);
+            case ARRAY -> {
+                final ArraySyntaxTree array = (ArraySyntaxTree) term;
+                yield new ArraySyntaxTree(array.identifierName, array.identifierId, copyArgument(array.expressionTree));
+            }
+            case OP -> {
+                final OperatorTree operator = new OperatorTree(((OperatorTree) term).value);
+                operator.left = copyArgument(term.left);
+                operator.right = copyArgument(term.right);
+                yield operator;
+            }
+            default -> throw new IllegalStateException("Unexpected node kind: " + term.getNodeKind());
+        };
+        copy.expression = term.expression;
+
+        return copy;
+    }
+
+    public static final class Candidates {
+        private final Map<Integer, Candidate> byId = new HashMap<>();
+
+        private Candidates() {}
+
+        public int size() {
+            return byId.size();
+        }
+    }
+
+    private static final class Candidate {
+        private final SubroutineDeclarationTree subroutine;
+        private final FileSymbolTable symbolTable;
+        private final int classNameId;
+        private final int subroutineId;
+        private final ATermSyntaxTree expression;
+
+        private Candidate(
+                SubroutineDeclarationTree subroutine,
+                FileSymbolTable symbolTable,
+                int classNameId,
+                int subroutineId,
+                ATermSyntaxTree expression
+        ) {
+            this.subroutine = subroutine;
+            this.symbolTable = symbolTable;
+            this.classNameId = classNameId;
+            this.subroutineId = subroutineId;
+            this.expression = expression;
+        }
+
+        private int parameterCount() {
+            return subroutine.parameterList == null ? 0 : subroutine.parameterList.size();
+        }
+    }
+}
@@ -0,0 +1,275 @@
+package edu.nadn2tetris.ast.processor;
+
+import java.util.BitSet;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import edu.nadn2tetris.ast.AbstractSyntaxTree;
+import edu.nadn2tetris.ast.ClassTree;
+import edu.nadn2tetris.ast.statement.DoStatementTree;
+import edu.nadn2tetris.ast.statement.IfStatementTree;
+import edu.nadn2tetris.ast.statement.LetStatementTree;
+import edu.nadn2tetris.ast.statement.ReturnStatementTree;
+import edu.nadn2tetris.ast.statement.StatementTree;
+import edu.nadn2tetris.ast.statement.WhileStatementTree;
+import edu.nadn2tetris.ast.term.ATermSyntaxTree;
+import edu.nadn2tetris.ast.term.ArraySyntaxTree;
+import edu.nadn2tetris.ast.term.IdentifierTree;
+import edu.nadn2tetris.ast.term.subroutine.SubroutineCallTree;
+import edu.nadn2tetris.ast.term.subroutine.SubroutineDeclarationTree;
+import edu.nadn2tetris.common.NameTable;
+import edu.nadn2tetris.table.FileSymbolTable;
+import edu.nadn2tetris.table.IdentifierInfo;
+import edu.nadn2tetris.table.Kind;
+
+/**
+ * Liveness of the locals of a subroutine, locals with disjoint live ranges share a {@code local} slot
+ * and locals which are never read get none.
+ * <p>
+ * Backward dataflow over the statement tree, loops are iterated until their live sets are stable.
+ * A let interferes its local with everything live after it. The VM zeroes all locals on entry,
+ * so locals read before any write are live at entry and interfere with each other as well.
+ */
+public final class LivenessAstGenerator implements AstGenerator<LivenessAstGenerator.LocalSlots> {
+    private final FileSymbolTable symbolTable;
+    private final int methodId;
+    private final int varCount;
+    private final BitSet[] interference;
+    private final BitSet read;
+
+    public LivenessAstGenerator(FileSymbolTable symbolTable, int methodId) {
+        this.symbolTable = symbolTable;
+        this.methodId = methodId;
+        this.varCount = symbolTable.getMethodVarCount(methodId);
+        this.interference = new BitSet[varCount];
+        for (int i = 0; i < varCount; i++) {
+            interference[i] = new BitSet(varCount);
+        }
+        this.read = new BitSet(varCount);
+    }
+
+    /**
+     * @return slots of every subroutine of the class by qualified subroutine name id
+     */
+    public static Map<Integer, LocalSlots> ofClass(ClassTree classTree, FileSymbolTable symbolTable, NameTable names) {
+        final Map<Integer, LocalSlots> slots = new HashMap<>();
+        if (classTree.blocks == null) {
+            return slots;
+        }
+
+        for (AbstractSyntaxTree block : classTree.blocks) {
+            if (block instanceof SubroutineDeclarationTree subroutine) {
+                final int methodId = names.qualify(classTree.classNameId, subroutine.nameId);
+                slots.put(methodId, new LivenessAstGenerator(symbolTable, methodId).generate(subroutine));
+            }
+        }
+
+        return slots;
+    }
+
+    @Override
+    public LocalSlots generate(AbstractSyntaxTree root) {
+        final SubroutineDeclarationTree subroutine = (SubroutineDeclarationTree) root;
+        final List<AbstractSyntaxTree> nodes = subroutine.subroutineBodyTree.nodes;
+
+        BitSet live = new BitSet(varCount);
+        if (nodes != null) {
+            for (int i = nodes.size() - 1; i >= 0; i--) {
+                if (nodes.get(i) instanceof StatementTree statement) {
+                    live = liveIn(statement, live);
+                }
+            }
+        }
+        interfereAll(live, live);
+
+        return color(live);
+    }
+
+    private BitSet liveIn(List<StatementTree> statements, BitSet liveOut) {
+        BitSet live = liveOut;
+        if (statements == null) {
+            return live;
+        }
+
+        for (int i = statements.size() - 1; i >= 0; i--) {
+            live = liveIn(statements.get(i), live);
+        }
+
+        return live;
+    }
+
+    private BitSet liveIn(StatementTree statement, BitSet liveOut) {
+        switch (statement.getNodeKind()) {
+            case LET_STATEMENT -> {
+                final LetStatementTree let = (LetStatementTree) statement;
+                final BitSet live = (BitSet) liveOut.clone();
+                if (let.arraySyntaxTree != null) {
+                    use(let.arraySyntaxTree, live); // a store through the array reads the local
+                } else {
+                    final int var = varIndex(let.identifierId);
+                    if (var >= 0) {
+                        interfere(var, liveOut);
+                        live.clear(var);
+                    }
+                }
+                use(let.expression, live);
+                return live;
+            }
+            case IF_STATEMENT -> {
+                final IfStatementTree ifStatement = (IfStatementTree) statement;
+                // an empty branch gives back liveOut itself, which must not change
+                final BitSet live = (BitSet) liveIn(ifStatement.ifBody, liveOut).clone();
+                live.or(liveIn(ifStatement.elseBody, liveOut));
+                use(ifStatement.condition, live);
+                return live;
+            }
+            case WHILE_STATEMENT -> {
+                final WhileStatementTree whileStatement = (WhileStatementTree) statement;
+                final BitSet head = liveIn(whileStatement.condition, liveOut);
+                while (true) {
+                    final BitSet next = liveIn(whileStatement.body, head);
+                    next.or(head);
+                    if (next.equals(head)) {
+                        return head;
+                    }
+                    head.or(next);
+                }
+            }
+            case DO_STATEMENT -> {
+                return liveIn(((DoStatementTree) statement).subroutineCallTree, liveOut);
+            }
+            case RETURN_STATEMENT -> {
+                final ReturnStatementTree returnStatement = (ReturnStatementTree) statement;
+                final BitSet live = new BitSet(varCount);
+                use(returnStatement.expression, live);
+                return live;
+            }
+            default -> throw new IllegalStateException("Unexpected node kind: " + statement.getNodeKind());
+        }
+    }
+
+    private BitSet liveIn(ATermSyntaxTree term, BitSet liveOut) {
+        final BitSet live = (BitSet) liveOut.clone();
+        use(term, live);
+
+        return live;
+    }
+
+    private void use(ATermSyntaxTree term, BitSet live) {
+        if (term == null) {
+            return;
+        }
+
+        switch (term.getNodeKind()) {
+            case IDENTIFIER -> use(((IdentifierTree) term).varId, live);
+            case ARRAY -> {
+                final ArraySyntaxTree array = (ArraySyntaxTree) term;
+                use(array.identifierId, live);
+                use(array.expressionTree, live);
+            }
+            case SUBROUTINE_CALL -> {
+                final SubroutineCallTree call = (SubroutineCallTree) term;
+                if (call.receiverId >= 0) {
+                    use(call.receiverId, live);
+                }
+                for (ATermSyntaxTree arg : call.argList) {
+                    use(arg, live);
+                }
+            }
+            default -> {
+            }
+        }
+
+        use(term.left, live);
+        use(term.right, live);
+    }
+
+    private void use(int identifierId, BitSet live) {
+        final int var = varIndex(identifierId);
+        if (var >= 0) {
+            live.set(var);
+            read.set(var);
+        }
+    }
+
+    private int varIndex(int identifierId) {
+        final IdentifierInfo info = symbolTable.get(methodId, identifierId);
+
+        return info != null && info.kind == Kind.VAR ? info.index : -1;
+    }
+
+    private void interfere(int var, BitSet live) {
+        for (int other = live.nextSetBit(0); other >= 0; other = live.nextSetBit(other + 1)) {
+            if (other != var) {
+                interference[var].set(other);
+                interference[other].set(var);
+            }
+        }
+    }
+
+    private void interfereAll(BitSet vars, BitSet live) {
+        for (int var = vars.nextSetBit(0); var >= 0; var = vars.nextSetBit(var + 1)) {
+            interfere(var, live);
+        }
+    }
+
+    /**
+     * Greedy coloring in declaration order, a local gets the lowest slot none of its neighbours has
+     */
+    private LocalSlots color(BitSet liveAtEntry) {
+        final short[] slots = new short[varCount];
+        short count = 0;
+        final BitSet taken = new BitSet();
+        for (int var = 0; var < varCount; var++) {
+            if (!read.get(var)) {
+                slots[var] = -1;
+                continue;
+            }
+
+            taken.clear();
+            final BitSet neighbours = interference[var];
+            for (int other = neighbours.nextSetBit(0); other >= 0 && other < var; other = neighbours.nextSetBit(other + 1)) {
+                if (slots[other] >= 0) {
+                    taken.set(slots[other]);
+                }
+            }
+
+            slots[var] = (short) taken.nextClearBit(0);
+            count = (short) Math.max(count, slots[var] + 1);
+        }
+
+        final BitSet entrySlots = new BitSet(count);
+        for (int var = liveAtEntry.nextSetBit(0); var >= 0; var = liveAtEntry.nextSetBit(var + 1)) {
+            entrySlots.set(slots[var]);
+        }
+
+        return new LocalSlots(slots, count, entrySlots);
+    }
+
+    public static final class LocalSlots {
+        private final short[] slots;
+        public final short count;
+        private final BitSet entrySlots;
+
+        private LocalSlots(short[] slots, short count, BitSet entrySlots) {
+            this.slots = slots;
+            this.count = count;
+            this.entrySlots = entrySlots;
+        }
+
+        /**
+         * @return true if the slot is read before it is written, so it relies on the zeroed frame
+         */
+        public boolean isLiveAtEntry(short slot) {
+            return entrySlots.get(slot);
+        }
+
+        /**
+         * @return slot of the local with the given declared index or -1 if it is never read
+         */
+        public short slotOf(short index) {
+            return slots[index];
+        }
+    }
+}
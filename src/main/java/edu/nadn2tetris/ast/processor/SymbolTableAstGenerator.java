@@ -1,19 +1,21 @@
 package edu.nadn2tetris.ast.processor;
 
-import java.util.HashMap;
+import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.List;
-import java.util.Map;
 import java.util.Set;
 
 import edu.nadn2tetris.ast.AbstractSyntaxTree;
 import edu.nadn2tetris.ast.ClassTree;
 import edu.nadn2tetris.ast.NodeKind;
+import edu.nadn2tetris.ast.Type;
 import edu.nadn2tetris.ast.declaration.ADeclarationTree;
 import edu.nadn2tetris.ast.declaration.ClassVarDeclarationTree;
 import edu.nadn2tetris.ast.declaration.VarDeclarationTree;
 import edu.nadn2tetris.ast.term.ParameterTree;
 import edu.nadn2tetris.ast.term.subroutine.SubroutineBodyTree;
 import edu.nadn2tetris.ast.term.subroutine.SubroutineDeclarationTree;
+import edu.nadn2tetris.common.NameTable;
 import edu.nadn2tetris.table.FileSymbolTable;
 import edu.nadn2tetris.table.Kind;
 import edu.nadn2tetris.table.SymbolTable;
@@ -21,23 +23,34 @@ import edu.nadn2tetris.table.SymbolTable;
 public final class SymbolTableAstGenerator implements AstGenerator<FileSymbolTable> {
     private static final Set<NodeKind> DECLARATION_KINDS = Set.of(NodeKind.CLASS_VAR_DECLARATION, NodeKind.SUBROUTINE_DECLARATION);
 
-    private final SymbolTable classSymbolTable = new SymbolTable();
-    private final Map<String, SymbolTable> subroutineSymbolTables = new HashMap<>();
+    private final NameTable names;
+    private final SymbolTable classSymbolTable;
+    private final List<SymbolTable> subroutineSymbolTables = new ArrayList<>();
+    private int[] subroutineIds = new int[16];
 
-    private String className;
-    private String currSubroutineName;
+    private int classNameId = -1;
+    private SymbolTable currSubroutineTable;
+
+    public SymbolTableAstGenerator(NameTable names) {
+        this.names = names;
+        this.classSymbolTable = new SymbolTable(names);
+    }
 
     @Override
     public FileSymbolTable generate(AbstractSyntaxTree root) {
         fillSymbolTree(root);
-        return new FileSymbolTable(classSymbolTable, subroutineSymbolTables);
+        return new FileSymbolTable(
+                classSymbolTable,
+                Arrays.copyOf(subroutineIds, subroutineSymbolTables.size()),
+                subroutineSymbolTables.toArray(new SymbolTable[0])
+        );
     }
 
     private void fillSymbolTree(AbstractSyntaxTree root) {
         switch (root.getNodeKind()) {
             case CLASS -> {
                 final ClassTree classTree = (ClassTree) root;
-                this.className = classTree.className;
+                this.classNameId = classTree.classNameId;
                 final List<AbstractSyntaxTree> list = classTree.blocks.stream()
                         .filter(node -> DECLARATION_KINDS.contains(node.getNodeKind())).toList();
                 for (AbstractSyntaxTree block : list) {
@@ -53,19 +66,23 @@ public final class SymbolTableAstGenerator implements AstGenerator<FileSymbolTab
             }
             case SUBROUTINE_DECLARATION -> {
                 final SubroutineDeclarationTree subroutineDeclarationTree = (SubroutineDeclarationTree) root;
-                this.currSubroutineName = className + "." + subroutineDeclarationTree.name;
-
-                final SymbolTable createdSymbolTable = new SymbolTable();
+                final SymbolTable createdSymbolTable = new SymbolTable(names);
                 if (subroutineDeclarationTree.subroutineType == SubroutineDeclarationTree.SubroutineType.METHOD) {
-                    createdSymbolTable.define("this", className, Kind.ARG);
+                    createdSymbolTable.define(names.intern("this"), Type.CLASS, classNameId, Kind.ARG);
                 }
 
                 if (subroutineDeclarationTree.parameterList != null && !subroutineDeclarationTree.parameterList.isEmpty()) {
                     for (ParameterTree parameter : subroutineDeclarationTree.parameterList) {
-                        createdSymbolTable.define(parameter.name, parameter.getType(), Kind.ARG);
+                        createdSymbolTable.define(parameter.nameId, parameter.type, parameter.classNameTypeId, Kind.ARG);
                     }
                 }
-                subroutineSymbolTables.put(this.currSubroutineName, createdSymbolTable);
+
+                if (subroutineSymbolTables.size() == subroutineIds.length) {
+                    subroutineIds = Arrays.copyOf(subroutineIds, subroutineIds.length * 2);
+                }
+                subroutineIds[subroutineSymbolTables.size()] = names.qualify(classNameId, subroutineDeclarationTree.nameId);
+                subroutineSymbolTables.add(createdSymbolTable);
+                this.currSubroutineTable = createdSymbolTable;
 
                 fillSymbolTree(subroutineDeclarationTree.subroutineBodyTree);
             }
@@ -78,18 +95,18 @@ public final class SymbolTableAstGenerator implements AstGenerator<FileSymbolTab
                 }
             }
             case VAR_DECLARATION -> {
-                if (currSubroutineName == null) {
+                if (currSubroutineTable == null) {
                     throw new IllegalStateException("Current method not set");
                 }
-                process(subroutineSymbolTables.get(currSubroutineName), (VarDeclarationTree) root, Kind.VAR);
+                process(currSubroutineTable, (VarDeclarationTree) root, Kind.VAR);
             }
             default -> throw new IllegalStateException("Unsupported node kind: " + root.getNodeKind());
         }
     }
 
     private static void process(SymbolTable table, ADeclarationTree declarationTree, Kind kind) {
-        for (String name : declarationTree.varNames) {
-            table.define(name, declarationTree.getType(), kind);
+        for (int nameId : declarationTree.varNameIds) {
+            table.define(nameId, declarationTree.type, declarationTree.classNameTypeId, kind);
         }
     }
 }
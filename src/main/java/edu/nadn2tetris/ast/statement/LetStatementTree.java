@@ -6,6 +6,7 @@ import edu.nadn2tetris.ast.term.ArraySyntaxTree;
 
 public final class LetStatementTree extends StatementTree {
     public String identifierName;
+    public int identifierId = -1;
     public ArraySyntaxTree arraySyntaxTree; // if var is array
     public ATermSyntaxTree expression;
 
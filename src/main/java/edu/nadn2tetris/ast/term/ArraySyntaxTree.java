@@ -4,11 +4,13 @@ import edu.nadn2tetris.ast.NodeKind;
 
 public final class ArraySyntaxTree extends ATermSyntaxTree {
     public final String identifierName;
+    public final int identifierId;
     public final ATermSyntaxTree expressionTree;
 
-    public ArraySyntaxTree(String identifierName, ATermSyntaxTree expressionTree) {
+    public ArraySyntaxTree(String identifierName, int identifierId, ATermSyntaxTree expressionTree) {
         super(NodeKind.ARRAY);
         this.identifierName = identifierName;
+        this.identifierId = identifierId;
         this.expressionTree = expressionTree;
     }
 }
@@ -4,9 +4,11 @@ import edu.nadn2tetris.ast.NodeKind;
 
 public final class IdentifierTree extends ATermSyntaxTree {
     public final String varName;
+    public final int varId;
 
-    public IdentifierTree(String varName) {
+    public IdentifierTree(String varName, int varId) {
         super(NodeKind.IDENTIFIER);
         this.varName = varName;
+        this.varId = varId;
     }
 }
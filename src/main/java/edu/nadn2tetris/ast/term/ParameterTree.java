@@ -5,6 +5,7 @@ import edu.nadn2tetris.ast.NodeKind;
 
 public final class ParameterTree extends ATypedTree {
     public String name;
+    public int nameId = -1;
 
     public ParameterTree() {
         super(NodeKind.PARAMETER);
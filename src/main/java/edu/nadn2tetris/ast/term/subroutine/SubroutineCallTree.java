@@ -9,11 +9,17 @@ import edu.nadn2tetris.ast.term.ATermSyntaxTree;
 public final class SubroutineCallTree extends ATermSyntaxTree {
     // identifier or identifier.identifier
     public final String identifierName;
+    public final int identifierId;
+    public final int receiverId; // identifier before '.' or -1
+    public final int subroutineId; // identifier after '.' or the whole name
     public final List<ATermSyntaxTree> argList;
 
-    public SubroutineCallTree(String identifierName, List<ATermSyntaxTree> argList) {
+    public SubroutineCallTree(String identifierName, int identifierId, int receiverId, int subroutineId, List<ATermSyntaxTree> argList) {
         super(NodeKind.SUBROUTINE_CALL);
         this.identifierName = identifierName;
+        this.identifierId = identifierId;
+        this.receiverId = receiverId;
+        this.subroutineId = subroutineId;
         this.argList = argList == null ? Collections.emptyList() : argList;
     }
 }
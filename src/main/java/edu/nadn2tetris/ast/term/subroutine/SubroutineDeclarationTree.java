@@ -15,6 +15,7 @@ public final class SubroutineDeclarationTree extends ATypedTree {
 
     public SubroutineType subroutineType;
     public String name;
+    public int nameId = -1;
 
     public List<ParameterTree> parameterList;
     public SubroutineBodyTree subroutineBodyTree;
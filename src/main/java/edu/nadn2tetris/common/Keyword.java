@@ -1,35 +1,49 @@
 package edu.nadn2tetris.common;
 
-import java.util.regex.Pattern;
-
 public enum Keyword {
-    CLASS(Pattern.compile("^class$")),
-    CONSTRUCTOR(Pattern.compile("^constructor$")),
-    FUNCTION(Pattern.compile("^function$")),
-    METHOD(Pattern.compile("^method$")),
-    FIELD(Pattern.compile("^field$")),
-    STATIC(Pattern.compile("^static$")),
-    VAR(Pattern.compile("^var$")),
-    INT(Pattern.compile("^int$")),
-    CHAR(Pattern.compile("^char$")),
-
-    BOOLEAN(Pattern.compile("^boolean$")),
-    VOID(Pattern.compile("^void$")),
-    TRUE(Pattern.compile("^true$")),
-    FALSE(Pattern.compile("^false$")),
-    NULL(Pattern.compile("^null$")),
-    THIS(Pattern.compile("^this$")),
-    LET(Pattern.compile("^let$")),
-    DO(Pattern.compile("^do$")),
-    IF(Pattern.compile("^if$")),
-    ELSE(Pattern.compile("^else$")),
-    WHILE(Pattern.compile("^while$")),
-    RETURN(Pattern.compile("^return$"));
-
-    private final Pattern pattern;
-
-    Keyword(Pattern pattern) {
-        this.pattern = pattern;
+    CLASS,
+    CONSTRUCTOR,
+    FUNCTION,
+    METHOD,
+    FIELD,
+    STATIC,
+    VAR,
+    INT,
+    CHAR,
+
+    BOOLEAN,
+    VOID,
+    TRUE,
+    FALSE,
+    NULL,
+    THIS,
+    LET,
+    DO,
+    IF,
+    ELSE,
+    WHILE,
+    RETURN;
+
+    // perfect hash of (first char, last char, length), collision free for the 21 keywords
+    private static final int HASH_MASK = 31;
+    private static final Keyword[] TABLE = new Keyword[HASH_MASK + 1];
+
+    static {
+        for (Keyword keyword : values()) {
+            final String spelling = keyword.spelling;
+            final int hash = hash(spelling.charAt(0), spelling.charAt(spelling.length() - 1), spelling.length());
+            if (TABLE[hash] != null) {
+                throw new IllegalStateException("Keyword hash collision: " + keyword + " and " + TABLE[hash]);
+            }
+
+            TABLE[hash] = keyword;
+        }
+    }
+
+    private final String spelling;
+
+    Keyword() {
+        this.spelling = name().toLowerCase();
     }
 
     public static Keyword parse(String keyword) {
@@ -37,20 +51,40 @@ public enum Keyword {
             return null;
         }
 
-        for (Keyword val : Keyword.values()) {
-            if (val.pattern.matcher(keyword).matches()) {
-                return val;
+        return lookup(keyword, 0, keyword.length());
+    }
+
+    /**
+     * Finds keyword spelled by {@code source[start, start + length)} without creating a String.
+     */
+    public static Keyword lookup(CharSequence source, int start, int length) {
+        if (length < 2 || length > 11) {
+            return null;
+        }
+
+        final Keyword candidate = TABLE[hash(source.charAt(start), source.charAt(start + length - 1), length)];
+        if (candidate == null || candidate.spelling.length() != length) {
+            return null;
+        }
+
+        for (int i = 0; i < length; i++) {
+            if (candidate.spelling.charAt(i) != source.charAt(start + i)) {
+                return null;
             }
         }
 
-        return null;
+        return candidate;
     }
 
     public static boolean isKeyword(String keyword) {
         return parse(keyword) != null;
     }
-    
-    public Pattern getPattern() {
-        return this.pattern;
+
+    public String getSpelling() {
+        return spelling;
+    }
+
+    private static int hash(char first, char last, int length) {
+        return (first * 8 + last * 7 + length * 5) & HASH_MASK;
     }
 }
@@ -0,0 +1,228 @@
+package edu.nadn2tetris.common;
+
+import java.util.Arrays;
+
+/**
+ * Interns names into dense int ids [0, size), one table is shared by all files of a compilation.
+ * Lookup works on a char slice, a String is created only the first time a name is seen.
+ * Qualified {@code Class.sub} names get ids of their own, see {@link #qualify(int, int)}.
+ * <p>
+ * Thread safe: hits are served without a lock from the published arrays, new names are added under the lock.
+ * A slot found without the lock is trusted only after comparing chars with its immutable String,
+ * anything missing or not yet visible is looked up again under the lock.
+ */
+public final class NameTable {
+    private static final int INITIAL_CAPACITY = 256;
+
+    private volatile int[] slots = new int[INITIAL_CAPACITY]; // id + 1, 0 is empty slot
+    private volatile String[] names = new String[INITIAL_CAPACITY / 2];
+    private volatile QualifiedIndex qualified = new QualifiedIndex(INITIAL_CAPACITY / 4);
+
+    // guarded by this
+    private int[] hashes = new int[INITIAL_CAPACITY / 2];
+    private int size;
+    private int qualifiedSize;
+
+    public int intern(String name) {
+        return intern(name, 0, name.length());
+    }
+
+    public int intern(CharSequence source, int start, int length) {
+        final int hash = hash(source, start, length);
+        final int id = probe(slots, names, hash, source, start, length);
+
+        return id >= 0 ? id : add(source, start, length, hash);
+    }
+
+    /**
+     * @return id of the name or -1 if it is unknown
+     */
+    public int find(String name) {
+        final int hash = hash(name, 0, name.length());
+        final int id = probe(slots, names, hash, name, 0, name.length());
+        if (id >= 0) {
+            return id;
+        }
+
+        synchronized (this) {
+            return probe(slots, names, hash, name, 0, name.length());
+        }
+    }
+
+    /**
+     * @return id of {@code name(classId) + "." + name(memberId)}, the joined String is created once per pair
+     */
+    public int qualify(int classId, int memberId) {
+        final long key = ((long) classId << 32) | (memberId & 0xFFFFFFFFL);
+        final int id = qualified.find(key);
+
+        return id >= 0 ? id : addQualified(classId, memberId, key);
+    }
+
+    public String name(int id) {
+        final String[] names = this.names;
+        if (id >= 0 && id < names.length && names[id] != null) {
+            return names[id];
+        }
+
+        synchronized (this) {
+            if (id < 0 || id >= size) {
+                throw new IllegalArgumentException("Unknown name id: " + id);
+            }
+
+            return this.names[id];
+        }
+    }
+
+    public synchronized int size() {
+        return size;
+    }
+
+    private synchronized int add(CharSequence source, int start, int length, int hash) {
+        int id = probe(slots, names, hash, source, start, length);
+        if (id >= 0) {
+            return id; // added by another thread
+        }
+
+        if (size == names.length) {
+            hashes = Arrays.copyOf(hashes, size * 2);
+            names = Arrays.copyOf(names, size * 2);
+        }
+
+        id = size++;
+        names[id] = source.subSequence(start, start + length).toString();
+        hashes[id] = hash;
+
+        if (size * 2 > slots.length) {
+            slots = rehash(slots.length * 2);
+        } else {
+            final int[] slots = this.slots;
+            slots[freeSlot(slots, hash)] = id + 1;
+        }
+
+        return id;
+    }
+
+    private synchronized int addQualified(int classId, int memberId, long key) {
+        int id = qualified.find(key);
+        if (id >= 0) {
+            return id;
+        }
+
+        id = intern(name(classId) + "." + name(memberId));
+        if (++qualifiedSize * 2 > qualified.ids.length) {
+            qualified = qualified.grow();
+        }
+        qualified.put(key, id);
+
+        return id;
+    }
+
+    private int[] rehash(int capacity) {
+        final int[] slots = new int[capacity];
+        for (int id = 0; id < size; id++) {
+            slots[freeSlot(slots, hashes[id])] = id + 1;
+        }
+
+        return slots;
+    }
+
+    private static int freeSlot(int[] slots, int hash) {
+        int slot = hash & (slots.length - 1);
+        while (slots[slot] != 0) {
+            slot = (slot + 1) & (slots.length - 1);
+        }
+
+        return slot;
+    }
+
+    private static int probe(int[] slots, String[] names, int hash, CharSequence source, int start, int length) {
+        int slot = hash & (slots.length - 1);
+        int id;
+        while ((id = slots[slot] - 1) >= 0) {
+            if (id < names.length) {
+                final String name = names[id];
+                if (name != null && equals(name, source, start, length)) {
+                    return id;
+                }
+            }
+            slot = (slot + 1) & (slots.length - 1);
+        }
+
+        return -1;
+    }
+
+    private static int hash(CharSequence source, int start, int length) {
+        int hash = 0;
+        for (int i = start; i < start + length; i++) {
+            hash = 31 * hash + source.charAt(i);
+        }
+
+        return hash ^ (hash >>> 16);
+    }
+
+    private static boolean equals(String name, CharSequence source, int start, int length) {
+        if (name.length() != length) {
+            return false;
+        }
+
+        for (int i = 0; i < length; i++) {
+            if (name.charAt(i) != source.charAt(start + i)) {
+                return false;
+            }
+        }
+
+        return true;
+    }
+
+    /**
+     * (classId, memberId) -> id of "Class.member", keys and ids are replaced together on growth.
+     * Keys are stored inverted, so a not yet visible key (0) never matches a real one.
+     */
+    private static final class QualifiedIndex {
+        private final long[] keys;
+        private final int[] ids; // id + 1, 0 is empty slot
+
+        private QualifiedIndex(int capacity) {
+            this.keys = new long[capacity];
+            this.ids = new int[capacity];
+        }
+
+        private int find(long key) {
+            int slot = slot(key);
+            int id;
+            while ((id = ids[slot] - 1) >= 0) {
+                if (keys[slot] == ~key) {
+                    return id;
+                }
+                slot = (slot + 1) & (ids.length - 1);
+            }
+
+            return -1;
+        }
+
+        private void put(long key, int id) {
+            int slot = slot(key);
+            while (ids[slot] != 0) {
+                slot = (slot + 1) & (ids.length - 1);
+            }
+            keys[slot] = ~key;
+            ids[slot] = id + 1;
+        }
+
+        private QualifiedIndex grow() {
+            final QualifiedIndex grown = new QualifiedIndex(ids.length * 2);
+            for (int i = 0; i < ids.length; i++) {
+                if (ids[i] != 0) {
+                    grown.put(~keys[i], ids[i] - 1);
+                }
+            }
+
+            return grown;
+        }
+
+        private int slot(long key) {
+            return Long.hashCode(key * 0x9E3779B97F4A7C15L) & (ids.length - 1);
+        }
+    }
+}
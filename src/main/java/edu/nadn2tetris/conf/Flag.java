@@ -5,12 +5,45 @@ import java.util.Objects;
 public enum Flag {
     XML_MODE("--xml"),
     TOKENS("--tkn"),
-    GENERATE_CODE("--code");
+    GENERATE_CODE("--code"),
+    // one Hack assembly program for all classes instead of .vm files, the OS classes must be among the sources
+    ASM("--asm"),
+    // --asm leaves OS functions undefined, HackEmulator runs them in Java
+    OS_TRAPS("--os-traps"),
+    // optimization levels, see OptimizationLevel; -O is -O2
+    OPTIMIZE("-O"),
+    OPTIMIZE_0("-O0"),
+    OPTIMIZE_1("-O1"),
+    OPTIMIZE_2("-O2"),
+    OPTIMIZE_SIZE("-Os"),
+    // prints wall time and allocation of every optimization pass to stderr
+    TIME_PASSES("--time-passes"),
+    // string literals are built once per class and kept in static slots
+    STRING_POOL("--string-pool"),
+    // whole program mode, subroutines unreachable from Main.main are not emitted
+    TREE_SHAKING("--tree-shake"),
+    // whole program mode, one-expression subroutines up to the given amount of nodes are inlined
+    INLINE("--inline", true),
+    // number of files compiled in parallel, available processors by default
+    JOBS("--jobs", true);
 
     private final String flag;
+    private final boolean valued;
 
     Flag(String flag) {
+        this(flag, false);
+    }
+
+    Flag(String flag, boolean valued) {
         this.flag = flag;
+        this.valued = valued;
+    }
+
+    /**
+     * @return true if the flag is followed by a value argument
+     */
+    public boolean isValued() {
+        return valued;
     }
 
     public static Flag parse(String flag) {
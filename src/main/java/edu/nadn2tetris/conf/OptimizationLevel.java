@@ -0,0 +1,58 @@
+package edu.nadn2tetris.conf;
+
+import java.util.Map;
+
+/**
+ * Level selected by the {@code -O} flags, {@code -O0} if none is given
+ */
+public enum OptimizationLevel {
+    O0, // code as written
+    O1, // folding and dead code on the trees, IR passes and peephole rules, cheap enough for every build
+    O2, // and the generator: strength reduction, rotated loops, tail calls, local slot reuse, array access
+    OS; // O2 without the multiplication chains, which are longer than the call they replace
+
+    private static final int MAX_MULTIPLY_CHAIN = 32; // in VM instructions
+
+    public static OptimizationLevel of(Map<Flag, String> flags) {
+        OptimizationLevel level = null;
+        for (Flag flag : flags.keySet()) {
+            final OptimizationLevel flagLevel = switch (flag) {
+                case OPTIMIZE_0 -> O0;
+                case OPTIMIZE_1 -> O1;
+                case OPTIMIZE, OPTIMIZE_2 -> O2;
+                case OPTIMIZE_SIZE -> OS;
+                default -> null;
+            };
+            if (flagLevel == null) {
+                continue;
+            }
+            if (level != null && level != flagLevel) {
+                throw new IllegalArgumentException("Conflicting optimization levels: " + level + " and " + flagLevel);
+            }
+            level = flagLevel;
+        }
+
+        return level == null ? O0 : level;
+    }
+
+    /**
+     * @return true if the trees are folded, dead code is dropped and the IR passes and peephole rules run
+     */
+    public boolean hasTreePasses() {
+        return this != O0;
+    }
+
+    /**
+     * @return true if the generator emits optimized code
+     */
+    public boolean optimizesCode() {
+        return this == O2 || this == OS;
+    }
+
+    /**
+     * @return longest inline replacement of Math.multiply, in VM instructions
+     */
+    public int maxMultiplyChain() {
+        return this == OS ? 0 : MAX_MULTIPLY_CHAIN;
+    }
+}
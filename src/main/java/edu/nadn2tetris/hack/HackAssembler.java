@@ -0,0 +1,166 @@
+package edu.nadn2tetris.hack;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import edu.nadn2tetris.vm.OsStubs;
+
+/**
+ * Two pass Hack assembler: labels are collected first, then every instruction is encoded to its 16-bit word.
+ * <p>
+ * An undefined symbol naming a Jack OS function is bound to a trap address past the end of the program,
+ * {@link HackEmulator} runs the Java stub of the function when the program jumps there.
+ * Other undefined symbols are variables allocated from address 16, like in the standard assembler.
+ */
+public final class HackAssembler {
+    private static final int VARIABLE_BASE = 16;
+    private static final int ROM_SIZE = 32768;
+    private static final Map<String, Integer> PREDEFINED = new HashMap<>();
+    private static final Map<String, Integer> COMPUTATIONS = new HashMap<>();
+    private static final Map<String, Integer> JUMPS = Map.of(
+            "JGT", 1, "JEQ", 2, "JGE", 3, "JLT", 4, "JNE", 5, "JLE", 6, "JMP", 7
+    );
+
+    static {
+        PREDEFINED.put("SP", 0);
+        PREDEFINED.put("LCL", 1);
+        PREDEFINED.put("ARG", 2);
+        PREDEFINED.put("THIS", 3);
+        PREDEFINED.put("THAT", 4);
+        PREDEFINED.put("SCREEN", 16384);
+        PREDEFINED.put("KBD", 24576);
+        for (int i = 0; i < 16; i++) {
+            PREDEFINED.put("R" + i, i);
+        }
+
+        final String[][] computations = {
+                {"0", "101010"}, {"1", "111111"}, {"-1", "111010"}, {"D", "001100"}, {"X", "110000"},
+                {"!D", "001101"}, {"!X", "110001"}, {"-D", "001111"}, {"-X", "110011"}, {"D+1", "011111"},
+                {"X+1", "110111"}, {"D-1", "001110"}, {"X-1", "110010"}, {"D+X", "000010"}, {"D-X", "010011"},
+                {"X-D", "000111"}, {"D&X", "000000"}, {"D|X", "010101"},
+        };
+        for (String[] computation : computations) {
+            final int bits = Integer.parseInt(computation[1], 2);
+            if (!computation[0].contains("X")) {
+                COMPUTATIONS.put(computation[0], bits);
+                continue;
+            }
+            COMPUTATIONS.put(computation[0].replace('X', 'A'), bits);
+            COMPUTATIONS.put(computation[0].replace('X', 'M'), 0x40 | bits);
+        }
+        // commuted forms
+        for (String operand : new String[]{"A", "M"}) {
+            COMPUTATIONS.put(operand + "+D", COMPUTATIONS.get("D+" + operand));
+            COMPUTATIONS.put(operand + "&D", COMPUTATIONS.get("D&" + operand));
+            COMPUTATIONS.put(operand + "|D", COMPUTATIONS.get("D|" + operand));
+        }
+    }
+
+    private HackAssembler() {}
+
+    public static HackProgram assemble(String code) {
+        final List<String> instructions = new ArrayList<>();
+        final Map<String, Integer> symbols = new HashMap<>(PREDEFINED);
+        final List<HackProgram.Function> functions = new ArrayList<>();
+        for (String rawLine : code.split("\n")) {
+            final String line = stripComment(rawLine);
+            if (line.isEmpty()) {
+                continue;
+            }
+
+            if (line.startsWith("(")) {
+                if (!line.endsWith(")")) {
+                    throw new IllegalStateException("Invalid label: " + line);
+                }
+                final String label = line.substring(1, line.length() - 1);
+                if (symbols.put(label, instructions.size()) != null) {
+                    throw new IllegalStateException("Duplicate label: " + label);
+                }
+                // functions and the shared $ routines start profiled regions, scoped labels have $ inside
+                if (label.lastIndexOf('$') <= 0) {
+                    functions.add(new HackProgram.Function(label, instructions.size()));
+                }
+                continue;
+            }
+
+            instructions.add(line);
+        }
+
+        if (instructions.size() > ROM_SIZE) {
+            throw new IllegalStateException("Program of " + instructions.size() + " instructions does not fit the rom");
+        }
+
+        final short[] rom = new short[instructions.size()];
+        int nextVariable = VARIABLE_BASE;
+        for (int i = 0; i < rom.length; i++) {
+            final String instruction = instructions.get(i);
+            if (!instruction.startsWith("@")) {
+                rom[i] = encode(instruction);
+                continue;
+            }
+
+            final String symbol = instruction.substring(1);
+            if (Character.isDigit(symbol.charAt(0))) {
+                final int value = Integer.parseInt(symbol);
+                if (value > Short.MAX_VALUE) {
+                    throw new IllegalStateException("Constant out of range: " + symbol);
+                }
+                rom[i] = (short) value;
+                continue;
+            }
+
+            Integer value = symbols.get(symbol);
+            if (value == null) {
+                final int stub = OsStubs.idOf(symbol);
+                value = stub >= 0 ? rom.length + stub : nextVariable++;
+                symbols.put(symbol, value);
+            }
+            rom[i] = (short) (int) value;
+        }
+
+        return new HackProgram(rom, functions);
+    }
+
+    private static short encode(String instruction) {
+        String rest = instruction;
+        int jump = 0;
+        final int semicolon = rest.indexOf(';');
+        if (semicolon >= 0) {
+            final Integer bits = JUMPS.get(rest.substring(semicolon + 1));
+            if (bits == null) {
+                throw new IllegalStateException("Invalid jump: " + instruction);
+            }
+            jump = bits;
+            rest = rest.substring(0, semicolon);
+        }
+
+        int dest = 0;
+        final int equals = rest.indexOf('=');
+        if (equals >= 0) {
+            for (char register : rest.substring(0, equals).toCharArray()) {
+                dest |= switch (register) {
+                    case 'A' -> 4;
+                    case 'D' -> 2;
+                    case 'M' -> 1;
+                    default -> throw new IllegalStateException("Invalid destination: " + instruction);
+                };
+            }
+            rest = rest.substring(equals + 1);
+        }
+
+        final Integer computation = COMPUTATIONS.get(rest);
+        if (computation == null) {
+            throw new IllegalStateException("Invalid computation: " + instruction);
+        }
+
+        return (short) (0xE000 | computation << 6 | dest << 3 | jump);
+    }
+
+    private static String stripComment(String line) {
+        final int comment = line.indexOf("//");
+
+        return (comment < 0 ? line : line.substring(0, comment)).replace(" ", "").trim();
+    }
+}
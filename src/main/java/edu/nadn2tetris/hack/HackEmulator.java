@@ -0,0 +1,258 @@
+package edu.nadn2tetris.hack;
+
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+import edu.nadn2tetris.vm.OsStubs;
+
+/**
+ * Cycle counting Hack CPU: one instruction per cycle on a 32K word ram, the rom words are decoded as they run.
+ * <p>
+ * A jump to a trap address of {@link HackAssembler} runs the Java stub of the OS function and returns like
+ * the {@code $RETURN} routine of the generated code. A trap takes no cycles: the stubs cost nothing like the
+ * hundreds of cycles of the real OS, so OS calls are counted apart from the cycles of the program.
+ * The program is done when it jumps onto an {@code @self; 0;JMP} loop, like the halt loop after the entry call.
+ * <p>
+ * Cycles are counted per rom address, the profile sums them up by the function labels,
+ * the shared {@code $} routines are profiled on their own. OS functions are not in the profile,
+ * their calls are counted by function in {@link Result#osCalls}.
+ * <p>
+ * Screen and keyboard are the plain ram words at {@code SCREEN} and {@code KBD}: drawing is kept in the ram
+ * and no key is ever pressed.
+ */
+public final class HackEmulator {
+    private static final int SP = 0;
+    private static final int LCL = 1;
+    private static final int ARG = 2;
+    private static final int THIS = 3;
+    private static final int THAT = 4;
+    private static final int RAM_SIZE = 32768;
+
+    private final HackProgram program;
+    private final long maxCycles;
+
+    public HackEmulator(HackProgram program) {
+        this(program, Long.MAX_VALUE);
+    }
+
+    /**
+     * @param maxCycles the run fails once it takes more cycles, guards against endless loops
+     */
+    public HackEmulator(HackProgram program, long maxCycles) {
+        if (program == null) {
+            throw new IllegalArgumentException("Program cannot be null");
+        }
+        this.program = program;
+        this.maxCycles = maxCycles;
+    }
+
+    public Result run() {
+        final short[] rom = program.rom;
+        final short[] ram = new short[RAM_SIZE];
+        final OsStubs os = new OsStubs(ram);
+        final long[] cyclesAt = new long[rom.length];
+        final long[] trapCalls = new long[OsStubs.count()];
+        int a = 0;
+        int d = 0;
+        int pc = 0;
+        long cycles = 0;
+
+        try {
+            while (true) {
+                if (pc >= rom.length) {
+                    final int stub = pc - rom.length;
+                    if (stub >= trapCalls.length) {
+                        throw new IllegalStateException("Jump past the rom");
+                    }
+                    trapCalls[stub]++;
+                    final short value = os.call(stub, ram[ARG]);
+                    if (os.isHalted()) {
+                        return new Result((short) 0, cycles, os.output(), true, profile(cyclesAt), osCalls(trapCalls));
+                    }
+                    pc = trapReturn(ram, value);
+                    continue;
+                }
+
+                if (++cycles > maxCycles) {
+                    throw new IllegalStateException("Cycle limit of " + maxCycles + " exceeded");
+                }
+                cyclesAt[pc]++;
+                final int instruction = rom[pc] & 0xFFFF;
+                if ((instruction & 0x8000) == 0) {
+                    a = instruction;
+                    pc++;
+                    continue;
+                }
+
+                final int y = (instruction & 0x1000) != 0 ? ram[a] : a;
+                final int out = compute((instruction >> 6) & 0x3F, d, y, instruction);
+                final short value = (short) out;
+                final int target = a; // the jump goes to the A of this instruction as well
+                if ((instruction & 0x08) != 0) {
+                    ram[a] = value; // M is written at the A of this instruction
+                }
+                if ((instruction & 0x10) != 0) {
+                    d = value;
+                }
+                if ((instruction & 0x20) != 0) {
+                    a = value & 0xFFFF;
+                }
+
+                if (jumps(instruction & 0x07, value)) {
+                    if (target == pc - 1 && rom[target] == target) {
+                        // @self; 0;JMP, the value of the entry call is on top of the stack
+                        return new Result(ram[ram[SP] - 1], cycles, os.output(), false, profile(cyclesAt), osCalls(trapCalls));
+                    }
+                    pc = target;
+                } else {
+                    pc++;
+                }
+            }
+        } catch (ArrayIndexOutOfBoundsException e) {
+            throw new IllegalStateException("Invalid memory access in " + functionAt(pc), e);
+        } catch (IllegalStateException e) {
+            throw new IllegalStateException(e.getMessage() + " in " + functionAt(pc), e);
+        }
+    }
+
+    private static int compute(int control, int x, int y, int instruction) {
+        return switch (control) {
+            case 0b101010 -> 0;
+            case 0b111111 -> 1;
+            case 0b111010 -> -1;
+            case 0b001100 -> x;
+            case 0b110000 -> y;
+            case 0b001101 -> ~x;
+            case 0b110001 -> ~y;
+            case 0b001111 -> -x;
+            case 0b110011 -> -y;
+            case 0b011111 -> x + 1;
+            case 0b110111 -> y + 1;
+            case 0b001110 -> x - 1;
+            case 0b110010 -> y - 1;
+            case 0b000010 -> x + y;
+            case 0b010011 -> x - y;
+            case 0b000111 -> y - x;
+            case 0b000000 -> x & y;
+            case 0b010101 -> x | y;
+            default -> throw new IllegalStateException("Invalid instruction " + Integer.toBinaryString(instruction));
+        };
+    }
+
+    private static boolean jumps(int jump, short value) {
+        return switch (jump) {
+            case 0 -> false;
+            case 1 -> value > 0;
+            case 2 -> value == 0;
+            case 3 -> value >= 0;
+            case 4 -> value < 0;
+            case 5 -> value != 0;
+            case 6 -> value <= 0;
+            default -> true;
+        };
+    }
+
+    /**
+     * Returns from the trapped OS function like the generated code does
+     *
+     * @return the return address
+     */
+    private static int trapReturn(short[] ram, short value) {
+        final int frame = ram[LCL];
+        final int returnAddress = ram[frame - 5];
+        final int args = ram[ARG];
+        ram[args] = value;
+        ram[SP] = (short) (args + 1);
+        ram[THAT] = ram[frame - 1];
+        ram[THIS] = ram[frame - 2];
+        ram[ARG] = ram[frame - 3];
+        ram[LCL] = ram[frame - 4];
+
+        return returnAddress & 0xFFFF;
+    }
+
+    private String functionAt(int address) {
+        if (address >= program.rom.length) {
+            return address - program.rom.length < OsStubs.count() ? OsStubs.nameOf(address - program.rom.length) : "address " + address;
+        }
+
+        String name = "(bootstrap)";
+        for (HackProgram.Function function : program.functions) {
+            if (function.address > address) {
+                break;
+            }
+            name = function.name;
+        }
+
+        return name;
+    }
+
+    /**
+     * @return cycles by function, most expensive first
+     */
+    private Map<String, Long> profile(long[] cyclesAt) {
+        final List<HackProgram.Function> functions = program.functions;
+        final Map<String, Long> profile = new LinkedHashMap<>();
+        int function = -1;
+        for (int address = 0; address < cyclesAt.length; address++) {
+            while (function + 1 < functions.size() && functions.get(function + 1).address <= address) {
+                function++;
+            }
+            if (cyclesAt[address] != 0) {
+                final String name = function < 0 ? "(bootstrap)" : functions.get(function).name;
+                profile.merge(name, cyclesAt[address], Long::sum);
+            }
+        }
+
+        return sortedByCount(profile);
+    }
+
+    /**
+     * @return calls by OS function, most called first
+     */
+    private static Map<String, Long> osCalls(long[] trapCalls) {
+        final Map<String, Long> calls = new LinkedHashMap<>();
+        for (int stub = 0; stub < trapCalls.length; stub++) {
+            if (trapCalls[stub] != 0) {
+                calls.put(OsStubs.nameOf(stub), trapCalls[stub]);
+            }
+        }
+
+        return sortedByCount(calls);
+    }
+
+    private static Map<String, Long> sortedByCount(Map<String, Long> counts) {
+        final Map<String, Long> sorted = new LinkedHashMap<>();
+        counts.entrySet().stream()
+                .sorted(Map.Entry.<String, Long>comparingByValue().reversed())
+                .forEach(e -> sorted.put(e.getKey(), e.getValue()));
+
+        return sorted;
+    }
+
+    public static final class Result {
+        public final short value; // returned by the entry function, 0 if halted
+        public final long cycles; // executed instructions of the program, OS functions are not included
+        public final String output; // printed by the Output stubs
+        public final boolean halted; // Sys.halt was called
+        public final Map<String, Long> profile; // cycles by function of the program, they add up to cycles
+        public final Map<String, Long> osCalls; // calls by OS function, their cost is unknown
+
+        private Result(
+                short value,
+                long cycles,
+                String output,
+                boolean halted,
+                Map<String, Long> profile,
+                Map<String, Long> osCalls
+        ) {
+            this.value = value;
+            this.cycles = cycles;
+            this.output = output;
+            this.halted = halted;
+            this.profile = profile;
+            this.osCalls = osCalls;
+        }
+    }
+}
@@ -0,0 +1,43 @@
+package edu.nadn2tetris.hack;
+
+import java.util.List;
+
+/**
+ * Assembled Hack program: the rom words and where every function starts
+ */
+public final class HackProgram {
+    final short[] rom;
+    final List<Function> functions; // in rom order
+
+    HackProgram(short[] rom, List<Function> functions) {
+        this.rom = rom;
+        this.functions = List.copyOf(functions);
+    }
+
+    public int size() {
+        return rom.length;
+    }
+
+    /**
+     * @return rom address of the function label, -1 if there is none
+     */
+    public int addressOf(String function) {
+        for (Function f : functions) {
+            if (f.name.equals(function)) {
+                return f.address;
+            }
+        }
+
+        return -1;
+    }
+
+    static final class Function {
+        final String name;
+        final int address;
+
+        Function(String name, int address) {
+            this.name = name;
+            this.address = address;
+        }
+    }
+}
@@ -0,0 +1,99 @@
+package edu.nadn2tetris.ir;
+
+import java.io.IOException;
+import java.util.List;
+
+import edu.nadn2tetris.writer.CodeWriter;
+import edu.nadn2tetris.writer.Command;
+import edu.nadn2tetris.writer.Segment;
+
+/**
+ * Collects the instructions of a function into an {@link IrFunction}, runs the passes on it once the function
+ * is complete and writes the result to the next writer. Only one function is buffered at a time.
+ */
+public final class IrBuilder implements CodeWriter {
+    private final CodeWriter writer;
+    private final List<IrPass> passes;
+    private IrFunction function;
+
+    public IrBuilder(CodeWriter writer, List<IrPass> passes) {
+        if (writer == null) {
+            throw new IllegalArgumentException("Writer cannot be null");
+        }
+        this.writer = writer;
+        this.passes = passes;
+    }
+
+    @Override
+    public void writePush(Segment segment, short index) {
+        current().add(IrFunction.PUSH, segment.ordinal(), index);
+    }
+
+    @Override
+    public void writePop(Segment segment, short index) {
+        current().add(IrFunction.POP, segment.ordinal(), index);
+    }
+
+    @Override
+    public void writeArithmetic(Command command) {
+        current().add(IrFunction.ARITHMETIC, command.ordinal(), 0);
+    }
+
+    @Override
+    public void writeLabel(int label) {
+        current().add(IrFunction.LABEL, label, 0);
+    }
+
+    @Override
+    public void writeGoto(int label) {
+        current().add(IrFunction.GOTO, label, 0);
+    }
+
+    @Override
+    public void writeIf(int label) {
+        current().add(IrFunction.IF_GOTO, label, 0);
+    }
+
+    @Override
+    public void writeCall(String label, int nArgs) {
+        current().addCall(label, nArgs);
+    }
+
+    @Override
+    public void writeFunction(String label, int nArgs) {
+        flush();
+        function = new IrFunction(label, nArgs);
+    }
+
+    @Override
+    public void writeReturn() {
+        current().add(IrFunction.RETURN, 0, 0);
+    }
+
+    private IrFunction current() {
+        if (function == null) {
+            throw new IllegalStateException("Instruction outside of a function");
+        }
+
+        return function;
+    }
+
+    private void flush() {
+        if (function == null) {
+            return;
+        }
+
+        for (IrPass pass : passes) {
+            pass.run(function);
+        }
+        function.writeTo(writer);
+        function = null;
+    }
+
+    @Override
+    public void close() throws IOException {
+        try (writer) {
+            flush();
+        }
+    }
+}
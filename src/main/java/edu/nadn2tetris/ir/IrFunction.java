@@ -0,0 +1,154 @@
+package edu.nadn2tetris.ir;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.List;
+
+import edu.nadn2tetris.writer.CodeWriter;
+import edu.nadn2tetris.writer.Command;
+import edu.nadn2tetris.writer.Segment;
+
+/**
+ * Instructions of one function as parallel int arrays: an opcode and up to two operands per instruction.
+ * <p>
+ * push/pop keep the segment ordinal and the index, arithmetic the command ordinal, label/goto/if-goto the label id,
+ * call the index of the callee name and the argument count. Passes overwrite removed instructions with {@link #NOP},
+ * {@link #compact()} drops them.
+ */
+public final class IrFunction {
+    public static final int NOP = 0;
+    public static final int PUSH = 1;
+    public static final int POP = 2;
+    public static final int ARITHMETIC = 3;
+    public static final int LABEL = 4;
+    public static final int GOTO = 5;
+    public static final int IF_GOTO = 6;
+    public static final int CALL = 7;
+    public static final int RETURN = 8;
+
+    private static final Segment[] SEGMENTS = Segment.values();
+    private static final Command[] COMMANDS = Command.values();
+
+    public final String name;
+    public final int nVars;
+
+    int[] opcodes = new int[64];
+    int[] a = new int[64];
+    int[] b = new int[64];
+    int size;
+    int labelCount; // label ids are below
+    final List<String> callees = new ArrayList<>();
+
+    public IrFunction(String name, int nVars) {
+        this.name = name;
+        this.nVars = nVars;
+    }
+
+    void add(int opcode, int a, int b) {
+        if (size == opcodes.length) {
+            opcodes = Arrays.copyOf(opcodes, size * 2);
+            this.a = Arrays.copyOf(this.a, size * 2);
+            this.b = Arrays.copyOf(this.b, size * 2);
+        }
+        opcodes[size] = opcode;
+        this.a[size] = a;
+        this.b[size] = b;
+        size++;
+        if (isLabelled(opcode)) {
+            labelCount = Math.max(labelCount, a + 1);
+        }
+    }
+
+    void addCall(String callee, int nArgs) {
+        int index = callees.indexOf(callee);
+        if (index < 0) {
+            index = callees.size();
+            callees.add(callee);
+        }
+        add(CALL, index, nArgs);
+    }
+
+    public int size() {
+        return size;
+    }
+
+    public int opcode(int i) {
+        return opcodes[i];
+    }
+
+    /**
+     * @return instruction index of every label id, -1 for ids without a label
+     */
+    public int[] labelIndices() {
+        final int[] indices = new int[labelCount];
+        Arrays.fill(indices, -1);
+        for (int i = 0; i < size; i++) {
+            if (opcodes[i] == LABEL) {
+                indices[a[i]] = i;
+            }
+        }
+
+        return indices;
+    }
+
+    /**
+     * Basic block leaders: the first instruction, every label and every instruction after a branch or return
+     */
+    public BitSet leaders() {
+        final BitSet leaders = new BitSet(size);
+        if (size > 0) {
+            leaders.set(0);
+        }
+        for (int i = 0; i < size; i++) {
+            final int opcode = opcodes[i];
+            if (opcode == LABEL) {
+                leaders.set(i);
+            } else if ((opcode == GOTO || opcode == IF_GOTO || opcode == RETURN) && i + 1 < size) {
+                leaders.set(i + 1);
+            }
+        }
+
+        return leaders;
+    }
+
+    /**
+     * Drops the {@link #NOP}s
+     */
+    public void compact() {
+        int to = 0;
+        for (int i = 0; i < size; i++) {
+            if (opcodes[i] == NOP) {
+                continue;
+            }
+            opcodes[to] = opcodes[i];
+            a[to] = a[i];
+            b[to] = b[i];
+            to++;
+        }
+        size = to;
+    }
+
+    public void writeTo(CodeWriter writer) {
+        writer.writeFunction(name, nVars);
+        for (int i = 0; i < size; i++) {
+            switch (opcodes[i]) {
+                case PUSH -> writer.writePush(SEGMENTS[a[i]], (short) b[i]);
+                case POP -> writer.writePop(SEGMENTS[a[i]], (short) b[i]);
+                case ARITHMETIC -> writer.writeArithmetic(COMMANDS[a[i]]);
+                case LABEL -> writer.writeLabel(a[i]);
+                case GOTO -> writer.writeGoto(a[i]);
+                case IF_GOTO -> writer.writeIf(a[i]);
+                case CALL -> writer.writeCall(callees.get(a[i]), b[i]);
+                case RETURN -> writer.writeReturn();
+                case NOP -> {
+                }
+                default -> throw new IllegalStateException("Unknown opcode " + opcodes[i]);
+            }
+        }
+    }
+
+    static boolean isLabelled(int opcode) {
+        return opcode == LABEL || opcode == GOTO || opcode == IF_GOTO;
+    }
+}
@@ -0,0 +1,9 @@
+package edu.nadn2tetris.ir;
+
+/**
+ * Rewrites the instructions of a function in place
+ */
+@FunctionalInterface
+public interface IrPass {
+    void run(IrFunction function);
+}
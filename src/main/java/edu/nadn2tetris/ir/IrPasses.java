@@ -0,0 +1,141 @@
+package edu.nadn2tetris.ir;
+
+import java.util.ArrayDeque;
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.List;
+
+/**
+ * Default passes of {@link IrBuilder}, every pass is a few linear scans over the instruction arrays
+ */
+public final class IrPasses {
+    /**
+     * A jump to a label which is followed by {@code goto M} jumps to M directly
+     */
+    public static final IrPass JUMP_THREADING = function -> {
+        final int[] labels = function.labelIndices();
+        for (int i = 0; i < function.size; i++) {
+            if (function.opcodes[i] == IrFunction.GOTO || function.opcodes[i] == IrFunction.IF_GOTO) {
+                function.a[i] = destination(function, labels, function.a[i]);
+            }
+        }
+    };
+
+    /**
+     * Drops the basic blocks which cannot be reached from the entry, jumps to the next instruction
+     * and labels nothing jumps to, then numbers the labels left densely again
+     */
+    public static final IrPass UNREACHABLE_CODE = function -> {
+        removeUnreachableBlocks(function);
+        function.compact();
+        removeUnusedLabels(function);
+        function.compact();
+        renumberLabels(function);
+    };
+
+    private IrPasses() {}
+
+    public static List<IrPass> defaults() {
+        return List.of(JUMP_THREADING, UNREACHABLE_CODE);
+    }
+
+    private static int destination(IrFunction function, int[] labels, int label) {
+        // a goto cycle ends after visiting every label once
+        for (int hops = 0; hops < labels.length; hops++) {
+            int next = labels[label] + 1;
+            while (next < function.size && (function.opcodes[next] == IrFunction.LABEL || function.opcodes[next] == IrFunction.NOP)) {
+                next++;
+            }
+            if (next == function.size || function.opcodes[next] != IrFunction.GOTO || function.a[next] == label) {
+                break;
+            }
+            label = function.a[next];
+        }
+
+        return label;
+    }
+
+    private static void removeUnreachableBlocks(IrFunction function) {
+        if (function.size == 0) {
+            return;
+        }
+
+        final BitSet leaders = function.leaders();
+        final int[] labels = function.labelIndices();
+        final BitSet reachable = new BitSet(function.size);
+        final ArrayDeque<Integer> blocks = new ArrayDeque<>();
+        blocks.push(0);
+        reachable.set(0);
+        while (!blocks.isEmpty()) {
+            final int start = blocks.pop();
+            final int next = leaders.nextSetBit(start + 1);
+            final int end = next < 0 ? function.size : next;
+            final int last = function.opcodes[end - 1];
+            if (last == IrFunction.GOTO || last == IrFunction.IF_GOTO) {
+                final int target = labels[function.a[end - 1]];
+                if (!reachable.get(target)) {
+                    reachable.set(target);
+                    blocks.push(target);
+                }
+            }
+            if (last != IrFunction.GOTO && last != IrFunction.RETURN && end < function.size && !reachable.get(end)) {
+                reachable.set(end);
+                blocks.push(end);
+            }
+        }
+
+        for (int start = 0; start < function.size; start = leaders.nextSetBit(start + 1)) {
+            final int next = leaders.nextSetBit(start + 1);
+            final int end = next < 0 ? function.size : next;
+            if (!reachable.get(start)) {
+                Arrays.fill(function.opcodes, start, end, IrFunction.NOP);
+            }
+            if (next < 0) {
+                break;
+            }
+        }
+    }
+
+    private static void removeUnusedLabels(IrFunction function) {
+        // goto L; label L
+        for (int i = 0; i < function.size; i++) {
+            if (function.opcodes[i] != IrFunction.GOTO) {
+                continue;
+            }
+            for (int next = i + 1; next < function.size && function.opcodes[next] == IrFunction.LABEL; next++) {
+                if (function.a[next] == function.a[i]) {
+                    function.opcodes[i] = IrFunction.NOP;
+                    break;
+                }
+            }
+        }
+
+        final BitSet used = new BitSet(function.labelCount);
+        for (int i = 0; i < function.size; i++) {
+            if (function.opcodes[i] == IrFunction.GOTO || function.opcodes[i] == IrFunction.IF_GOTO) {
+                used.set(function.a[i]);
+            }
+        }
+        for (int i = 0; i < function.size; i++) {
+            if (function.opcodes[i] == IrFunction.LABEL && !used.get(function.a[i])) {
+                function.opcodes[i] = IrFunction.NOP;
+            }
+        }
+    }
+
+    private static void renumberLabels(IrFunction function) {
+        final int[] ids = new int[function.labelCount];
+        int count = 0;
+        for (int i = 0; i < function.size; i++) {
+            if (function.opcodes[i] == IrFunction.LABEL) {
+                ids[function.a[i]] = count++;
+            }
+        }
+        for (int i = 0; i < function.size; i++) {
+            if (IrFunction.isLabelled(function.opcodes[i])) {
+                function.a[i] = ids[function.a[i]];
+            }
+        }
+        function.labelCount = count;
+    }
+}
@@ -0,0 +1,134 @@
+package edu.nadn2tetris.pass;
+
+import java.lang.management.ManagementFactory;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.Consumer;
+
+import edu.nadn2tetris.ast.ClassTree;
+import edu.nadn2tetris.ast.processor.ConstantFoldingAstGenerator;
+import edu.nadn2tetris.ast.processor.DeadCodeAstGenerator;
+import edu.nadn2tetris.conf.OptimizationLevel;
+import edu.nadn2tetris.ir.IrPass;
+import edu.nadn2tetris.ir.IrPasses;
+
+/**
+ * Ordered tree and IR passes of an optimization level.
+ * <p>
+ * With timing on, every run of a pass adds its wall time and the bytes allocated by the running thread
+ * to the totals of the pass, so files compiled in parallel add up. A pass run inside of another one,
+ * like the IR passes inside of codegen, is counted for itself only. {@link #report()} lists the passes
+ * in the order they first ran.
+ */
+public final class PassManager {
+    public final OptimizationLevel level;
+    private final boolean timed;
+    private final List<String> astPassNames = new ArrayList<>();
+    private final List<Consumer<ClassTree>> astPasses = new ArrayList<>();
+    private final List<IrPass> irPasses = new ArrayList<>();
+    private final Map<String, Timing> timings = new LinkedHashMap<>();
+    // nanos and bytes of the passes run by the current thread so far, a pass subtracts those of its nested ones
+    private final ThreadLocal<long[]> spent = ThreadLocal.withInitial(() -> new long[2]);
+
+    public PassManager(OptimizationLevel level, boolean timed) {
+        this.level = level;
+        this.timed = timed;
+        if (level.hasTreePasses()) {
+            addAstPass("fold", classTree -> new ConstantFoldingAstGenerator().generate(classTree));
+            addAstPass("dead-code", classTree -> new DeadCodeAstGenerator().generate(classTree));
+            addIrPass("jump-threading", IrPasses.JUMP_THREADING);
+            addIrPass("unreachable-code", IrPasses.UNREACHABLE_CODE);
+        }
+    }
+
+    private void addAstPass(String name, Consumer<ClassTree> pass) {
+        astPassNames.add(name);
+        astPasses.add(pass);
+    }
+
+    private void addIrPass(String name, IrPass pass) {
+        irPasses.add(timed ? function -> run(name, () -> pass.run(function)) : pass);
+    }
+
+    public void runAstPasses(ClassTree classTree) {
+        for (int i = 0; i < astPasses.size(); i++) {
+            final Consumer<ClassTree> pass = astPasses.get(i);
+            run(astPassNames.get(i), () -> pass.accept(classTree));
+        }
+    }
+
+    /**
+     * @return passes for {@link edu.nadn2tetris.ir.IrBuilder}, timed if timing is on
+     */
+    public List<IrPass> irPasses() {
+        return irPasses;
+    }
+
+    /**
+     * Runs the pass, timed under the name if timing is on
+     */
+    public void run(String name, Runnable pass) {
+        if (!timed) {
+            pass.run();
+            return;
+        }
+
+        final Timing timing;
+        synchronized (timings) {
+            timing = timings.computeIfAbsent(name, n -> new Timing());
+        }
+
+        final long[] spent = this.spent.get();
+        final long spentNanos = spent[0];
+        final long spentBytes = spent[1];
+        final long allocated = allocatedBytes();
+        final long start = System.nanoTime();
+        pass.run();
+        final long nanos = System.nanoTime() - start;
+        final long bytes = allocatedBytes() - allocated;
+        timing.nanos.add(nanos - (spent[0] - spentNanos));
+        timing.bytes.add(bytes - (spent[1] - spentBytes));
+        timing.runs.increment();
+        spent[0] = spentNanos + nanos;
+        spent[1] = spentBytes + bytes;
+    }
+
+    public String report() {
+        final StringBuilder report = new StringBuilder(String.format("%-20s %8s %12s %12s%n", "pass", "runs", "time ms", "alloc KB"));
+        synchronized (timings) {
+            for (Map.Entry<String, Timing> entry : timings.entrySet()) {
+                final Timing timing = entry.getValue();
+                report.append(String.format(
+                        "%-20s %8d %12.3f %12d%n",
+                        entry.getKey(),
+                        timing.runs.sum(),
+                        timing.nanos.sum() / 1e6,
+                        timing.bytes.sum() / 1024
+                ));
+            }
+        }
+        report.append("not timed: lexing, parsing, symbol tables, writing the last function of a file on close\n");
+
+        return report.toString();
+    }
+
+    /**
+     * @return bytes allocated by the current thread so far, 0 if the JVM does not count them
+     */
+    private static long allocatedBytes() {
+        if (ManagementFactory.getThreadMXBean() instanceof com.sun.management.ThreadMXBean threads) {
+            return threads.getCurrentThreadAllocatedBytes();
+        }
+
+        return 0;
+    }
+
+    private static final class Timing {
+        final LongAdder runs = new LongAdder();
+        final LongAdder nanos = new LongAdder();
+        final LongAdder bytes = new LongAdder();
+    }
+}
@@ -0,0 +1,105 @@
+package edu.nadn2tetris.table;
+
+import java.util.Arrays;
+import java.util.BitSet;
+
+/**
+ * Calls between subroutines keyed by qualified {@code Class.sub} name ids.
+ * Callees which are not defined by the program, like the OS classes, are kept as leaves.
+ * Not thread safe, files fill graphs of their own which are merged with {@link #addAll(CallGraph)}.
+ */
+public final class CallGraph {
+    private static final int[] NO_CALLS = new int[0];
+
+    private final BitSet defined = new BitSet();
+    private int[][] callees = new int[64][];
+    private int[] calleeCount = new int[64];
+
+    public void define(int subroutineId) {
+        defined.set(subroutineId);
+    }
+
+    public boolean isDefined(int subroutineId) {
+        return defined.get(subroutineId);
+    }
+
+    public void addCall(int callerId, int calleeId) {
+        ensureCapacity(callerId);
+
+        int[] calls = callees[callerId];
+        final int count = calleeCount[callerId];
+        if (calls == null) {
+            calls = callees[callerId] = new int[4];
+        }
+        for (int i = 0; i < count; i++) {
+            if (calls[i] == calleeId) {
+                return;
+            }
+        }
+
+        if (count == calls.length) {
+            calls = callees[callerId] = Arrays.copyOf(calls, count * 2);
+        }
+        calls[calleeCount[callerId]++] = calleeId;
+    }
+
+    public void addAll(CallGraph other) {
+        defined.or(other.defined);
+        for (int callerId = 0; callerId < other.callees.length; callerId++) {
+            for (int i = 0; i < other.calleeCount[callerId]; i++) {
+                addCall(callerId, other.callees[callerId][i]);
+            }
+        }
+    }
+
+    public int[] calleesOf(int callerId) {
+        if (callerId >= callees.length || callees[callerId] == null) {
+            return NO_CALLS;
+        }
+
+        return Arrays.copyOf(callees[callerId], calleeCount[callerId]);
+    }
+
+    /**
+     * @return ids of the subroutines transitively called from the root, the root included
+     */
+    public BitSet reachableFrom(int rootId) {
+        final BitSet reached = new BitSet();
+        int[] stack = new int[16];
+        int size = 0;
+
+        reached.set(rootId);
+        stack[size++] = rootId;
+        while (size > 0) {
+            final int callerId = stack[--size];
+            if (callerId >= callees.length) {
+                continue;
+            }
+
+            for (int i = 0; i < calleeCount[callerId]; i++) {
+                final int calleeId = callees[callerId][i];
+                if (reached.get(calleeId)) {
+                    continue;
+                }
+
+                reached.set(calleeId);
+                if (size == stack.length) {
+                    stack = Arrays.copyOf(stack, size * 2);
+                }
+                stack[size++] = calleeId;
+            }
+        }
+
+        return reached;
+    }
+
+    private void ensureCapacity(int id) {
+        if (id < callees.length) {
+            return;
+        }
+
+        final int capacity = Math.max(callees.length * 2, id + 1);
+        callees = Arrays.copyOf(callees, capacity);
+        calleeCount = Arrays.copyOf(calleeCount, capacity);
+    }
+}
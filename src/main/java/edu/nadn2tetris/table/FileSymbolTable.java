@@ -1,37 +1,56 @@
 package edu.nadn2tetris.table;
 
-import java.util.Map;
-
 public final class FileSymbolTable {
     private final SymbolTable classSymbolTable;
-    private final Map<String, SymbolTable> subroutineSymbolTables;
+    // qualified Class.sub name ids and their tables
+    private final int[] subroutineIds;
+    private final SymbolTable[] subroutineSymbolTables;
+    private int lastIndex; // codegen asks for the same subroutine many times in a row
+
+    public FileSymbolTable(SymbolTable classSymbolTable, int[] subroutineIds, SymbolTable[] subroutineSymbolTables) {
+        if (subroutineIds.length != subroutineSymbolTables.length) {
+            throw new IllegalArgumentException("Subroutine ids and tables differ in size");
+        }
 
-    public FileSymbolTable(SymbolTable classSymbolTable, Map<String, SymbolTable> subroutineSymbolTables) {
         this.classSymbolTable = classSymbolTable;
+        this.subroutineIds = subroutineIds;
         this.subroutineSymbolTables = subroutineSymbolTables;
     }
 
-    public short getMethodVarCount(String methodName) {
-        final SymbolTable table = subroutineSymbolTables.get(methodName);
-        if (table == null) {
-            throw new IllegalStateException("Cannot find symbol table for " + methodName);
-        }
-
-        return table.countOf(Kind.VAR);
+    public short getMethodVarCount(int methodId) {
+        return getSubroutineTable(methodId).countOf(Kind.VAR);
     }
 
-    public IdentifierInfo get(String methodName, String identifier) {
-        final SymbolTable table = subroutineSymbolTables.get(methodName);
-        if (table == null) {
-            throw new IllegalStateException("Cannot find symbol table for " + methodName);
-        }
+    public short getArgCount(int methodId) {
+        return getSubroutineTable(methodId).countOf(Kind.ARG);
+    }
 
-        final IdentifierInfo identifierInfo = table.getIdentifierInfo(identifier);
+    public IdentifierInfo get(int methodId, int identifierId) {
+        final IdentifierInfo identifierInfo = getSubroutineTable(methodId).getIdentifierInfo(identifierId);
 
-        return identifierInfo == null ? classSymbolTable.getIdentifierInfo(identifier) : identifierInfo;
+        return identifierInfo == null ? classSymbolTable.getIdentifierInfo(identifierId) : identifierInfo;
     }
 
     public short getClassFieldsCount() {
         return classSymbolTable.countOf(Kind.FIELD);
     }
+
+    public short getClassStaticsCount() {
+        return classSymbolTable.countOf(Kind.STATIC);
+    }
+
+    private SymbolTable getSubroutineTable(int methodId) {
+        if (lastIndex < subroutineIds.length && subroutineIds[lastIndex] == methodId) {
+            return subroutineSymbolTables[lastIndex];
+        }
+
+        for (int i = 0; i < subroutineIds.length; i++) {
+            if (subroutineIds[i] == methodId) {
+                lastIndex = i;
+                return subroutineSymbolTables[i];
+            }
+        }
+
+        throw new IllegalStateException("Cannot find symbol table for " + classSymbolTable.names().name(methodId));
+    }
 }
@@ -4,15 +4,19 @@ import edu.nadn2tetris.ast.Type;
 
 public final class IdentifierInfo {
     public final String name;
+    public final int nameId;
     public final Type type;
     public final String classType;
+    public final int classTypeId;
     public final Kind kind;
     public final short index;
 
     public static class Builder {
         private String name;
+        private int nameId = -1;
         private Type type;
         private String classType;
+        private int classTypeId = -1;
         private Kind kind;
         private short index;
 
@@ -23,23 +27,26 @@ public final class IdentifierInfo {
                 throw new IllegalStateException("Cannot build an identifier");
             }
 
-            return new IdentifierInfo(name, type, classType, kind, index);
+            return new IdentifierInfo(name, nameId, type, classType, classTypeId, kind, index);
         }
 
-        public Builder setName(String name) {
+        public Builder setName(String name, int nameId) {
             this.name = name;
+            this.nameId = nameId;
             return this;
         }
 
         public Builder setType(Type type) {
             this.type = type;
             this.classType = null;
+            this.classTypeId = -1;
             return this;
         }
 
-        public Builder setClassType(String type) {
+        public Builder setClassType(String type, int typeId) {
             this.type = Type.CLASS;
             this.classType = type;
+            this.classTypeId = typeId;
             return this;
         }
 
@@ -54,10 +61,12 @@ public final class IdentifierInfo {
         }
     }
 
-    private IdentifierInfo(String name, Type type, String classType, Kind kind, short index) {
+    private IdentifierInfo(String name, int nameId, Type type, String classType, int classTypeId, Kind kind, short index) {
         this.name = name;
+        this.nameId = nameId;
         this.type = type;
         this.classType = classType;
+        this.classTypeId = classTypeId;
         this.kind = kind;
         this.index = index;
     }
@@ -1,50 +1,78 @@
 package edu.nadn2tetris.table;
 
-import java.util.HashMap;
-import java.util.Map;
+import java.util.Arrays;
 
 import edu.nadn2tetris.ast.Type;
+import edu.nadn2tetris.common.NameTable;
 
+/**
+ * Identifiers of a class or a subroutine keyed by name id.
+ * Scopes hold a handful of names, so a linear scan over an int array beats hashing.
+ */
 public final class SymbolTable {
-    private final Map<String, IdentifierInfo> identifiers = new HashMap<>();
-    private final Map<Kind, Short> kindIndex = new HashMap<>();
+    private final NameTable names;
+    private int[] ids = new int[8];
+    private IdentifierInfo[] identifiers = new IdentifierInfo[8];
+    private int size;
+    private final short[] kindCount = new short[Kind.values().length];
 
-    public void define(String name, String type, Kind kind) {
-        final short[] index = new short[1];
-        kindIndex.compute(kind, (Kind key, Short prev) -> {
-            index[0] = (short) (prev == null ? 0 : prev + 1);
-            return index[0];
-        });
+    public SymbolTable(NameTable names) {
+        this.names = names;
+    }
 
+    /**
+     * @param classTypeId name id of the class for {@link Type#CLASS}, ignored otherwise
+     */
+    public void define(int nameId, Type type, int classTypeId, Kind kind) {
         final IdentifierInfo.Builder infoBuilder = IdentifierInfo.builder()
-                .setName(name)
+                .setName(names.name(nameId), nameId)
                 .setKind(kind)
-                .setIndex(index[0]);
+                .setIndex(kindCount[kind.ordinal()]++);
 
-        final Type varType = Type.parse(type);
-        if (varType == Type.CLASS) {
-            infoBuilder.setClassType(type);
+        if (type == Type.CLASS) {
+            infoBuilder.setClassType(names.name(classTypeId), classTypeId);
         } else {
-            infoBuilder.setType(varType);
+            infoBuilder.setType(type);
+        }
+
+        final int i = indexOf(nameId);
+        if (i >= 0) {
+            identifiers[i] = infoBuilder.build();
+            return;
         }
 
-        identifiers.put(name, infoBuilder.build());
+        if (size == ids.length) {
+            ids = Arrays.copyOf(ids, size * 2);
+            identifiers = Arrays.copyOf(identifiers, size * 2);
+        }
+        ids[size] = nameId;
+        identifiers[size++] = infoBuilder.build();
     }
 
     public short size() {
-        return (short) identifiers.size();
+        return (short) size;
     }
 
-    public IdentifierInfo getIdentifierInfo(String name) {
-        return identifiers.get(name);
+    public IdentifierInfo getIdentifierInfo(int nameId) {
+        final int i = indexOf(nameId);
+        return i < 0 ? null : identifiers[i];
     }
 
     public short countOf(Kind kind) {
-        Short i = kindIndex.get(kind);
-        if (i == null) {
-            return 0;
+        return kindCount[kind.ordinal()];
+    }
+
+    NameTable names() {
+        return names;
+    }
+
+    private int indexOf(int nameId) {
+        for (int i = 0; i < size; i++) {
+            if (ids[i] == nameId) {
+                return i;
+            }
         }
 
-        return (short) (i + 1);
+        return -1;
     }
 }
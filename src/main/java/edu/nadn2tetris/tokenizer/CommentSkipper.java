@@ -0,0 +1,68 @@
+package edu.nadn2tetris.tokenizer;
+
+/**
+ * Skips whitespaces, {@code //} and {@code /* *\/} comments of the raw source, one state transition per char.
+ * Block comments may span lines and be followed by code on the same line, but have to be closed.
+ * String literals are consumed by the lexer as tokens, so comment markers inside them are never seen here.
+ */
+final class CommentSkipper {
+    private static final int CODE = 0;
+    private static final int LINE_COMMENT = 1;
+    private static final int BLOCK_COMMENT = 2;
+    private static final int BLOCK_STAR = 3; // '*' inside of block comment, may be closed by '/'
+
+    private CommentSkipper() {}
+
+    /**
+     * @return position of the next token start or {@code end}
+     */
+    static int skip(CharSequence source, int pos, int end) {
+        int state = CODE;
+        while (pos < end) {
+            final char ch = source.charAt(pos);
+            switch (state) {
+                case CODE -> {
+                    if (ch > ' ') {
+                        if (ch != '/' || pos + 1 == end) {
+                            return pos;
+                        }
+
+                        final char next = source.charAt(pos + 1);
+                        if (next == '/') {
+                            state = LINE_COMMENT;
+                        } else if (next == '*') {
+                            state = BLOCK_COMMENT;
+                        } else {
+                            return pos; // division
+                        }
+                        pos++;
+                    }
+                }
+                case LINE_COMMENT -> {
+                    if (ch == '\n') {
+                        state = CODE;
+                    }
+                }
+                case BLOCK_COMMENT -> {
+                    if (ch == '*') {
+                        state = BLOCK_STAR;
+                    }
+                }
+                case BLOCK_STAR -> {
+                    if (ch == '/') {
+                        state = CODE;
+                    } else if (ch != '*') {
+                        state = BLOCK_COMMENT;
+                    }
+                }
+            }
+            pos++;
+        }
+
+        if (state == BLOCK_COMMENT || state == BLOCK_STAR) {
+            throw new IllegalStateException("Unterminated comment");
+        }
+
+        return pos;
+    }
+}
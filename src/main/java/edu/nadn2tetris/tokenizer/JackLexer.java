@@ -0,0 +1,153 @@
+package edu.nadn2tetris.tokenizer;
+
+import edu.nadn2tetris.common.Keyword;
+import edu.nadn2tetris.common.TokenType;
+
+/**
+ * Single pass scanner driven by a character class table.
+ * Classifies the token on its first char and consumes the rest of it in one loop,
+ * keywords are resolved by {@link Keyword#lookup(CharSequence, int, int)} without creating Strings.
+ */
+final class JackLexer {
+    private static final byte OTHER = 0;
+    private static final byte SPACE = 1;
+    private static final byte LETTER = 2; // letters and '_'
+    private static final byte DIGIT = 3;
+    private static final byte SYMBOL = 4;
+    private static final byte QUOTE = 5;
+
+    private static final byte[] CHAR_CLASSES = new byte[128];
+    private static final String SYMBOLS = "{}()[].,;+-*/&|<>=~";
+    private static final int MAX_INT = 32767; // [0, 32767] by spec
+
+    static {
+        for (char ch = 0; ch <= ' '; ch++) {
+            CHAR_CLASSES[ch] = SPACE;
+        }
+        for (char ch = 'a'; ch <= 'z'; ch++) {
+            CHAR_CLASSES[ch] = LETTER;
+            CHAR_CLASSES[Character.toUpperCase(ch)] = LETTER;
+        }
+        for (char ch = '0'; ch <= '9'; ch++) {
+            CHAR_CLASSES[ch] = DIGIT;
+        }
+        for (int i = 0; i < SYMBOLS.length(); i++) {
+            CHAR_CLASSES[SYMBOLS.charAt(i)] = SYMBOL;
+        }
+        CHAR_CLASSES['_'] = LETTER;
+        CHAR_CLASSES['"'] = QUOTE;
+    }
+
+    private CharSequence source = "";
+    private int pos;
+    private int end;
+
+    // current token
+    TokenType tokenType;
+    Keyword keyword;
+    char symbol;
+    short intVal;
+    int start;
+    int length;
+
+    void reset(CharSequence source) {
+        this.source = source;
+        this.pos = 0;
+        this.end = source.length();
+    }
+
+    CharSequence source() {
+        return source;
+    }
+
+    /**
+     * Skips whitespaces and comments, returns true if there is a token start in the current source.
+     */
+    boolean hasNext() {
+        pos = CommentSkipper.skip(source, pos, end);
+        return pos < end;
+    }
+
+    void next() {
+        final char first = source.charAt(pos);
+        start = pos;
+
+        switch (classOf(first)) {
+            case LETTER -> scanWord();
+            case DIGIT -> scanInt();
+            case QUOTE -> scanString();
+            case SYMBOL -> {
+                pos++;
+                tokenType = TokenType.SYMBOL;
+                symbol = first;
+            }
+            default -> throw new IllegalStateException("Unsupported symbol: " + first);
+        }
+
+        length = pos - start;
+    }
+
+    String text() {
+        return source.subSequence(start, start + length).toString();
+    }
+
+    String stringText() {
+        return source.subSequence(start + 1, start + length - 1).toString();
+    }
+
+    private void scanWord() {
+        int i = pos + 1;
+        byte charClass;
+        while (i < end && ((charClass = classOf(source.charAt(i))) == LETTER || charClass == DIGIT)) {
+            i++;
+        }
+
+        final Keyword found = Keyword.lookup(source, pos, i - pos);
+        if (found == null) {
+            tokenType = TokenType.IDENTIFIER;
+        } else {
+            tokenType = TokenType.KEYWORD;
+            keyword = found;
+        }
+        pos = i;
+    }
+
+    private void scanInt() {
+        int value = 0;
+        int i = pos;
+        char ch;
+        while (i < end && classOf(ch = source.charAt(i)) == DIGIT) {
+            value = value * 10 + (ch - '0');
+            if (value > MAX_INT) {
+                throw new IllegalStateException("Integer constant out of range: " + source.subSequence(pos, i + 1));
+            }
+            i++;
+        }
+
+        if (i < end && classOf(source.charAt(i)) == LETTER) {
+            throw new IllegalStateException("Unsupported token: " + source.subSequence(pos, i + 1));
+        }
+
+        tokenType = TokenType.INT_CONST;
+        intVal = (short) value;
+        pos = i;
+    }
+
+    private void scanString() {
+        int i = pos + 1;
+        while (i < end && source.charAt(i) != '"' && source.charAt(i) != '\n') { // a string constant is one line
+            i++;
+        }
+
+        if (i == end || source.charAt(i) == '\n') {
+            throw new IllegalStateException("Unterminated string constant: " + source.subSequence(pos, i));
+        }
+
+        tokenType = TokenType.STRING_CONST;
+        pos = i + 1;
+    }
+
+    private static byte classOf(char ch) {
+        return ch < 128 ? CHAR_CLASSES[ch] : OTHER;
+    }
+}
@@ -1,31 +1,64 @@
 package edu.nadn2tetris.tokenizer;
 
-import java.io.BufferedReader;
 import java.io.Closeable;
 import java.io.IOException;
 import java.io.InputStream;
-import java.io.InputStreamReader;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
 
 import edu.nadn2tetris.common.Keyword;
+import edu.nadn2tetris.common.NameTable;
 import edu.nadn2tetris.common.TokenType;
-import edu.nadn2tetris.tokenizer.iterator.TokenIterator;
 
 public final class JackTokenizer implements Closeable {
-    private TokenType tokenType;
-    private Keyword keyword;
-    private char symbol;
-    private short intVal;
+    // identifier and string constant are views, Strings are created on demand
+    private CharSequence identifierSource;
+    private int identifierStart;
+    private int identifierLength;
     private String identifier;
+
+    private CharSequence stringSource;
+    private int stringStart;
+    private int stringLength;
     private String stringVal;
 
-    private final TokenIterator tokens;
+    private final JackLexer lexer = new JackLexer();
 
+    /**
+     * Reads the whole stream in one go and closes it, the raw bytes are scanned the same way as mapped ones.
+     */
     public JackTokenizer(InputStream is) {
-        this.tokens = new TokenIterator(new BufferedReader(new InputStreamReader(is)));
+        this(readAll(is));
+    }
+
+    private JackTokenizer(CharSequence source) {
+        this.lexer.reset(source);
+    }
+
+    /**
+     * Maps the source file into memory, ASCII bytes are scanned in place without decoding.
+     */
+    public static JackTokenizer map(Path src) throws IOException {
+        try (final FileChannel channel = FileChannel.open(src, StandardOpenOption.READ)) {
+            final MappedByteBuffer buffer = channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size());
+            return new JackTokenizer(new AsciiSequence(buffer));
+        }
+    }
+
+    private static CharSequence readAll(InputStream is) {
+        try (is) {
+            return new AsciiSequence(ByteBuffer.wrap(is.readAllBytes()));
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
     }
 
     public boolean hasMoreTokens() {
-        return tokens.hasNext();
+        return lexer.hasNext();
     }
 
     public void advance() {
@@ -33,49 +66,89 @@ public final class JackTokenizer implements Closeable {
             throw new IllegalStateException("End of file!");
         }
 
-        final String currToken = this.tokens.next();
-        tokenType = TokenType.parse(currToken);
-        if (tokenType == null) {
-            throw new RuntimeException("Unsupported currToken: " + currToken);
-        }
-
-        switch (tokenType) {
-            case SYMBOL -> this.symbol = currToken.charAt(0);
-            case KEYWORD -> this.keyword = Keyword.parse(currToken);
-            case INT_CONST -> this.intVal = Short.parseShort(currToken);
-            case IDENTIFIER -> this.identifier = currToken;
-            case STRING_CONST -> this.stringVal = currToken.substring(1, currToken.length() - 1);
-            default -> throw new IllegalArgumentException("Unsupported currToken type: " + tokenType);
+        lexer.next();
+        switch (lexer.tokenType) {
+            case IDENTIFIER -> {
+                this.identifierSource = lexer.source();
+                this.identifierStart = lexer.start;
+                this.identifierLength = lexer.length;
+                this.identifier = null;
+            }
+            case STRING_CONST -> {
+                this.stringSource = lexer.source();
+                this.stringStart = lexer.start + 1;
+                this.stringLength = lexer.length - 2;
+                this.stringVal = null;
+            }
         }
     }
 
     public TokenType tokenType() {
-        return tokenType;
+        return lexer.tokenType;
     }
 
     public Keyword keyword() {
-        return keyword;
+        return lexer.keyword;
     }
 
     public char symbol() {
-        return symbol;
+        return lexer.symbol;
     }
 
     public String identifier() {
+        if (identifier == null && identifierSource != null) {
+            identifier = identifierSource.subSequence(identifierStart, identifierStart + identifierLength).toString();
+        }
+
         return identifier;
     }
 
     // [0, 32767] by spec
     public short intVal() {
-        return intVal;
+        return lexer.intVal;
     }
 
     public String stringVal() {
+        if (stringVal == null && stringSource != null) {
+            stringVal = stringSource.subSequence(stringStart, stringStart + stringLength).toString();
+        }
+
         return stringVal;
     }
 
+    /**
+     * Offset of the current token in the source
+     */
+    public int tokenOffset() {
+        return lexer.start;
+    }
+
+    public int tokenLength() {
+        return lexer.length;
+    }
+
+    /**
+     * Current token as a view into the source, no String is created
+     */
+    public CharSequence tokenText() {
+        return lexer.source().subSequence(lexer.start, lexer.start + lexer.length);
+    }
+
+    int sourceLength() {
+        return lexer.source().length();
+    }
+
+    /**
+     * Interns the current identifier or string constant straight from the source
+     */
+    int intern(NameTable names) {
+        return lexer.tokenType == TokenType.STRING_CONST
+                ? names.intern(lexer.source(), lexer.start + 1, lexer.length - 2)
+                : names.intern(lexer.source(), lexer.start, lexer.length);
+    }
+
     @Override
     public void close() throws IOException {
-        this.tokens.close();
+        // source is already read or mapped, mapping is released with the buffer
     }
 }
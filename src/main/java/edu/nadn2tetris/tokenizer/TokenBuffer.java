@@ -0,0 +1,147 @@
+package edu.nadn2tetris.tokenizer;
+
+import java.util.Arrays;
+
+import edu.nadn2tetris.common.Keyword;
+import edu.nadn2tetris.common.NameTable;
+import edu.nadn2tetris.common.TokenType;
+
+/**
+ * Whole file token stream stored as parallel primitive arrays, one slot per token.
+ * Tokens are addressed by index, so consumers may look ahead or go back freely and parse the same file again.
+ * <ul>
+ *     <li>kind - {@link TokenType} ordinal</li>
+ *     <li>name - id in {@link #names()} for identifiers and string constants, -1 otherwise</li>
+ *     <li>value - int constant, symbol char or {@link Keyword} ordinal</li>
+ *     <li>offset - token start in the source</li>
+ * </ul>
+ */
+public final class TokenBuffer {
+    private static final TokenType[] TOKEN_TYPES = TokenType.values();
+    private static final Keyword[] KEYWORDS = Keyword.values();
+    private static final int MIN_CAPACITY = 64;
+
+    private final NameTable names;
+    private byte[] kinds;
+    private int[] nameIds;
+    private int[] values;
+    private int[] offsets;
+    private int size;
+
+    private TokenBuffer(NameTable names, int capacity) {
+        this.names = names;
+        this.kinds = new byte[capacity];
+        this.nameIds = new int[capacity];
+        this.values = new int[capacity];
+        this.offsets = new int[capacity];
+    }
+
+    /**
+     * Lexes all remaining tokens of the tokenizer.
+     */
+    public static TokenBuffer of(JackTokenizer tokenizer) {
+        return of(tokenizer, new NameTable());
+    }
+
+    /**
+     * Lexes all remaining tokens of the tokenizer, names are interned into the given table.
+     */
+    public static TokenBuffer of(JackTokenizer tokenizer, NameTable names) {
+        // roughly one token per 4 chars of an average source
+        final TokenBuffer tokens = new TokenBuffer(names, Math.max(MIN_CAPACITY, tokenizer.sourceLength() / 4));
+        while (tokenizer.hasMoreTokens()) {
+            tokenizer.advance();
+            tokens.add(tokenizer);
+        }
+
+        return tokens;
+    }
+
+    private void add(JackTokenizer tokenizer) {
+        if (size == kinds.length) {
+            grow();
+        }
+
+        final TokenType tokenType = tokenizer.tokenType();
+        kinds[size] = (byte) tokenType.ordinal();
+        offsets[size] = tokenizer.tokenOffset();
+        nameIds[size] = -1;
+        switch (tokenType) {
+            case KEYWORD -> values[size] = tokenizer.keyword().ordinal();
+            case SYMBOL -> values[size] = tokenizer.symbol();
+            case INT_CONST -> values[size] = tokenizer.intVal();
+            case IDENTIFIER, STRING_CONST -> nameIds[size] = tokenizer.intern(names);
+        }
+        size++;
+    }
+
+    private void grow() {
+        final int capacity = kinds.length * 2;
+        kinds = Arrays.copyOf(kinds, capacity);
+        nameIds = Arrays.copyOf(nameIds, capacity);
+        values = Arrays.copyOf(values, capacity);
+        offsets = Arrays.copyOf(offsets, capacity);
+    }
+
+    public int size() {
+        return size;
+    }
+
+    public NameTable names() {
+        return names;
+    }
+
+    public TokenType tokenType(int index) {
+        return TOKEN_TYPES[kinds[checkIndex(index)]];
+    }
+
+    public boolean isKeyword(int index, Keyword keyword) {
+        return kinds[checkIndex(index)] == TokenType.KEYWORD.ordinal() && values[index] == keyword.ordinal();
+    }
+
+    public boolean isSymbol(int index, char symbol) {
+        return kinds[checkIndex(index)] == TokenType.SYMBOL.ordinal() && values[index] == symbol;
+    }
+
+    public Keyword keyword(int index) {
+        return kinds[checkIndex(index)] == TokenType.KEYWORD.ordinal() ? KEYWORDS[values[index]] : null;
+    }
+
+    public char symbol(int index) {
+        return kinds[checkIndex(index)] == TokenType.SYMBOL.ordinal() ? (char) values[index] : 0;
+    }
+
+    public short intVal(int index) {
+        return kinds[checkIndex(index)] == TokenType.INT_CONST.ordinal() ? (short) values[index] : 0;
+    }
+
+    /**
+     * @return id of the identifier or string constant in {@link #names()}, -1 for other tokens
+     */
+    public int nameId(int index) {
+        return nameIds[checkIndex(index)];
+    }
+
+    public String identifier(int index) {
+        return kinds[checkIndex(index)] == TokenType.IDENTIFIER.ordinal() ? names.name(nameIds[index]) : null;
+    }
+
+    public String stringVal(int index) {
+        return kinds[checkIndex(index)] == TokenType.STRING_CONST.ordinal() ? names.name(nameIds[index]) : null;
+    }
+
+    /**
+     * Offset of the token in the source
+     */
+    public int offset(int index) {
+        return offsets[checkIndex(index)];
+    }
+
+    private int checkIndex(int index) {
+        if (index < 0 || index >= size) {
+            throw new IllegalStateException("End of file!");
+        }
+
+        return index;
+    }
+}
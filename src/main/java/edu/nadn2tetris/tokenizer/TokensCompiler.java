@@ -5,17 +5,23 @@ import java.io.IOException;
 
 public final class TokensCompiler implements Closeable {
     private StringBuilder xml = new StringBuilder();
+    private final TokenBuffer tokens;
     private final JackTokenizer tokenizer;
 
     public TokensCompiler(JackTokenizer tokenizer) {
+        this.tokens = TokenBuffer.of(tokenizer);
         this.tokenizer = tokenizer;
     }
 
+    public TokensCompiler(TokenBuffer tokens) {
+        this.tokens = tokens;
+        this.tokenizer = null;
+    }
+
     public String generate() {
         xml.append("<tokens>\n");
-        while (tokenizer.hasMoreTokens()) {
-            tokenizer.advance();
-            write();
+        for (int i = 0; i < tokens.size(); i++) {
+            write(i);
         }
 
         xml.append("</tokens>\n");
@@ -23,20 +29,20 @@ public final class TokensCompiler implements Closeable {
         return xml.toString();
     }
 
-    private void write() {
-        switch (tokenizer.tokenType()) {
-            case KEYWORD ->
-                    xml.append("<keyword> %s </keyword>\n".formatted(tokenizer.keyword().toString().toLowerCase()));
-            case SYMBOL -> xml.append("<symbol> %s </symbol>\n".formatted(tokenizer.symbol()));
-            case STRING_CONST ->
-                    xml.append("<stringConstant> %s </stringConstant>\n".formatted(tokenizer.stringVal()));
-            case INT_CONST -> xml.append("<integerConstant> %d </integerConstant>\n".formatted(tokenizer.intVal()));
-            case IDENTIFIER -> xml.append("<identifier> %s </identifier>\n".formatted(tokenizer.identifier()));
+    private void write(int i) {
+        switch (tokens.tokenType(i)) {
+            case KEYWORD -> xml.append("<keyword> %s </keyword>\n".formatted(tokens.keyword(i).getSpelling()));
+            case SYMBOL -> xml.append("<symbol> %s </symbol>\n".formatted(tokens.symbol(i)));
+            case STRING_CONST -> xml.append("<stringConstant> %s </stringConstant>\n".formatted(tokens.stringVal(i)));
+            case INT_CONST -> xml.append("<integerConstant> %d </integerConstant>\n".formatted(tokens.intVal(i)));
+            case IDENTIFIER -> xml.append("<identifier> %s </identifier>\n".formatted(tokens.identifier(i)));
         }
     }
 
     @Override
     public void close() throws IOException {
-        tokenizer.close();
+        if (tokenizer != null) {
+            tokenizer.close();
+        }
     }
 }
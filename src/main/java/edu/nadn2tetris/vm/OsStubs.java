@@ -0,0 +1,253 @@
+package edu.nadn2tetris.vm;
+
+import java.util.ArrayDeque;
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * Java implementations of the Jack OS functions for {@link VMInterpreter}.
+ * <p>
+ * Strings are heap blocks {@code [maxLength, length, chars...]}, the heap is a bump allocator whose freed
+ * blocks are reused for allocations of the same size. Screen and keyboard are not emulated:
+ * drawing does nothing, the keyboard is never pressed and reads return 0 or an empty string.
+ * Printed text is collected in {@link #output()}.
+ */
+public final class OsStubs {
+    private static final String[] NAMES = {
+            "Math.multiply", "Math.divide", "Math.min", "Math.max", "Math.abs", "Math.sqrt",
+            "Memory.peek", "Memory.poke", "Memory.alloc", "Memory.deAlloc",
+            "Array.new", "Array.dispose",
+            "String.new", "String.dispose", "String.length", "String.charAt", "String.setCharAt",
+            "String.appendChar", "String.eraseLastChar", "String.intValue", "String.setInt",
+            "String.backSpace", "String.doubleQuote", "String.newLine",
+            "Output.printChar", "Output.printString", "Output.printInt", "Output.println",
+            "Output.backSpace", "Output.moveCursor",
+            "Screen.clearScreen", "Screen.setColor", "Screen.drawPixel", "Screen.drawLine",
+            "Screen.drawRectangle", "Screen.drawCircle",
+            "Keyboard.keyPressed", "Keyboard.readChar", "Keyboard.readLine", "Keyboard.readInt",
+            "Sys.halt", "Sys.error", "Sys.wait",
+    };
+    private static final Map<String, Integer> IDS = new HashMap<>();
+
+    static {
+        for (int i = 0; i < NAMES.length; i++) {
+            IDS.put(NAMES[i], i);
+        }
+    }
+
+    public static final int HEAP_BASE = 2048;
+    static final int HEAP_END = 16384;
+
+    private final short[] ram;
+    private final StringBuilder output = new StringBuilder();
+    private final Map<Integer, ArrayDeque<Integer>> freeBlocks = new HashMap<>();
+    private int heapTop = HEAP_BASE;
+    private boolean halted;
+
+    public OsStubs(short[] ram) {
+        this.ram = ram;
+    }
+
+    /**
+     * @return id of the stub or -1 if there is none
+     */
+    public static int idOf(String name) {
+        return IDS.getOrDefault(name, -1);
+    }
+
+    public static int count() {
+        return NAMES.length;
+    }
+
+    public static String nameOf(int id) {
+        return NAMES[id];
+    }
+
+    public String output() {
+        return output.toString();
+    }
+
+    public boolean isHalted() {
+        return halted;
+    }
+
+    /**
+     * @param args address of the first argument in the ram
+     * @return value the function returns, 0 for void functions
+     */
+    public short call(int id, int args) {
+        final short x = ram[args];
+        final short y = ram[args + 1];
+        return switch (NAMES[id]) {
+            case "Math.multiply" -> (short) (x * y);
+            case "Math.divide" -> {
+                if (y == 0) {
+                    throw new IllegalStateException("Division by zero");
+                }
+                yield (short) (x / y);
+            }
+            case "Math.min" -> (short) Math.min(x, y);
+            case "Math.max" -> (short) Math.max(x, y);
+            case "Math.abs" -> (short) Math.abs(x);
+            case "Math.sqrt" -> {
+                if (x < 0) {
+                    throw new IllegalStateException("Square root of a negative number");
+                }
+                yield (short) Math.sqrt(x);
+            }
+            case "Memory.peek" -> ram[x];
+            case "Memory.poke" -> {
+                ram[x] = y;
+                yield 0;
+            }
+            case "Memory.alloc", "Array.new" -> alloc(x);
+            case "Memory.deAlloc", "Array.dispose", "String.dispose" -> {
+                deAlloc(x);
+                yield 0;
+            }
+            case "String.new" -> {
+                final short string = alloc(x + 2);
+                ram[string] = x;
+                ram[string + 1] = 0;
+                yield string;
+            }
+            case "String.length" -> ram[x + 1];
+            case "String.charAt" -> ram[x + 2 + checkIndex(x, y)];
+            case "String.setCharAt" -> {
+                ram[x + 2 + checkIndex(x, y)] = ram[args + 2];
+                yield 0;
+            }
+            case "String.appendChar" -> {
+                if (ram[x + 1] == ram[x]) {
+                    throw new IllegalStateException("String is full");
+                }
+                ram[x + 2 + ram[x + 1]++] = y;
+                yield x;
+            }
+            case "String.eraseLastChar" -> {
+                if (ram[x + 1] > 0) {
+                    ram[x + 1]--;
+                }
+                yield 0;
+            }
+            case "String.intValue" -> intValue(x);
+            case "String.setInt" -> {
+                setInt(x, y);
+                yield 0;
+            }
+            case "String.backSpace" -> 129;
+            case "String.doubleQuote" -> 34;
+            case "String.newLine" -> 128;
+            case "Output.printChar" -> {
+                printChar(x);
+                yield 0;
+            }
+            case "Output.printString" -> {
+                printString(x);
+                yield 0;
+            }
+            case "Output.printInt" -> {
+                output.append(x);
+                yield 0;
+            }
+            case "Output.println" -> {
+                output.append('\n');
+                yield 0;
+            }
+            case "Output.backSpace" -> {
+                if (!output.isEmpty()) {
+                    output.setLength(output.length() - 1);
+                }
+                yield 0;
+            }
+            case "Keyboard.readLine" -> {
+                printString(x);
+                yield alloc(2); // empty string with no room
+            }
+            case "Keyboard.readInt" -> {
+                printString(x);
+                yield 0;
+            }
+            case "Sys.halt" -> {
+                halted = true;
+                yield 0;
+            }
+            case "Sys.error" -> throw new IllegalStateException("Sys.error " + x);
+            // screen, cursor, keyboard state and waiting are not emulated
+            default -> 0;
+        };
+    }
+
+    private short alloc(int size) {
+        if (size <= 0) {
+            throw new IllegalStateException("Allocated size must be positive: " + size);
+        }
+
+        final ArrayDeque<Integer> free = freeBlocks.get(size);
+        if (free != null && !free.isEmpty()) {
+            return (short) (int) free.pop();
+        }
+
+        // a block is preceded by its size, like in the Jack OS
+        if (heapTop + size + 1 > HEAP_END) {
+            throw new IllegalStateException("Heap overflow");
+        }
+        ram[heapTop] = (short) size;
+        final int block = heapTop + 1;
+        heapTop += size + 1;
+
+        return (short) block;
+    }
+
+    private void deAlloc(short block) {
+        if (block <= HEAP_BASE || block >= heapTop) {
+            throw new IllegalStateException("Not a heap block: " + block);
+        }
+
+        freeBlocks.computeIfAbsent((int) ram[block - 1], s -> new ArrayDeque<>()).push((int) block);
+    }
+
+    private int checkIndex(short string, short index) {
+        if (index < 0 || index >= ram[string + 1]) {
+            throw new IllegalStateException("String index out of bounds: " + index);
+        }
+
+        return index;
+    }
+
+    private short intValue(short string) {
+        int value = 0;
+        int i = 0;
+        final boolean negative = ram[string + 1] > 0 && ram[string + 2] == '-';
+        if (negative) {
+            i++;
+        }
+        for (; i < ram[string + 1] && ram[string + 2 + i] >= '0' && ram[string + 2 + i] <= '9'; i++) {
+            value = value * 10 + ram[string + 2 + i] - '0';
+        }
+
+        return (short) (negative ? -value : value);
+    }
+
+    private void setInt(short string, short value) {
+        final String digits = Short.toString(value);
+        if (digits.length() > ram[string]) {
+            throw new IllegalStateException("String is too short for " + digits);
+        }
+
+        ram[string + 1] = (short) digits.length();
+        for (int i = 0; i < digits.length(); i++) {
+            ram[string + 2 + i] = (short) digits.charAt(i);
+        }
+    }
+
+    private void printString(short string) {
+        for (int i = 0; i < ram[string + 1]; i++) {
+            printChar(ram[string + 2 + i]);
+        }
+    }
+
+    private void printChar(short c) {
+        output.append(c == 128 ? '\n' : (char) c);
+    }
+}
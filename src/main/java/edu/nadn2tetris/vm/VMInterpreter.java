@@ -0,0 +1,212 @@
+package edu.nadn2tetris.vm;
+
+import java.util.Arrays;
+
+/**
+ * Runs a {@link VMProgram} on a 32K word ram laid out like the Hack platform:
+ * SP, LCL, ARG, THIS, THAT at 0-4, temp at 5-12, statics from 16, the stack from 256 and the heap from 2048.
+ * <p>
+ * Stack pointer and program counter live in locals of the dispatch loop, the other registers in the ram,
+ * so {@code pointer 0/1} and the OS see them. Return addresses are kept on a separate int stack,
+ * the frame slot of the return address holds the call depth instead.
+ */
+public final class VMInterpreter {
+    private static final int SP = 0;
+    private static final int LCL = 1;
+    private static final int ARG = 2;
+    private static final int THIS = 3;
+    private static final int THAT = 4;
+    private static final int STACK_BASE = 256;
+    private static final int RAM_SIZE = 32768;
+    private static final short TRUE = -1;
+    private static final short FALSE = 0;
+
+    private final VMProgram program;
+    private final long maxInstructions;
+
+    public VMInterpreter(VMProgram program) {
+        this(program, Long.MAX_VALUE);
+    }
+
+    /**
+     * @param maxInstructions the run fails once it executes more instructions, guards against endless loops
+     */
+    public VMInterpreter(VMProgram program, long maxInstructions) {
+        if (program == null) {
+            throw new IllegalArgumentException("Program cannot be null");
+        }
+        this.program = program;
+        this.maxInstructions = maxInstructions;
+    }
+
+    /**
+     * Calls the function without arguments on a fresh ram and runs until it returns or {@code Sys.halt} is called
+     */
+    public Result run(String entry) {
+        final int entryIndex = program.functionIndex(entry);
+        if (entryIndex < 0) {
+            throw new IllegalArgumentException("Undefined function " + entry);
+        }
+
+        final short[] ram = new short[RAM_SIZE];
+        final OsStubs os = new OsStubs(ram);
+        final int[] opcodes = program.opcodes;
+        final int[] a = program.a;
+        final int[] b = program.b;
+        int[] returns = new int[64];
+        int depth = 0;
+
+        int sp = STACK_BASE;
+        int pc = entryIndex;
+        long count = 0;
+        // the entry is called like any other function, with a return address of -1
+        returns[depth++] = -1;
+        sp = pushFrame(ram, sp, depth, 0);
+
+        try {
+            while (true) {
+                if (++count > maxInstructions) {
+                    throw new IllegalStateException("Instruction limit of " + maxInstructions + " exceeded");
+                }
+
+                final int arg = a[pc];
+                switch (opcodes[pc]) {
+                    case VMProgram.PUSH_CONSTANT -> ram[sp++] = (short) arg;
+                    case VMProgram.PUSH_LOCAL -> ram[sp++] = ram[ram[LCL] + arg];
+                    case VMProgram.PUSH_ARGUMENT -> ram[sp++] = ram[ram[ARG] + arg];
+                    case VMProgram.PUSH_THIS -> ram[sp++] = ram[ram[THIS] + arg];
+                    case VMProgram.PUSH_THAT -> ram[sp++] = ram[ram[THAT] + arg];
+                    case VMProgram.PUSH_FIXED -> ram[sp++] = ram[arg];
+                    case VMProgram.POP_LOCAL -> ram[ram[LCL] + arg] = ram[--sp];
+                    case VMProgram.POP_ARGUMENT -> ram[ram[ARG] + arg] = ram[--sp];
+                    case VMProgram.POP_THIS -> ram[ram[THIS] + arg] = ram[--sp];
+                    case VMProgram.POP_THAT -> ram[ram[THAT] + arg] = ram[--sp];
+                    case VMProgram.POP_FIXED -> ram[arg] = ram[--sp];
+                    case VMProgram.ADD -> {
+                        sp--;
+                        ram[sp - 1] = (short) (ram[sp - 1] + ram[sp]);
+                    }
+                    case VMProgram.SUB -> {
+                        sp--;
+                        ram[sp - 1] = (short) (ram[sp - 1] - ram[sp]);
+                    }
+                    case VMProgram.NEG -> ram[sp - 1] = (short) -ram[sp - 1];
+                    case VMProgram.EQ -> {
+                        sp--;
+                        ram[sp - 1] = ram[sp - 1] == ram[sp] ? TRUE : FALSE;
+                    }
+                    case VMProgram.GT -> {
+                        sp--;
+                        ram[sp - 1] = ram[sp - 1] > ram[sp] ? TRUE : FALSE;
+                    }
+                    case VMProgram.LT -> {
+                        sp--;
+                        ram[sp - 1] = ram[sp - 1] < ram[sp] ? TRUE : FALSE;
+                    }
+                    case VMProgram.AND -> {
+                        sp--;
+                        ram[sp - 1] = (short) (ram[sp - 1] & ram[sp]);
+                    }
+                    case VMProgram.OR -> {
+                        sp--;
+                        ram[sp - 1] = (short) (ram[sp - 1] | ram[sp]);
+                    }
+                    case VMProgram.NOT -> ram[sp - 1] = (short) ~ram[sp - 1];
+                    case VMProgram.GOTO -> {
+                        pc = arg;
+                        continue;
+                    }
+                    case VMProgram.IF_GOTO -> {
+                        if (ram[--sp] != 0) {
+                            pc = arg;
+                            continue;
+                        }
+                    }
+                    case VMProgram.CALL -> {
+                        if (depth == returns.length) {
+                            returns = Arrays.copyOf(returns, depth * 2);
+                        }
+                        returns[depth++] = pc + 1;
+                        sp = pushFrame(ram, sp, depth, b[pc]);
+                        pc = arg;
+                        continue;
+                    }
+                    case VMProgram.CALL_OS -> {
+                        final int args = sp - b[pc];
+                        ram[SP] = (short) sp;
+                        final short value = os.call(arg, args);
+                        if (os.isHalted()) {
+                            return new Result(FALSE, count, os.output(), true);
+                        }
+                        sp = args;
+                        ram[sp++] = value;
+                    }
+                    case VMProgram.FUNCTION -> {
+                        if (sp + arg >= OsStubs.HEAP_BASE) {
+                            throw new IllegalStateException("Stack overflow");
+                        }
+                        for (int i = 0; i < arg; i++) {
+                            ram[sp++] = 0;
+                        }
+                    }
+                    case VMProgram.RETURN -> {
+                        final int frame = ram[LCL];
+                        final int args = ram[ARG];
+                        ram[args] = ram[sp - 1];
+                        sp = args + 1;
+                        ram[THAT] = ram[frame - 1];
+                        ram[THIS] = ram[frame - 2];
+                        ram[ARG] = ram[frame - 3];
+                        ram[LCL] = ram[frame - 4];
+                        pc = returns[--depth];
+                        if (pc < 0) {
+                            return new Result(ram[args], count, os.output(), false);
+                        }
+                        continue;
+                    }
+                    default -> throw new IllegalStateException("Unknown opcode " + opcodes[pc]);
+                }
+                pc++;
+            }
+        } catch (ArrayIndexOutOfBoundsException e) {
+            throw new IllegalStateException("Invalid memory access in " + program.functionOf[pc], e);
+        } catch (IllegalStateException e) {
+            throw new IllegalStateException(e.getMessage() + " in " + program.functionOf[pc], e);
+        }
+    }
+
+    /**
+     * Saves the caller registers like the VM call command and points ARG and LCL at the callee frame
+     *
+     * @return new stack pointer
+     */
+    private static int pushFrame(short[] ram, int sp, int depth, int args) {
+        if (sp + 5 >= OsStubs.HEAP_BASE) {
+            throw new IllegalStateException("Stack overflow");
+        }
+
+        ram[sp] = (short) depth;
+        ram[sp + 1] = ram[LCL];
+        ram[sp + 2] = ram[ARG];
+        ram[sp + 3] = ram[THIS];
+        ram[sp + 4] = ram[THAT];
+        ram[ARG] = (short) (sp - args);
+        ram[LCL] = (short) (sp + 5);
+
+        return sp + 5;
+    }
+
+    public static final class Result {
+        public final short value; // returned by the entry function, 0 if halted
+        public final long instructions; // executed VM instructions, labels are not instructions
+        public final String output; // printed by the Output stubs
+        public final boolean halted;
+
+        private Result(short value, long instructions, String output, boolean halted) {
+            this.value = value;
+            this.instructions = instructions;
+            this.output = output;
+            this.halted = halted;
+        }
+    }
+}
@@ -0,0 +1,307 @@
+package edu.nadn2tetris.vm;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.stream.Stream;
+
+/**
+ * VM code decoded once for {@link VMInterpreter}: every instruction is an opcode with up to two int operands,
+ * labels are resolved to instruction indexes and removed, segments are folded into the opcodes,
+ * static, temp and pointer become absolute addresses.
+ * <p>
+ * Labels are scoped to their function. Calls to functions missing from the program go to {@link OsStubs}.
+ */
+public final class VMProgram {
+    static final int PUSH_CONSTANT = 0;
+    static final int PUSH_LOCAL = 1;
+    static final int PUSH_ARGUMENT = 2;
+    static final int PUSH_THIS = 3;
+    static final int PUSH_THAT = 4;
+    static final int PUSH_FIXED = 5; // static, temp, pointer
+    static final int POP_LOCAL = 6;
+    static final int POP_ARGUMENT = 7;
+    static final int POP_THIS = 8;
+    static final int POP_THAT = 9;
+    static final int POP_FIXED = 10;
+    static final int ADD = 11;
+    static final int SUB = 12;
+    static final int NEG = 13;
+    static final int EQ = 14;
+    static final int GT = 15;
+    static final int LT = 16;
+    static final int AND = 17;
+    static final int OR = 18;
+    static final int NOT = 19;
+    static final int GOTO = 20;
+    static final int IF_GOTO = 21;
+    static final int CALL = 22; // a: function index, b: args
+    static final int CALL_OS = 23; // a: stub id, b: args
+    static final int FUNCTION = 24; // a: vars
+    static final int RETURN = 25;
+
+    static final int STATIC_BASE = 16;
+    static final int STATIC_END = 256;
+    private static final int TEMP_BASE = 5;
+    private static final int TEMP_SIZE = 8;
+    private static final int POINTER_BASE = 3;
+
+    final int[] opcodes;
+    final int[] a;
+    final int[] b;
+    final String[] functionOf; // name of the function an instruction belongs to
+    private final Map<String, Integer> functions;
+
+    private VMProgram(int[] opcodes, int[] a, int[] b, String[] functionOf, Map<String, Integer> functions) {
+        this.opcodes = opcodes;
+        this.a = a;
+        this.b = b;
+        this.functionOf = functionOf;
+        this.functions = functions;
+    }
+
+    /**
+     * Loads every {@code .vm} file of the directory, or the single file
+     */
+    public static VMProgram load(Path path) throws IOException {
+        final Map<String, String> sources = new HashMap<>();
+        if (Files.isDirectory(path)) {
+            try (Stream<Path> files = Files.list(path)) {
+                for (Path file : files.filter(f -> f.getFileName().toString().endsWith(".vm")).toList()) {
+                    sources.put(className(file), Files.readString(file));
+                }
+            }
+        } else {
+            sources.put(className(path), Files.readString(path));
+        }
+
+        return parse(sources);
+    }
+
+    /**
+     * @param sources VM code by file name without extension, each file has its own static segment
+     */
+    public static VMProgram parse(Map<String, String> sources) {
+        final Decoder decoder = new Decoder();
+        // sorted, so static addresses do not depend on the map order
+        for (String file : sources.keySet().stream().sorted().toList()) {
+            decoder.decodeFile(file, sources.get(file));
+        }
+
+        return decoder.link();
+    }
+
+    /**
+     * @return index of the function instruction, -1 if the program has no such function
+     */
+    public int functionIndex(String name) {
+        return functions.getOrDefault(name, -1);
+    }
+
+    public int size() {
+        return opcodes.length;
+    }
+
+    private static String className(Path file) {
+        final String name = file.getFileName().toString();
+        final int dot = name.lastIndexOf('.');
+
+        return dot < 0 ? name : name.substring(0, dot);
+    }
+
+    private static final class Decoder {
+        private int[] opcodes = new int[1024];
+        private int[] a = new int[1024];
+        private int[] b = new int[1024];
+        private String[] functionOf = new String[1024];
+        private int size;
+
+        private final Map<String, Integer> functions = new HashMap<>();
+        private final List<Integer> calls = new ArrayList<>(); // instructions whose a is an index into callees
+        private final List<String> callees = new ArrayList<>();
+        private int staticBase = STATIC_BASE;
+
+        // state of the file being decoded
+        private String function;
+        private final Map<String, Integer> labels = new HashMap<>();
+        private final Map<Integer, String> jumps = new HashMap<>();
+
+        void decodeFile(String file, String code) {
+            int statics = 0;
+            int lineNumber = 0;
+            for (String rawLine : code.split("\n")) {
+                lineNumber++;
+                final String line = stripComment(rawLine);
+                if (line.isEmpty()) {
+                    continue;
+                }
+
+                final String[] parts = line.split("\\s+");
+                try {
+                    statics = Math.max(statics, decode(parts, file));
+                } catch (RuntimeException e) {
+                    throw new IllegalStateException(file + ".vm:" + lineNumber + ": " + e.getMessage(), e);
+                }
+            }
+            resolveLabels();
+
+            staticBase += statics;
+            if (staticBase > STATIC_END) {
+                throw new IllegalStateException("Too many statics, " + file + ".vm ends at " + staticBase);
+            }
+        }
+
+        /**
+         * @return amount of statics the instruction needs
+         */
+        private int decode(String[] parts, String file) {
+            switch (parts[0]) {
+                case "push", "pop" -> {
+                    return decodeMemoryAccess(parts[0].equals("push"), parts[1], Integer.parseInt(parts[2]));
+                }
+                case "add" -> add(ADD, 0, 0);
+                case "sub" -> add(SUB, 0, 0);
+                case "neg" -> add(NEG, 0, 0);
+                case "eq" -> add(EQ, 0, 0);
+                case "gt" -> add(GT, 0, 0);
+                case "lt" -> add(LT, 0, 0);
+                case "and" -> add(AND, 0, 0);
+                case "or" -> add(OR, 0, 0);
+                case "not" -> add(NOT, 0, 0);
+                case "label" -> {
+                    if (labels.put(scoped(parts[1]), size) != null) {
+                        throw new IllegalStateException("Duplicate label " + parts[1]);
+                    }
+                }
+                case "goto", "if-goto" -> {
+                    jumps.put(size, scoped(parts[1]));
+                    add(parts[0].equals("goto") ? GOTO : IF_GOTO, -1, 0);
+                }
+                case "call" -> {
+                    calls.add(size);
+                    add(CALL, callees.size(), Integer.parseInt(parts[2]));
+                    callees.add(parts[1]);
+                }
+                case "function" -> {
+                    resolveLabels();
+                    function = parts[1];
+                    if (functions.put(function, size) != null) {
+                        throw new IllegalStateException("Duplicate function " + function);
+                    }
+                    add(FUNCTION, Integer.parseInt(parts[2]), 0);
+                }
+                case "return" -> add(RETURN, 0, 0);
+                default -> throw new IllegalStateException("Unknown instruction " + parts[0]);
+            }
+
+            return 0;
+        }
+
+        private int decodeMemoryAccess(boolean push, String segment, int index) {
+            switch (segment) {
+                case "constant" -> {
+                    if (!push) {
+                        throw new IllegalStateException("Cannot pop to constant");
+                    }
+                    add(PUSH_CONSTANT, index, 0);
+                }
+                case "local" -> add(push ? PUSH_LOCAL : POP_LOCAL, index, 0);
+                case "argument" -> add(push ? PUSH_ARGUMENT : POP_ARGUMENT, index, 0);
+                case "this" -> add(push ? PUSH_THIS : POP_THIS, index, 0);
+                case "that" -> add(push ? PUSH_THAT : POP_THAT, index, 0);
+                case "static" -> {
+                    add(push ? PUSH_FIXED : POP_FIXED, staticBase + index, 0);
+                    return index + 1;
+                }
+                case "temp" -> {
+                    if (index >= TEMP_SIZE) {
+                        throw new IllegalStateException("Temp index out of range: " + index);
+                    }
+                    add(push ? PUSH_FIXED : POP_FIXED, TEMP_BASE + index, 0);
+                }
+                case "pointer" -> {
+                    if (index > 1) {
+                        throw new IllegalStateException("Pointer index out of range: " + index);
+                    }
+                    add(push ? PUSH_FIXED : POP_FIXED, POINTER_BASE + index, 0);
+                }
+                default -> throw new IllegalStateException("Unknown segment " + segment);
+            }
+
+            return 0;
+        }
+
+        private String scoped(String label) {
+            if (function == null) {
+                throw new IllegalStateException("Label outside of a function: " + label);
+            }
+
+            return function + "$" + label;
+        }
+
+        private void resolveLabels() {
+            for (Map.Entry<Integer, String> jump : jumps.entrySet()) {
+                final Integer target = labels.get(jump.getValue());
+                if (target == null) {
+                    throw new IllegalStateException("Undefined label " + jump.getValue());
+                }
+                a[jump.getKey()] = target;
+            }
+
+            jumps.clear();
+            labels.clear();
+            function = null;
+        }
+
+        private void add(int opcode, int first, int second) {
+            if (size == opcodes.length) {
+                opcodes = Arrays.copyOf(opcodes, size * 2);
+                a = Arrays.copyOf(a, size * 2);
+                b = Arrays.copyOf(b, size * 2);
+                functionOf = Arrays.copyOf(functionOf, size * 2);
+            }
+
+            opcodes[size] = opcode;
+            a[size] = first;
+            b[size] = second;
+            functionOf[size++] = function;
+        }
+
+        VMProgram link() {
+            for (int call : calls) {
+                final String callee = callees.get(a[call]);
+                final Integer target = functions.get(callee);
+                if (target != null) {
+                    a[call] = target;
+                    continue;
+                }
+
+                final int stub = OsStubs.idOf(callee);
+                if (stub < 0) {
+                    throw new IllegalStateException("Undefined function " + callee);
+                }
+                opcodes[call] = CALL_OS;
+                a[call] = stub;
+            }
+
+            return new VMProgram(
+                    Arrays.copyOf(opcodes, size),
+                    Arrays.copyOf(a, size),
+                    Arrays.copyOf(b, size),
+                    Arrays.copyOf(functionOf, size),
+                    functions
+            );
+        }
+
+        private static String stripComment(String line) {
+            final int comment = line.indexOf("//");
+
+            return (comment < 0 ? line : line.substring(0, comment)).trim();
+        }
+    }
+}
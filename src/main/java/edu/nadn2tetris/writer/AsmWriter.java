@@ -0,0 +1,584 @@
+package edu.nadn2tetris.writer;
+
+import java.io.IOException;
+import java.io.Writer;
+import java.util.HashSet;
+import java.util.Set;
+
+/**
+ * Lowers the VM instructions of one class straight to Hack assembly, without the {@code .vm} text stage.
+ * <p>
+ * The last push and the last comparison are held back until the next instruction is seen, so an operand
+ * is loaded into D and combined with the stack top in place, a move between segments never touches the stack,
+ * and a comparison followed by {@code if-goto} becomes a single conditional jump.
+ * {@code lt} and {@code gt} subtract only operands of the same sign, the difference of others may overflow.
+ * Calls and returns go through the shared {@code $CALL} and {@code $RETURN} routines of {@link #writeBootstrap},
+ * a call site passes the callee, the known {@code nArgs + 5} and the return address.
+ * <p>
+ * Labels are scoped by the function name, statics are the {@code Class.index} symbols of the assembler.
+ * Callees are plain symbols, the program links only if every called function is compiled with it,
+ * see {@link #calledFunctions()}.
+ */
+public final class AsmWriter implements CodeWriter {
+    private static final String CALL = "$CALL";
+    private static final String RETURN = "$RETURN";
+    private static final String RETURN_VALUE = "$RETURN_D"; // the return value is in D
+    private static final String HALT = "$HALT";
+    private static final int STACK_BASE = 256;
+    private static final int TEMP_BASE = 5;
+    private static final int MAX_WALKED_INDEX = 3; // larger offsets are added, not walked with A=A+1
+
+    private final Writer writer;
+    private final String className;
+    private final StringBuilder out = new StringBuilder(8192);
+
+    private final Set<String> definedFunctions = new HashSet<>();
+    private final Set<String> calledFunctions = new HashSet<>();
+    private String function = "";
+    private int compareCount;
+    private int returnCount;
+
+    // the push which is not emitted yet, null if none
+    private Segment pendingSegment;
+    private int pendingIndex;
+    // jump condition of the comparison which is not pushed yet, D holds x - y, null if none
+    private String pendingJump;
+
+    /**
+     * @param className name of the class, statics are named after it
+     */
+    public AsmWriter(Writer writer, String className) {
+        if (writer == null) {
+            throw new IllegalArgumentException("Writer cannot be null");
+        }
+        this.writer = writer;
+        this.className = className;
+    }
+
+    /**
+     * Writes the code which precedes the classes of a program: stack setup, the call of the entry function,
+     * the halt loop after it and the shared call and return routines
+     */
+    public static void writeBootstrap(Writer writer, String entry) throws IOException {
+        final StringBuilder out = new StringBuilder();
+        line(out, "@" + STACK_BASE);
+        line(out, "D=A");
+        line(out, "@SP");
+        line(out, "M=D");
+        // the entry returns onto the halt loop
+        writeCallSite(out, entry, 0, HALT);
+        line(out, "@" + HALT);
+        line(out, "0;JMP");
+
+        // D = return address, R13 = callee, R14 = nArgs + 5
+        line(out, "(" + CALL + ")");
+        line(out, "@SP");
+        line(out, "A=M");
+        line(out, "M=D");
+        for (String register : new String[]{"LCL", "ARG", "THIS", "THAT"}) {
+            line(out, "@" + register);
+            line(out, "D=M");
+            line(out, "@SP");
+            line(out, "AM=M+1");
+            line(out, "M=D");
+        }
+        line(out, "@SP");
+        line(out, "MD=M+1");
+        line(out, "@LCL");
+        line(out, "M=D");
+        line(out, "@R14");
+        line(out, "D=D-M");
+        line(out, "@ARG");
+        line(out, "M=D");
+        line(out, "@R13");
+        line(out, "A=M");
+        line(out, "0;JMP");
+
+        line(out, "(" + RETURN + ")");
+        line(out, "@SP");
+        line(out, "AM=M-1");
+        line(out, "D=M");
+        // the return address is read before *ARG is overwritten, they are the same word without arguments
+        line(out, "(" + RETURN_VALUE + ")");
+        line(out, "@R15");
+        line(out, "M=D");
+        line(out, "@LCL");
+        line(out, "D=M");
+        line(out, "@5");
+        line(out, "A=D-A");
+        line(out, "D=M");
+        line(out, "@R14");
+        line(out, "M=D");
+        line(out, "@R15");
+        line(out, "D=M");
+        line(out, "@ARG");
+        line(out, "A=M");
+        line(out, "M=D");
+        line(out, "D=A+1");
+        line(out, "@SP");
+        line(out, "M=D");
+        for (String register : new String[]{"THAT", "THIS", "ARG"}) {
+            line(out, "@LCL");
+            line(out, "AM=M-1");
+            line(out, "D=M");
+            line(out, "@" + register);
+            line(out, "M=D");
+        }
+        line(out, "@LCL");
+        line(out, "A=M-1");
+        line(out, "D=M");
+        line(out, "@LCL");
+        line(out, "M=D");
+        line(out, "@R14");
+        line(out, "A=M");
+        line(out, "0;JMP");
+
+        writer.write(out.toString());
+    }
+
+    @Override
+    public void writePush(Segment segment, short index) {
+        flush();
+        pendingSegment = segment;
+        pendingIndex = index;
+    }
+
+    @Override
+    public void writePop(Segment segment, short index) {
+        if (pendingSegment != null) {
+            loadPending();
+            store(segment, index);
+            return;
+        }
+
+        flush();
+        if (isFixed(segment) || index <= MAX_WALKED_INDEX) {
+            popD();
+            store(segment, index);
+            return;
+        }
+
+        emit("@" + index);
+        emit("D=A");
+        emit("@" + base(segment));
+        emit("D=D+M");
+        emit("@R13");
+        emit("M=D");
+        popD();
+        emit("@R13");
+        emit("A=M");
+        emit("M=D");
+    }
+
+    @Override
+    public void writeArithmetic(Command command) {
+        switch (command) {
+            case ADD, SUB, AND, OR -> writeBinary(command);
+            case EQ -> writeCompare("JEQ");
+            case GT -> writeCompare("JGT");
+            case LT -> writeCompare("JLT");
+            case NEG -> writeUnary("M=-M", "M=-D");
+            case NOT -> {
+                if (pendingJump != null) {
+                    pendingJump = invert(pendingJump);
+                    return;
+                }
+                writeUnary("M=!M", "M=!D");
+            }
+        }
+    }
+
+    private void writeBinary(Command command) {
+        if (pendingSegment == Segment.CONSTANT && pendingIndex == 1 && (command == Command.ADD || command == Command.SUB)) {
+            pendingSegment = null;
+            emit("@SP");
+            emit("A=M-1");
+            emit(command == Command.ADD ? "M=M+1" : "M=M-1");
+            return;
+        }
+
+        if (pendingSegment != null) {
+            loadPending();
+        } else {
+            flush();
+            popD();
+        }
+        emit("@SP");
+        emit("A=M-1");
+        emit(switch (command) {
+            case ADD -> "M=D+M";
+            case SUB -> "M=M-D";
+            case AND -> "M=D&M";
+            default -> "M=D|M";
+        });
+    }
+
+    private void writeCompare(String jump) {
+        if (pendingSegment == Segment.CONSTANT && pendingIndex == 0) {
+            pendingSegment = null;
+            popD();
+            pendingJump = jump;
+            return;
+        }
+
+        if (pendingSegment == Segment.CONSTANT && !jump.equals("JEQ")) {
+            // constants are not negative, x - y only overflows for x < 0, where x decides
+            pendingSegment = null;
+            final String done = function + "$C" + compareCount++;
+            popD();
+            emit("@" + done);
+            emit("D;JLT");
+            emit("@" + pendingIndex);
+            emit("D=D-A");
+            emit("(" + done + ")");
+            pendingJump = jump;
+            return;
+        }
+
+        if (pendingSegment != null) {
+            loadPending();
+        } else {
+            flush();
+            popD();
+        }
+        if (jump.equals("JEQ")) {
+            // x - y is 0 exactly when x = y, even if it wraps
+            emit("@SP");
+            emit("AM=M-1");
+            emit("D=M-D");
+        } else {
+            writeOrderedDifference();
+        }
+        pendingJump = jump;
+    }
+
+    /**
+     * D = y, x is on the stack. Pops x and leaves a D with the sign of x - y: the difference if the signs are equal,
+     * otherwise x or 1, because the difference of values of opposite signs can overflow 16 bits.
+     */
+    private void writeOrderedDifference() {
+        final int id = compareCount++;
+        final String yNegative = function + "$N" + id;
+        final String sameSign = function + "$S" + id;
+        final String done = function + "$C" + id;
+        emit("@R13");
+        emit("M=D");
+        emit("@" + yNegative);
+        emit("D;JLT");
+        emit("@SP");
+        emit("AM=M-1");
+        emit("D=M");
+        emit("@" + done);
+        emit("D;JLT"); // x < 0 <= y
+        emit("@" + sameSign);
+        emit("0;JMP");
+        emit("(" + yNegative + ")");
+        emit("@SP");
+        emit("AM=M-1");
+        emit("D=M");
+        emit("@" + sameSign);
+        emit("D;JLT");
+        emit("D=1"); // x >= 0 > y
+        emit("@" + done);
+        emit("0;JMP");
+        emit("(" + sameSign + ")");
+        emit("@R13");
+        emit("D=D-M");
+        emit("(" + done + ")");
+    }
+
+    private void writeUnary(String inPlace, String ofD) {
+        if (pendingSegment != null) {
+            loadPending();
+            emit("@SP");
+            emit("M=M+1");
+            emit("A=M-1");
+            emit(ofD);
+            return;
+        }
+
+        flush();
+        emit("@SP");
+        emit("A=M-1");
+        emit(inPlace);
+    }
+
+    @Override
+    public void writeLabel(int label) {
+        flush();
+        emit("(" + label(label) + ")");
+    }
+
+    @Override
+    public void writeGoto(int label) {
+        flush();
+        emit("@" + label(label));
+        emit("0;JMP");
+    }
+
+    @Override
+    public void writeIf(int label) {
+        if (pendingJump != null) {
+            emit("@" + label(label));
+            emit("D;" + pendingJump);
+            pendingJump = null;
+            return;
+        }
+
+        if (pendingSegment == Segment.CONSTANT) {
+            // a constant condition is decided here
+            pendingSegment = null;
+            if (pendingIndex != 0) {
+                emit("@" + label(label));
+                emit("0;JMP");
+            }
+            return;
+        }
+
+        if (pendingSegment != null) {
+            loadPending();
+        } else {
+            popD();
+        }
+        emit("@" + label(label));
+        emit("D;JNE");
+    }
+
+    public Set<String> definedFunctions() {
+        return definedFunctions;
+    }
+
+    public Set<String> calledFunctions() {
+        return calledFunctions;
+    }
+
+    @Override
+    public void writeCall(String label, int nArgs) {
+        calledFunctions.add(label);
+        flush();
+        writeCallSite(out, label, nArgs, function + "$R" + returnCount++);
+    }
+
+    private static void writeCallSite(StringBuilder out, String callee, int nArgs, String returnLabel) {
+        line(out, "@" + callee);
+        line(out, "D=A");
+        line(out, "@R13");
+        line(out, "M=D");
+        line(out, "@" + (nArgs + 5));
+        line(out, "D=A");
+        line(out, "@R14");
+        line(out, "M=D");
+        line(out, "@" + returnLabel);
+        line(out, "D=A");
+        line(out, "@" + CALL);
+        line(out, "0;JMP");
+        line(out, "(" + returnLabel + ")");
+    }
+
+    @Override
+    public void writeFunction(String label, int nArgs) {
+        flush();
+        definedFunctions.add(label);
+        function = label;
+        compareCount = 0;
+        returnCount = 0;
+        emit("(" + label + ")");
+
+        if (nArgs == 1) {
+            emit("@SP");
+            emit("M=M+1");
+            emit("A=M-1");
+            emit("M=0");
+        } else if (nArgs > 1) {
+            emit("@SP");
+            emit("A=M");
+            for (int i = 0; i < nArgs; i++) {
+                if (i > 0) {
+                    emit("A=A+1");
+                }
+                emit("M=0");
+            }
+            emit("D=A+1");
+            emit("@SP");
+            emit("M=D");
+        }
+    }
+
+    @Override
+    public void writeReturn() {
+        if (pendingSegment != null) {
+            loadPending();
+            emit("@" + RETURN_VALUE);
+            emit("0;JMP");
+            return;
+        }
+
+        flush();
+        emit("@" + RETURN);
+        emit("0;JMP");
+    }
+
+    /**
+     * Emits the held back push or comparison
+     */
+    private void flush() {
+        if (pendingSegment != null) {
+            if (pendingSegment == Segment.CONSTANT && pendingIndex <= 1) {
+                emit("@SP");
+                emit("M=M+1");
+                emit("A=M-1");
+                emit(pendingIndex == 0 ? "M=0" : "M=1");
+                pendingSegment = null;
+                return;
+            }
+
+            loadPending();
+            pushD();
+            return;
+        }
+
+        if (pendingJump != null) {
+            final String isTrue = function + "$T" + compareCount++;
+            emit("@SP");
+            emit("A=M");
+            emit("M=-1");
+            emit("@" + isTrue);
+            emit("D;" + pendingJump);
+            emit("@SP");
+            emit("A=M");
+            emit("M=0");
+            emit("(" + isTrue + ")");
+            emit("@SP");
+            emit("M=M+1");
+            pendingJump = null;
+        }
+    }
+
+    private void loadPending() {
+        final Segment segment = pendingSegment;
+        pendingSegment = null;
+        if (segment == Segment.CONSTANT) {
+            if (pendingIndex <= 1) {
+                emit(pendingIndex == 0 ? "D=0" : "D=1");
+                return;
+            }
+            emit("@" + pendingIndex);
+            emit("D=A");
+            return;
+        }
+
+        address(segment, pendingIndex);
+        emit("D=M");
+    }
+
+    /**
+     * Stores D, A is free to use
+     */
+    private void store(Segment segment, int index) {
+        if (isFixed(segment) || index <= MAX_WALKED_INDEX) {
+            address(segment, index);
+            emit("M=D");
+            return;
+        }
+
+        emit("@R13");
+        emit("M=D");
+        emit("@" + index);
+        emit("D=A");
+        emit("@" + base(segment));
+        emit("D=D+M");
+        emit("@R14");
+        emit("M=D");
+        emit("@R13");
+        emit("D=M");
+        emit("@R14");
+        emit("A=M");
+        emit("M=D");
+    }
+
+    /**
+     * Points A at the word of the segment, D is kept for fixed addresses and small offsets only
+     */
+    private void address(Segment segment, int index) {
+        switch (segment) {
+            case STATIC -> emit("@" + className + "." + index);
+            case TEMP -> emit("@R" + (TEMP_BASE + index));
+            case POINTER -> emit(index == 0 ? "@THIS" : "@THAT");
+            case CONSTANT -> throw new IllegalStateException("Constant has no address");
+            default -> {
+                emit("@" + base(segment));
+                if (index == 0) {
+                    emit("A=M");
+                } else if (index <= MAX_WALKED_INDEX) {
+                    emit("A=M+1");
+                    for (int i = 1; i < index; i++) {
+                        emit("A=A+1");
+                    }
+                } else {
+                    emit("D=M");
+                    emit("@" + index);
+                    emit("A=D+A");
+                }
+            }
+        }
+    }
+
+    private void popD() {
+        emit("@SP");
+        emit("AM=M-1");
+        emit("D=M");
+    }
+
+    private void pushD() {
+        emit("@SP");
+        emit("M=M+1");
+        emit("A=M-1");
+        emit("M=D");
+    }
+
+    private static boolean isFixed(Segment segment) {
+        return segment == Segment.STATIC || segment == Segment.TEMP || segment == Segment.POINTER;
+    }
+
+    private static String base(Segment segment) {
+        return switch (segment) {
+            case LOCAL -> "LCL";
+            case ARGUMENT -> "ARG";
+            case THIS -> "THIS";
+            case THAT -> "THAT";
+            default -> throw new IllegalStateException("Segment has no base: " + segment);
+        };
+    }
+
+    private static String invert(String jump) {
+        return switch (jump) {
+            case "JEQ" -> "JNE";
+            case "JNE" -> "JEQ";
+            case "JGT" -> "JLE";
+            case "JLE" -> "JGT";
+            case "JLT" -> "JGE";
+            case "JGE" -> "JLT";
+            default -> throw new IllegalStateException("Unexpected jump: " + jump);
+        };
+    }
+
+    private String label(int label) {
+        return function + "$L" + label;
+    }
+
+    private void emit(String line) {
+        line(out, line);
+    }
+
+    private static void line(StringBuilder out, String line) {
+        out.append(line).append('\n');
+    }
+
+    @Override
+    public void close() throws IOException {
+        try (writer) {
+            flush();
+            writer.write(out.toString());
+        }
+    }
+}
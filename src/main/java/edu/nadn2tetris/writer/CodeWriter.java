@@ -0,0 +1,27 @@
+package edu.nadn2tetris.writer;
+
+import java.io.Closeable;
+
+/**
+ * Sink of VM instructions, implemented by the final {@link VMWriter} and by passes sitting in front of it.
+ * Labels are dense ids numbered from 0 in every function, they are emitted as {@code L<id>}.
+ */
+public interface CodeWriter extends Closeable {
+    void writePush(Segment segment, short index);
+
+    void writePop(Segment segment, short index);
+
+    void writeArithmetic(Command command);
+
+    void writeLabel(int label);
+
+    void writeGoto(int label);
+
+    void writeIf(int label);
+
+    void writeCall(String label, int nArgs);
+
+    void writeFunction(String label, int nArgs);
+
+    void writeReturn();
+}
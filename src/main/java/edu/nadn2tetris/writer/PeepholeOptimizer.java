@@ -0,0 +1,103 @@
+package edu.nadn2tetris.writer;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Keeps the last instructions in a small window and rewrites them with {@link PeepholeRule}s before
+ * they are passed to the next writer. Rules are applied after every instruction until none of them matches.
+ */
+public final class PeepholeOptimizer implements CodeWriter {
+    private static final int WINDOW_SIZE = 8;
+
+    private final CodeWriter writer;
+    private final List<PeepholeRule> rules;
+    private final List<VMInstruction> window = new ArrayList<>(WINDOW_SIZE + 1);
+
+    public PeepholeOptimizer(CodeWriter writer) {
+        this(writer, PeepholeRules.defaults());
+    }
+
+    public PeepholeOptimizer(CodeWriter writer, List<PeepholeRule> rules) {
+        if (writer == null) {
+            throw new IllegalArgumentException("Writer cannot be null");
+        }
+        this.writer = writer;
+        this.rules = rules;
+    }
+
+    @Override
+    public void writePush(Segment segment, short index) {
+        add(VMInstruction.push(segment, index));
+    }
+
+    @Override
+    public void writePop(Segment segment, short index) {
+        add(VMInstruction.pop(segment, index));
+    }
+
+    @Override
+    public void writeArithmetic(Command command) {
+        add(VMInstruction.arithmetic(command));
+    }
+
+    @Override
+    public void writeLabel(int label) {
+        add(VMInstruction.label(label));
+    }
+
+    @Override
+    public void writeGoto(int label) {
+        add(VMInstruction.goTo(label));
+    }
+
+    @Override
+    public void writeIf(int label) {
+        add(VMInstruction.ifGoTo(label));
+    }
+
+    @Override
+    public void writeCall(String label, int nArgs) {
+        add(VMInstruction.call(label, nArgs));
+    }
+
+    @Override
+    public void writeFunction(String label, int nArgs) {
+        add(VMInstruction.function(label, nArgs));
+    }
+
+    @Override
+    public void writeReturn() {
+        add(VMInstruction.ret());
+    }
+
+    private void add(VMInstruction instruction) {
+        window.add(instruction);
+
+        boolean changed = true;
+        while (changed && !window.isEmpty()) {
+            changed = false;
+            for (PeepholeRule rule : rules) {
+                if (rule.apply(window)) {
+                    changed = true;
+                    break;
+                }
+            }
+        }
+
+        while (window.size() > WINDOW_SIZE) {
+            window.remove(0).writeTo(writer);
+        }
+    }
+
+    @Override
+    public void close() throws IOException {
+        try (writer) {
+            for (VMInstruction instruction : window) {
+                instruction.writeTo(writer);
+            }
+            window.clear();
+        }
+    }
+}
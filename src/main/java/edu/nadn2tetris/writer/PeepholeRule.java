@@ -0,0 +1,15 @@
+package edu.nadn2tetris.writer;
+
+import java.util.List;
+
+/**
+ * Rewrites the tail of the peephole window, the last instruction has just been added
+ */
+@FunctionalInterface
+public interface PeepholeRule {
+    /**
+     * @param window buffered instructions, may be modified in place
+     * @return true if the window was changed
+     */
+    boolean apply(List<VMInstruction> window);
+}
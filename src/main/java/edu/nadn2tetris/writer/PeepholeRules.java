@@ -0,0 +1,171 @@
+package edu.nadn2tetris.writer;
+
+import java.util.List;
+
+/**
+ * Default rules of {@link PeepholeOptimizer}. Every rule matches instructions at the end of the window
+ * and only shrinks it, so rewriting always terminates.
+ */
+public final class PeepholeRules {
+    /**
+     * {@code push X; pop X} - value is stored where it was taken from
+     */
+    public static final PeepholeRule PUSH_POP = window -> {
+        final VMInstruction pop = tail(window, 0);
+        final VMInstruction push = tail(window, 1);
+        if (push == null || !pop.is(VMInstruction.Kind.POP) || !push.isPush(pop.segment, pop.value)) {
+            return false;
+        }
+
+        removeTail(window, 2);
+        return true;
+    };
+
+    /**
+     * {@code not; not} and {@code neg; neg}
+     */
+    public static final PeepholeRule DOUBLE_NEGATION = window -> {
+        final VMInstruction last = tail(window, 0);
+        final VMInstruction prev = tail(window, 1);
+        if (prev == null || !last.is(VMInstruction.Kind.ARITHMETIC) || !prev.is(VMInstruction.Kind.ARITHMETIC)) {
+            return false;
+        }
+
+        if (last.command != prev.command || (last.command != Command.NOT && last.command != Command.NEG)) {
+            return false;
+        }
+
+        removeTail(window, 2);
+        return true;
+    };
+
+    /**
+     * {@code goto L; label L} -> {@code label L}
+     */
+    public static final PeepholeRule JUMP_TO_NEXT = window -> {
+        final VMInstruction label = tail(window, 0);
+        final VMInstruction jump = tail(window, 1);
+        if (jump == null || !label.is(VMInstruction.Kind.LABEL) || !jump.is(VMInstruction.Kind.GOTO) || jump.value != label.value) {
+            return false;
+        }
+
+        window.remove(window.size() - 2);
+        return true;
+    };
+
+    /**
+     * Branch on a constant: {@code push constant 0; if-goto L} never jumps,
+     * {@code push constant k; if-goto L}, {@code push constant 0; not; if-goto L} always jump
+     */
+    public static final PeepholeRule CONSTANT_BRANCH = window -> {
+        final VMInstruction branch = tail(window, 0);
+        if (!branch.is(VMInstruction.Kind.IF_GOTO)) {
+            return false;
+        }
+
+        final VMInstruction prev = tail(window, 1);
+        if (prev != null && prev.isConstant()) {
+            removeTail(window, 2);
+            if (prev.value != 0) {
+                window.add(VMInstruction.goTo(branch.value));
+            }
+            return true;
+        }
+
+        final VMInstruction constant = tail(window, 2);
+        if (constant != null && constant.isConstant() && (prev.isArithmetic(Command.NOT) || prev.isArithmetic(Command.NEG))) {
+            removeTail(window, 3);
+            // ~k != 0 unless k is -1, which cannot be pushed; -k != 0 unless k is 0
+            if (prev.command == Command.NOT || constant.value != 0) {
+                window.add(VMInstruction.goTo(branch.value));
+            }
+            return true;
+        }
+
+        return false;
+    };
+
+    /**
+     * {@code x + 0}, {@code x - 0}, {@code x | 0}, {@code x * 1}, {@code x / 1}
+     */
+    public static final PeepholeRule NEUTRAL_OPERAND = window -> {
+        final VMInstruction operation = tail(window, 0);
+        final VMInstruction operand = tail(window, 1);
+        if (operand == null || !operand.isConstant()) {
+            return false;
+        }
+
+        final boolean neutral = operand.value == 0
+                ? operation.isArithmetic(Command.ADD) || operation.isArithmetic(Command.SUB) || operation.isArithmetic(Command.OR)
+                : operand.value == 1 && (operation.isCall("Math.multiply", 2) || operation.isCall("Math.divide", 2));
+        if (!neutral) {
+            return false;
+        }
+
+        removeTail(window, 2);
+        return true;
+    };
+
+    /**
+     * Loop exit over an inverted comparison:
+     * {@code cmp; not; if-goto A; goto B; label A} -> {@code cmp; if-goto B; label A}.
+     * Comparisons push only 0 or -1, so {@code not} is an exact boolean negation here.
+     */
+    public static final PeepholeRule INVERTED_BRANCH = window -> {
+        final VMInstruction label = tail(window, 0);
+        final VMInstruction jump = tail(window, 1);
+        final VMInstruction branch = tail(window, 2);
+        final VMInstruction not = tail(window, 3);
+        final VMInstruction comparison = tail(window, 4);
+        if (comparison == null
+                || !label.is(VMInstruction.Kind.LABEL)
+                || !jump.is(VMInstruction.Kind.GOTO)
+                || !branch.is(VMInstruction.Kind.IF_GOTO)
+                || branch.value != label.value
+                || !not.isArithmetic(Command.NOT)
+                || !isComparison(comparison)) {
+            return false;
+        }
+
+        removeTail(window, 4);
+        window.add(VMInstruction.ifGoTo(jump.value));
+        window.add(label);
+        return true;
+    };
+
+    /**
+     * Instructions after {@code goto} or {@code return} up to the next label are never executed
+     */
+    public static final PeepholeRule UNREACHABLE = window -> {
+        final VMInstruction last = tail(window, 0);
+        final VMInstruction prev = tail(window, 1);
+        if (prev == null || !prev.isJump() || last.is(VMInstruction.Kind.LABEL) || last.is(VMInstruction.Kind.FUNCTION)) {
+            return false;
+        }
+
+        removeTail(window, 1);
+        return true;
+    };
+
+    private PeepholeRules() {}
+
+    public static List<PeepholeRule> defaults() {
+        return List.of(UNREACHABLE, PUSH_POP, DOUBLE_NEGATION, JUMP_TO_NEXT, CONSTANT_BRANCH, NEUTRAL_OPERAND, INVERTED_BRANCH);
+    }
+
+    private static boolean isComparison(VMInstruction instruction) {
+        return instruction.isArithmetic(Command.EQ) || instruction.isArithmetic(Command.LT) || instruction.isArithmetic(Command.GT);
+    }
+
+    /**
+     * @return instruction {@code offset} positions before the last one or null
+     */
+    private static VMInstruction tail(List<VMInstruction> window, int offset) {
+        final int i = window.size() - 1 - offset;
+        return i < 0 ? null : window.get(i);
+    }
+
+    private static void removeTail(List<VMInstruction> window, int count) {
+        window.subList(window.size() - count, window.size()).clear();
+    }
+}
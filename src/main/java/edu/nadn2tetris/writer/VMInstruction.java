@@ -0,0 +1,126 @@
+package edu.nadn2tetris.writer;
+
+import java.util.Objects;
+
+/**
+ * Buffered VM instruction, used by passes that look at more than one instruction at a time
+ */
+public final class VMInstruction {
+    public enum Kind {
+        PUSH,
+        POP,
+        ARITHMETIC,
+        LABEL,
+        GOTO,
+        IF_GOTO,
+        CALL,
+        FUNCTION,
+        RETURN
+    }
+
+    public final Kind kind;
+    public final Segment segment; // push, pop
+    public final Command command; // arithmetic
+    public final String label; // call, function
+    public final int value; // index of push/pop, id of label/goto/if-goto, args of call, vars of function
+
+    private VMInstruction(Kind kind, Segment segment, Command command, String label, int value) {
+        this.kind = kind;
+        this.segment = segment;
+        this.command = command;
+        this.label = label;
+        this.value = value;
+    }
+
+    public static VMInstruction push(Segment segment, int index) {
+        return new VMInstruction(Kind.PUSH, segment, null, null, index);
+    }
+
+    public static VMInstruction pop(Segment segment, int index) {
+        return new VMInstruction(Kind.POP, segment, null, null, index);
+    }
+
+    public static VMInstruction arithmetic(Command command) {
+        return new VMInstruction(Kind.ARITHMETIC, null, command, null, 0);
+    }
+
+    public static VMInstruction label(int label) {
+        return new VMInstruction(Kind.LABEL, null, null, null, label);
+    }
+
+    public static VMInstruction goTo(int label) {
+        return new VMInstruction(Kind.GOTO, null, null, null, label);
+    }
+
+    public static VMInstruction ifGoTo(int label) {
+        return new VMInstruction(Kind.IF_GOTO, null, null, null, label);
+    }
+
+    public static VMInstruction call(String label, int nArgs) {
+        return new VMInstruction(Kind.CALL, null, null, label, nArgs);
+    }
+
+    public static VMInstruction function(String label, int nVars) {
+        return new VMInstruction(Kind.FUNCTION, null, null, label, nVars);
+    }
+
+    public static VMInstruction ret() {
+        return new VMInstruction(Kind.RETURN, null, null, null, 0);
+    }
+
+    public boolean is(Kind kind) {
+        return this.kind == kind;
+    }
+
+    public boolean isPush(Segment segment, int index) {
+        return kind == Kind.PUSH && this.segment == segment && value == index;
+    }
+
+    public boolean isConstant() {
+        return kind == Kind.PUSH && segment == Segment.CONSTANT;
+    }
+
+    public boolean isArithmetic(Command command) {
+        return kind == Kind.ARITHMETIC && this.command == command;
+    }
+
+    public boolean isCall(String label, int nArgs) {
+        return kind == Kind.CALL && value == nArgs && Objects.equals(this.label, label);
+    }
+
+    /**
+     * @return true if control never falls through to the next instruction
+     */
+    public boolean isJump() {
+        return kind == Kind.GOTO || kind == Kind.RETURN;
+    }
+
+    public void writeTo(CodeWriter writer) {
+        switch (kind) {
+            case PUSH -> writer.writePush(segment, (short) value);
+            case POP -> writer.writePop(segment, (short) value);
+            case ARITHMETIC -> writer.writeArithmetic(command);
+            case LABEL -> writer.writeLabel(value);
+            case GOTO -> writer.writeGoto(value);
+            case IF_GOTO -> writer.writeIf(value);
+            case CALL -> writer.writeCall(label, value);
+            case FUNCTION -> writer.writeFunction(label, value);
+            case RETURN -> writer.writeReturn();
+        }
+    }
+
+    @Override
+    public String toString() {
+        return switch (kind) {
+            case PUSH -> "push " + segment.name().toLowerCase() + " " + value;
+            case POP -> "pop " + segment.name().toLowerCase() + " " + value;
+            case ARITHMETIC -> command.name().toLowerCase();
+            case LABEL -> "label L" + value;
+            case GOTO -> "goto L" + value;
+            case IF_GOTO -> "if-goto L" + value;
+            case CALL -> "call " + label + " " + value;
+            case FUNCTION -> "function " + label + " " + value;
+            case RETURN -> "return";
+        };
+    }
+}
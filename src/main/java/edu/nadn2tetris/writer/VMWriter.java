@@ -1,16 +1,40 @@
 package edu.nadn2tetris.writer;
 
-import java.io.Closeable;
 import java.io.IOException;
+import java.io.UncheckedIOException;
 import java.io.Writer;
 
-public final class VMWriter implements Closeable {
-    private final Writer writer;
-    private final StringBuilder code = new StringBuilder();
+/**
+ * Streams VM instructions into a char buffer which is flushed to the writer in chunks.
+ * Instruction and segment texts are precomputed, numbers are written digit by digit, so nothing is formatted.
+ */
+public final class VMWriter implements CodeWriter {
+    private static final int BUFFER_SIZE = 8192;
+    private static final int MAX_INT_LENGTH = 11; // -2147483648
+
+    private static final char[][] PUSH = new char[Segment.values().length][];
+    private static final char[][] POP = new char[Segment.values().length][];
+    private static final char[][] COMMANDS = new char[Command.values().length][];
+    private static final char[] LABEL = "label L".toCharArray();
+    private static final char[] GOTO = "goto L".toCharArray();
+    private static final char[] IF_GOTO = "if-goto L".toCharArray();
+    private static final char[] CALL = "call ".toCharArray();
+    private static final char[] FUNCTION = "function ".toCharArray();
+    private static final char[] RETURN = "return\n".toCharArray();
 
-    private static final String PUSH_TEMPLATE = "push %s %d\n";
-    private static final String POP_TEMPLATE = "pop %s %d\n";
-    private static final String LABEL_TEMPLATE = "label %s\n";
+    static {
+        for (Segment segment : Segment.values()) {
+            PUSH[segment.ordinal()] = ("push " + segment.name().toLowerCase() + " ").toCharArray();
+            POP[segment.ordinal()] = ("pop " + segment.name().toLowerCase() + " ").toCharArray();
+        }
+        for (Command command : Command.values()) {
+            COMMANDS[command.ordinal()] = (command.name().toLowerCase() + "\n").toCharArray();
+        }
+    }
+
+    private final Writer writer;
+    private final char[] buffer = new char[BUFFER_SIZE];
+    private int pos;
 
     public VMWriter(Writer writer) {
         if (writer == null) {
@@ -19,44 +43,153 @@ public final class VMWriter implements Closeable {
         this.writer = writer;
     }
 
+    @Override
     public void writePush(Segment segment, short index) {
-        code.append(PUSH_TEMPLATE.formatted(segment.name().toLowerCase(), index));
+        write(PUSH[segment.ordinal()]);
+        writeInt(index);
+        write('\n');
     }
 
+    @Override
     public void writePop(Segment segment, short index) {
-        code.append(POP_TEMPLATE.formatted(segment.name().toLowerCase(), index));
+        write(POP[segment.ordinal()]);
+        writeInt(index);
+        write('\n');
     }
 
+    @Override
     public void writeArithmetic(Command command) {
-        code.append(command.name().toLowerCase()).append("\n");
+        write(COMMANDS[command.ordinal()]);
     }
 
-    public void writeLabel(String label) {
-        code.append(LABEL_TEMPLATE.formatted(label));
+    @Override
+    public void writeLabel(int label) {
+        write(LABEL);
+        writeInt(label);
+        write('\n');
     }
 
-    public void writeGoto(String label) {
-        code.append("goto %s\n".formatted(label));
+    @Override
+    public void writeGoto(int label) {
+        write(GOTO);
+        writeInt(label);
+        write('\n');
     }
 
-    public void writeIf(String label) {
-        code.append("if-goto %s\n".formatted(label));
+    @Override
+    public void writeIf(int label) {
+        write(IF_GOTO);
+        writeInt(label);
+        write('\n');
     }
 
+    @Override
     public void writeCall(String label, int nArgs) {
-        code.append("call %s %d\n".formatted(label, nArgs));
+        write(CALL);
+        write(label);
+        write(' ');
+        writeInt(nArgs);
+        write('\n');
     }
 
+    @Override
     public void writeFunction(String label, int nArgs) {
-        code.append("function %s %d\n".formatted(label, nArgs));
+        write(FUNCTION);
+        write(label);
+        write(' ');
+        writeInt(nArgs);
+        write('\n');
     }
 
+    @Override
     public void writeReturn() {
-        code.append("return\n");
+        write(RETURN);
+    }
+
+    private void write(char ch) {
+        if (pos == buffer.length) {
+            flushBuffer();
+        }
+        buffer[pos++] = ch;
+    }
+
+    private void write(char[] chars) {
+        if (pos + chars.length > buffer.length) {
+            flushBuffer();
+        }
+        System.arraycopy(chars, 0, buffer, pos, chars.length);
+        pos += chars.length;
+    }
+
+    private void write(String str) {
+        final int length = str.length();
+        if (pos + length > buffer.length) {
+            flushBuffer();
+            if (length > buffer.length) {
+                writeThrough(str);
+                return;
+            }
+        }
+        str.getChars(0, length, buffer, pos);
+        pos += length;
+    }
+
+    private void writeInt(int value) {
+        if (pos + MAX_INT_LENGTH > buffer.length) {
+            flushBuffer();
+        }
+
+        if (value == Integer.MIN_VALUE) {
+            write(String.valueOf(value));
+            return;
+        }
+
+        if (value < 0) {
+            buffer[pos++] = '-';
+            value = -value;
+        }
+
+        // digits are written from the end of their slot
+        int end = pos + stringSize(value);
+        pos = end;
+        do {
+            buffer[--end] = (char) ('0' + value % 10);
+            value /= 10;
+        } while (value != 0);
+    }
+
+    private static int stringSize(int value) {
+        int size = 1;
+        while (value >= 10) {
+            value /= 10;
+            size++;
+        }
+
+        return size;
+    }
+
+    private void flushBuffer() {
+        try {
+            writer.write(buffer, 0, pos);
+            pos = 0;
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    private void writeThrough(String str) {
+        try {
+            writer.write(str);
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
     }
 
     @Override
     public void close() throws IOException {
-        this.writer.append(code).close();
+        try (writer) {
+            writer.write(buffer, 0, pos);
+            pos = 0;
+        }
     }
 }
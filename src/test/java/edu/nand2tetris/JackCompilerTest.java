@@ -1,6 +1,8 @@
 package edu.nand2tetris;
 
+import java.io.ByteArrayOutputStream;
 import java.io.IOException;
+import java.io.PrintStream;
 import java.nio.file.Files;
 import java.nio.file.Path;
 import java.nio.file.Paths;
@@ -9,6 +11,7 @@ import java.util.function.UnaryOperator;
 import java.util.stream.Collectors;
 
 import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Assertions;
 import org.junit.jupiter.api.Test;
 
 import edu.nadn2tetris.JackCompiler;
@@ -66,4 +69,63 @@ public final class JackCompilerTest {
             TestUtils.compareFiles(testFile.toFile(), compileFileEntry.getValue().toFile());
         }
     }
+
+    @Test
+    public void testTreeShaking() throws IOException {
+        final Path srcFile = RES_DIR.resolve("src/ExpressionLessSquare");
+
+        JackCompiler.main(new String[]{srcFile.toString(), OUT_DIR.toString(), "--code", "--tree-shake"});
+
+        // the expression-less Main never calls the constructors
+        final String main = Files.readString(OUT_DIR.resolve("Main.vm"));
+        final String square = Files.readString(OUT_DIR.resolve("Square.vm"));
+        final String game = Files.readString(OUT_DIR.resolve("SquareGame.vm"));
+        Assertions.assertTrue(main.contains("function Main.main 1"));
+        Assertions.assertFalse(main.contains("function Main.more"));
+        Assertions.assertFalse(square.contains("function Square.new"));
+        Assertions.assertTrue(square.contains("function Square.moveUp"));
+        Assertions.assertFalse(game.contains("function SquareGame.new"));
+        Assertions.assertTrue(game.contains("function SquareGame.run"));
+    }
+
+    @Test
+    public void testAsmLinking() throws IOException {
+        final Path srcDir = RES_DIR.resolve("src/compiler/Seven");
+
+        // Seven prints with the OS, which is not among the sources
+        final IllegalStateException e = Assertions.assertThrows(
+                IllegalStateException.class,
+                () -> JackCompiler.main(new String[]{srcDir.toString(), OUT_DIR.toString(), "--code", "--asm"})
+        );
+        Assertions.assertTrue(e.getMessage().contains("Output.printInt"));
+        Assertions.assertFalse(Files.exists(OUT_DIR.resolve("Seven.asm")));
+
+        JackCompiler.main(new String[]{srcDir.toString(), OUT_DIR.toString(), "--code", "--asm", "--os-traps"});
+        Assertions.assertTrue(Files.readString(OUT_DIR.resolve("Seven.asm")).contains("@Output.printInt"));
+    }
+
+    @Test
+    public void testFailureWithJobs() throws IOException {
+        final Path srcDir = Files.createDirectories(OUT_DIR.resolve("src"));
+        for (int i = 0; i < 4; i++) {
+            // every file fails with its own message
+            Files.writeString(srcDir.resolve("A" + i + ".jack"), "class A" + i + " { function int f() { return 4000" + i + "; } }");
+        }
+
+        // the same file fails first whether the files compile one by one or in parallel, and only the exception reports it
+        final String[] messages = new String[2];
+        final PrintStream err = System.err;
+        final ByteArrayOutputStream printed = new ByteArrayOutputStream();
+        System.setErr(new PrintStream(printed));
+        try {
+            for (int jobs = 1; jobs <= 2; jobs++) {
+                final String[] args = {srcDir.toString(), OUT_DIR.resolve("vm").toString(), "--code", "--jobs", String.valueOf(jobs)};
+                messages[jobs - 1] = Assertions.assertThrows(RuntimeException.class, () -> JackCompiler.main(args)).getMessage();
+            }
+        } finally {
+            System.setErr(err);
+        }
+        Assertions.assertEquals(messages[0], messages[1]);
+        Assertions.assertEquals(0, printed.size());
+    }
 }
@@ -0,0 +1,353 @@
+package edu.nand2tetris.ast.processor;
+
+import java.io.IOException;
+import java.io.StringWriter;
+
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+
+import edu.nadn2tetris.ast.ClassTree;
+import edu.nadn2tetris.ast.processor.ByteCodeAstGenerator;
+import edu.nadn2tetris.ast.processor.SymbolTableAstGenerator;
+import edu.nadn2tetris.common.NameTable;
+import edu.nadn2tetris.writer.VMWriter;
+import edu.nand2tetris.utils.ExpressionTrees;
+import edu.nand2tetris.utils.TestUtils;
+
+public final class ByteCodeAstGeneratorTest {
+
+    @Test
+    public void testStrengthReduction() throws IOException {
+        final String vm = TestUtils.compileVm("""
+                class Main {
+                    function int main() {
+                        var int x;
+                        let x = x * 4;
+                        let x = 5 * x;
+                        let x = x * (-3);
+                        let x = x / 1; // push/pop of the same slot is dropped by the peephole optimizer
+                        let x = x / (-1);
+                        let x = Main.main() * 0;
+                        let x = x / 2;
+                        let x = x * 1000;
+                        return x;
+                    }
+                }
+                """, "-O");
+
+        Assertions.assertEquals("""
+                function Main.main 1
+                push local 0
+                pop temp 2
+                push temp 2
+                push temp 2
+                add
+                pop temp 2
+                push temp 2
+                push temp 2
+                add
+                pop local 0
+                push local 0
+                pop temp 1
+                push temp 1
+                pop temp 2
+                push temp 2
+                push temp 2
+                add
+                pop temp 2
+                push temp 2
+                push temp 2
+                add
+                push temp 1
+                add
+                pop local 0
+                push local 0
+                pop temp 1
+                push temp 1
+                pop temp 2
+                push temp 2
+                push temp 2
+                add
+                push temp 1
+                add
+                neg
+                pop local 0
+                push local 0
+                neg
+                pop local 0
+                call Main.main 0
+                pop temp 1
+                push constant 0
+                pop local 0
+                push local 0
+                push constant 2
+                call Math.divide 2
+                pop local 0
+                push local 0
+                push constant 1000
+                call Math.multiply 2
+                pop local 0
+                push local 0
+                return
+                """, vm);
+    }
+
+    @Test
+    public void testNoStrengthReductionByDefault() throws IOException {
+        final String vm = TestUtils.compileVm("""
+                class Main {
+                    function int main(int x) {
+                        return x * 2;
+                    }
+                }
+                """);
+
+        Assertions.assertEquals("""
+                function Main.main 0
+                push argument 0
+                push constant 2
+                call Math.multiply 2
+                return
+                """, vm);
+    }
+
+    @Test
+    public void testStringPool() throws IOException {
+        final String vm = TestUtils.compileVm("""
+                class Main {
+                    static int count;
+
+                    function void main() {
+                        do Output.printString("ab");
+                        do Output.printString("b");
+                        do Output.printString("ab");
+                        return;
+                    }
+                }
+                """, "--string-pool");
+
+        Assertions.assertEquals("""
+                function Main.main 0
+                push static 1
+                if-goto L0
+                push constant 2
+                call String.new 1
+                push constant 97
+                call String.appendChar 2
+                push constant 98
+                call String.appendChar 2
+                pop static 1
+                label L0
+                push static 1
+                call Output.printString 1
+                pop temp 0
+                push static 2
+                if-goto L1
+                push constant 1
+                call String.new 1
+                push constant 98
+                call String.appendChar 2
+                pop static 2
+                label L1
+                push static 2
+                call Output.printString 1
+                pop temp 0
+                push static 1
+                if-goto L2
+                push constant 2
+                call String.new 1
+                push constant 97
+                call String.appendChar 2
+                push constant 98
+                call String.appendChar 2
+                pop static 1
+                label L2
+                push static 1
+                call Output.printString 1
+                pop temp 0
+                push constant 0
+                return
+                """, vm);
+    }
+
+    @Test
+    public void testJumpCode() throws IOException {
+        final String vm = TestUtils.compileVm("""
+                class Main {
+                    function void main(int x, boolean done) {
+                        while (~(x < 10)) {
+                            let x = x - 1;
+                        }
+                        if (x = 0) {
+                            let x = 1;
+                        }
+                        if (~done) {
+                            let x = 2;
+                        } else {
+                            let x = 3;
+                        }
+                        return;
+                    }
+                }
+                """, "-O");
+
+        Assertions.assertEquals("""
+                function Main.main 0
+                goto L1
+                label L0
+                push argument 0
+                push constant 1
+                sub
+                pop argument 0
+                label L1
+                push argument 0
+                push constant 10
+                lt
+                not
+                if-goto L0
+                push argument 0
+                if-goto L2
+                push constant 1
+                pop argument 0
+                label L2
+                push argument 1
+                not
+                if-goto L3
+                push constant 3
+                pop argument 0
+                goto L4
+                label L3
+                push constant 2
+                pop argument 0
+                label L4
+                push constant 0
+                return
+                """, vm);
+    }
+
+    @Test
+    public void testSelfTailCall() throws IOException {
+        final String vm = TestUtils.compileVm("""
+                class Main {
+                    function int gcd(int a, int b) {
+                        if (b = 0) {
+                            return a;
+                        }
+                        return Main.gcd(b, a - ((a / b) * b));
+                    }
+                    function int sum(int n) {
+                        var int s;
+                        if (n = 0) {
+                            return s;
+                        }
+                        return Main.sum(n - 1);
+                    }
+                    function int count(int n) {
+                        return count(n - 1);
+                    }
+                }
+                """, "-O");
+
+        Assertions.assertEquals("""
+                function Main.gcd 0
+                label L0
+                push argument 1
+                if-goto L1
+                push argument 0
+                return
+                label L1
+                push argument 1
+                push argument 0
+                push argument 0
+                push argument 1
+                call Math.divide 2
+                push argument 1
+                call Math.multiply 2
+                sub
+                pop argument 1
+                pop argument 0
+                goto L0
+                """, vm.substring(0, vm.indexOf("function Main.sum")));
+        Assertions.assertTrue(vm.contains("""
+                push constant 0
+                pop local 0
+                goto L0
+                """));
+        Assertions.assertTrue(vm.endsWith("""
+                function Main.count 0
+                push pointer 0
+                push argument 0
+                push constant 1
+                sub
+                call Main.count 2
+                return
+                """));
+    }
+
+    @Test
+    public void testArrayAccess() throws IOException {
+        final String vm = TestUtils.compileVm("""
+                class Main {
+                    function void main(Array a, int i) {
+                        let a[1] = a[0] + a[2];
+                        let a[i] = i + 1;
+                        let a[i] = a[0];
+                        return;
+                    }
+                }
+                """, "-O");
+
+        Assertions.assertEquals("""
+                function Main.main 0
+                push argument 0
+                pop pointer 1
+                push that 0
+                push that 2
+                add
+                pop that 1
+                push argument 0
+                push argument 1
+                add
+                pop pointer 1
+                push argument 1
+                push constant 1
+                add
+                pop that 0
+                push argument 0
+                push argument 1
+                add
+                push argument 0
+                pop pointer 1
+                push that 0
+                pop temp 0
+                pop pointer 1
+                push temp 0
+                pop that 0
+                push constant 0
+                return
+                """, vm);
+    }
+
+    @Test
+    public void testDeepExpression() throws IOException {
+        final int depth = 100_000;
+        final NameTable names = new NameTable();
+        final ClassTree classTree = ExpressionTrees.classWith(names, ExpressionTrees.leftDeep(depth));
+
+        final StringWriter out = new StringWriter();
+        try (final ByteCodeAstGenerator generator = new ByteCodeAstGenerator(
+                new SymbolTableAstGenerator(names).generate(classTree),
+                new VMWriter(out),
+                names
+        )) {
+            generator.generate(classTree);
+        }
+
+        final String[] lines = out.toString().split("\n");
+        Assertions.assertEquals(3 + 2 * depth, lines.length);
+        Assertions.assertEquals("push constant 1", lines[1]);
+        Assertions.assertEquals("push constant 1", lines[2]);
+        Assertions.assertEquals("add", lines[3]);
+        Assertions.assertEquals("return", lines[lines.length - 1]);
+    }
+}
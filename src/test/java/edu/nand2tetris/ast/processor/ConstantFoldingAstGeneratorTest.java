@@ -0,0 +1,89 @@
+package edu.nand2tetris.ast.processor;
+
+import java.io.IOException;
+
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+
+import edu.nand2tetris.utils.TestUtils;
+
+public final class ConstantFoldingAstGeneratorTest {
+
+    @Test
+    public void testFolding() throws IOException {
+        final String vm = TestUtils.compileVm("""
+                class Main {
+                    function int main() {
+                        var int x;
+                        let x = (2 * 8) + 1;
+                        let x = 3 - 5;
+                        let x = ~true;
+                        let x = 32767 + 1;
+                        let x = (x + 1) * (x - (4 / 2));
+                        let x = 7 / 0;
+                        return x;
+                    }
+                }
+                """, "-O");
+
+        Assertions.assertEquals("""
+                function Main.main 1
+                push constant 17
+                pop local 0
+                push constant 2
+                neg
+                pop local 0
+                push constant 0
+                pop local 0
+                push constant 32767
+                not
+                pop local 0
+                push local 0
+                push constant 1
+                add
+                push local 0
+                push constant 2
+                sub
+                call Math.multiply 2
+                pop local 0
+                push constant 7
+                push constant 0
+                call Math.divide 2
+                pop local 0
+                push local 0
+                return
+                """, vm);
+    }
+
+    @Test
+    public void testComparisons() throws IOException {
+        final String vm = TestUtils.compileVm("""
+                class Main {
+                    function boolean main() {
+                        var boolean b;
+                        let b = 1 < 2;
+                        let b = (5 = 5) & false;
+                        let b = 32767 > (-1);
+                        return b;
+                    }
+                }
+                """, "-O");
+
+        // 32767 - (-1) overflows, the comparison is left to the runtime
+        Assertions.assertEquals("""
+                function Main.main 1
+                push constant 0
+                not
+                pop local 0
+                push constant 0
+                pop local 0
+                push constant 32767
+                push constant 0
+                not
+                gt
+                pop local 0
+                push local 0
+                return
+                """, vm);
+    }
+}
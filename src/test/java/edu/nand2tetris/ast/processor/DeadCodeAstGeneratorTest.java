@@ -0,0 +1,72 @@
+package edu.nand2tetris.ast.processor;
+
+import java.io.IOException;
+
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+
+import edu.nand2tetris.utils.TestUtils;
+
+public final class DeadCodeAstGeneratorTest {
+
+    @Test
+    public void testUnreachableStatements() throws IOException {
+        final String vm = TestUtils.compileVm("""
+                class Main {
+                    function int main(int x) {
+                        if (1 = 1) {
+                            let x = 1;
+                        } else {
+                            let x = 2;
+                        }
+                        while (false) {
+                            let x = 3;
+                        }
+                        if (x) {
+                            return 4;
+                        } else {
+                            return 5;
+                        }
+                        let x = 6;
+                        return x;
+                    }
+                }
+                """, "-O");
+
+        Assertions.assertEquals("""
+                function Main.main 0
+                push constant 1
+                pop argument 0
+                push argument 0
+                if-goto L0
+                push constant 5
+                return
+                label L0
+                push constant 4
+                return
+                """, vm);
+    }
+
+    @Test
+    public void testEndlessLoop() throws IOException {
+        final String vm = TestUtils.compileVm("""
+                class Main {
+                    function void main() {
+                        while (true) {
+                            do Main.main();
+                        }
+                        do Main.main();
+                        return;
+                    }
+                }
+                """, "-O");
+
+        Assertions.assertEquals("""
+                function Main.main 0
+                label L0
+                call Main.main 0
+                pop temp 0
+                goto L0
+                """, vm);
+    }
+}
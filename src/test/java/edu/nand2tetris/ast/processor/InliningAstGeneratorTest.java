@@ -0,0 +1,114 @@
+package edu.nand2tetris.ast.processor;
+
+import java.io.IOException;
+import java.util.Map;
+
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+
+import edu.nand2tetris.utils.TestUtils;
+
+public final class InliningAstGeneratorTest {
+    private static final String POINT = """
+            class Point {
+                field int x, y;
+                static int count;
+
+                constructor Point new(int ax, int ay) {
+                    let x = ax;
+                    let y = ay;
+                    return this;
+                }
+
+                method int getX() { return x; }
+
+                method int sum(int d) { return (x + y) + d; }
+
+                function int twice(int a) { return a + a; }
+
+                function int count() { return count; }
+
+                function int call(int a) { return Point.twice(a); }
+            }
+            """;
+
+    @Test
+    public void testInline() throws IOException {
+        final Map<String, String> vm = TestUtils.compileVm(Map.of("Point", POINT, "Main", """
+                class Main {
+                    function int main() {
+                        var Point p;
+                        var int i;
+                        let p = Point.new(1, 2);
+                        let i = p.getX();
+                        let i = p.sum(i);
+                        let i = Point.twice(i);
+                        let i = Point.twice(i + 1);
+                        let i = Point.count();
+                        return Point.call(i);
+                    }
+                }
+                """), "--inline", "8");
+
+        Assertions.assertEquals("""
+                function Main.main 2
+                push constant 1
+                push constant 2
+                call Point.new 2
+                pop local 0
+                push local 0
+                push constant 0
+                add
+                pop pointer 1
+                push that 0
+                pop local 1
+                push local 0
+                push constant 0
+                add
+                pop pointer 1
+                push that 0
+                push local 0
+                push constant 1
+                add
+                pop pointer 1
+                push that 0
+                add
+                push local 1
+                add
+                pop local 1
+                push local 1
+                push local 1
+                add
+                pop local 1
+                push local 1
+                push constant 1
+                add
+                call Point.twice 1
+                pop local 1
+                call Point.count 0
+                pop local 1
+                push local 1
+                call Point.call 1
+                return
+                """, vm.get("Main"));
+    }
+
+    @Test
+    public void testBudget() throws IOException {
+        final String main = """
+                class Main {
+                    function int main() {
+                        var Point p;
+                        return p.sum(1);
+                    }
+                }
+                """;
+
+        Assertions.assertTrue(
+                TestUtils.compileVm(Map.of("Point", POINT, "Main", main), "--inline", "4").get("Main").contains("call Point.sum 2")
+        );
+        Assertions.assertFalse(
+                TestUtils.compileVm(Map.of("Point", POINT, "Main", main), "--inline", "5").get("Main").contains("call Point.sum 2")
+        );
+    }
+}
@@ -0,0 +1,88 @@
+package edu.nand2tetris.ast.processor;
+
+import java.io.IOException;
+
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+
+import edu.nand2tetris.utils.TestUtils;
+
+public final class LivenessAstGeneratorTest {
+
+    @Test
+    public void testSlotReuse() throws IOException {
+        final String vm = TestUtils.compileVm("""
+                class Main {
+                    function int main(int n) {
+                        var int a, b, unused, c;
+                        let a = n + 1;
+                        let unused = Main.main(a);
+                        let b = a + a;
+                        let c = b + 1;
+                        return c;
+                    }
+                }
+                """, "-O");
+
+        // a, b and c are never live together, unused is written only
+        Assertions.assertEquals("""
+                function Main.main 1
+                push argument 0
+                push constant 1
+                add
+                pop local 0
+                push local 0
+                call Main.main 1
+                pop temp 0
+                push local 0
+                push local 0
+                add
+                pop local 0
+                push local 0
+                push constant 1
+                add
+                pop local 0
+                push local 0
+                return
+                """, vm);
+    }
+
+    @Test
+    public void testLoop() throws IOException {
+        final String vm = TestUtils.compileVm("""
+                class Main {
+                    function int main(int n) {
+                        var int sum, i, t;
+                        while (i < n) {
+                            let t = i + 1;
+                            let sum = sum + t;
+                            let i = t;
+                        }
+                        return sum;
+                    }
+                }
+                """, "-O");
+
+        // sum and i rely on the zeroed locals, i is dead from let t to let i, so t takes its slot
+        Assertions.assertEquals("""
+                function Main.main 2
+                goto L1
+                label L0
+                push local 1
+                push constant 1
+                add
+                pop local 1
+                push local 0
+                push local 1
+                add
+                pop local 0
+                label L1
+                push local 1
+                push argument 0
+                lt
+                if-goto L0
+                push local 0
+                return
+                """, vm);
+    }
+}
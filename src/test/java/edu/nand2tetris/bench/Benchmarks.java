@@ -0,0 +1,65 @@
+package edu.nand2tetris.bench;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.List;
+import java.util.function.LongSupplier;
+
+/**
+ * Minimal warmup + measurement loop for the benchmarks in this package, run them with their main method
+ */
+final class Benchmarks {
+    static final Path SOURCES = Paths.get("src", "test", "resources", "src");
+
+    private Benchmarks() {}
+
+    static List<Path> jackFiles(Path dir) throws IOException {
+        return files(dir, ".jack");
+    }
+
+    static List<Path> files(Path dir, String extension) throws IOException {
+        return Files.walk(dir).filter(f -> f.getFileName().toString().endsWith(extension)).sorted().toList();
+    }
+
+    /**
+     * Concatenates the sources as many times as needed to get a big generated-like input
+     */
+    static byte[] concat(List<Path> files, int copies) throws IOException {
+        final ByteArrayOutputStream out = new ByteArrayOutputStream();
+        for (int i = 0; i < copies; i++) {
+            for (Path file : files) {
+                out.write(Files.readAllBytes(file));
+                out.write('\n');
+            }
+        }
+
+        return out.toByteArray();
+    }
+
+    /**
+     * Runs body until warmed up and prints the average time of an iteration,
+     * body returns amount of processed items to keep its result alive
+     */
+    static double run(String name, int warmups, int iterations, LongSupplier body) {
+        long blackhole = 0;
+        for (int i = 0; i < warmups; i++) {
+            blackhole += body.getAsLong();
+        }
+
+        long items = 0;
+        final long start = System.nanoTime();
+        for (int i = 0; i < iterations; i++) {
+            items += body.getAsLong();
+        }
+        final long elapsed = System.nanoTime() - start;
+
+        final double msPerOp = elapsed / 1e6 / iterations;
+        final double itemsPerSec = items / (elapsed / 1e9);
+        System.out.printf("%-32s %10.3f ms/op %14.0f items/s (%d)%n", name, msPerOp, itemsPerSec, blackhole & 1);
+
+        return msPerOp;
+    }
+}
@@ -0,0 +1,51 @@
+package edu.nand2tetris.bench;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+
+import edu.nadn2tetris.tokenizer.JackTokenizer;
+
+/**
+ * Comment heavy sources (Pong, Square): the former regex row filter followed by lexing of the kept rows
+ * against lexing of the raw source with the char level comment skipper.
+ */
+public final class CommentSkipperBenchmark {
+    private static final int COPIES = 500;
+
+    public static void main(String[] args) throws IOException {
+        final List<Path> files = new ArrayList<>(Benchmarks.jackFiles(Benchmarks.SOURCES.resolve("compiler/Pong")));
+        files.addAll(Benchmarks.jackFiles(Benchmarks.SOURCES.resolve("compiler/Square")));
+        final byte[] source = Benchmarks.concat(files, COPIES);
+        System.out.printf("source: %d KB%n", source.length / 1024);
+
+        final double legacy = Benchmarks.run("regex row filter + lexer", 5, 10, () -> filteredTokens(source));
+        final double skipper = Benchmarks.run("comment skipper + lexer", 5, 10, () -> tokens(source));
+        System.out.printf("speedup: %.2fx%n", legacy / skipper);
+    }
+
+    private static long filteredTokens(byte[] source) {
+        final StringBuilder rows = new StringBuilder(source.length);
+        LegacyRowFilter.forEachRow(source, row -> rows.append(row).append('\n'));
+
+        return tokens(rows.toString().getBytes(StandardCharsets.ISO_8859_1));
+    }
+
+    private static long tokens(byte[] source) {
+        long count = 0;
+        try (final JackTokenizer tokenizer = new JackTokenizer(new ByteArrayInputStream(source))) {
+            while (tokenizer.hasMoreTokens()) {
+                tokenizer.advance();
+                count++;
+            }
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+
+        return count;
+    }
+}
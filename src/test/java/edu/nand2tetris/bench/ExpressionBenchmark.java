@@ -0,0 +1,107 @@
+package edu.nand2tetris.bench;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.lang.management.ManagementFactory;
+
+import edu.nadn2tetris.ast.ClassTree;
+import edu.nadn2tetris.ast.processor.ByteCodeAstGenerator;
+import edu.nadn2tetris.ast.processor.SymbolTableAstGenerator;
+import edu.nadn2tetris.ast.term.ATermSyntaxTree;
+import edu.nadn2tetris.common.NameTable;
+import edu.nadn2tetris.table.FileSymbolTable;
+import edu.nadn2tetris.writer.CodeWriter;
+import edu.nadn2tetris.writer.Command;
+import edu.nadn2tetris.writer.Segment;
+import edu.nand2tetris.utils.ExpressionTrees;
+
+/**
+ * Code generation of many deep expressions: time and bytes allocated per expression,
+ * the writer only counts instructions, so the allocations are the ones of the expression walk.
+ */
+public final class ExpressionBenchmark {
+    private static final int EXPRESSIONS = 2_000;
+    private static final int DEPTH = 64;
+
+    public static void main(String[] args) {
+        final NameTable names = new NameTable();
+        final ATermSyntaxTree[] expressions = new ATermSyntaxTree[EXPRESSIONS];
+        for (int i = 0; i < EXPRESSIONS; i++) {
+            expressions[i] = ExpressionTrees.leftDeep(DEPTH);
+        }
+        final ClassTree classTree = ExpressionTrees.classWith(names, expressions);
+        final FileSymbolTable symbolTable = new SymbolTableAstGenerator(names).generate(classTree);
+
+        Benchmarks.run("compileExpression x" + EXPRESSIONS, 5, 20, () -> generate(classTree, symbolTable, names));
+
+        final com.sun.management.ThreadMXBean threads = (com.sun.management.ThreadMXBean) ManagementFactory.getThreadMXBean();
+        final long before = threads.getCurrentThreadAllocatedBytes();
+        generate(classTree, symbolTable, names);
+        final long allocated = threads.getCurrentThreadAllocatedBytes() - before;
+        System.out.printf("allocated: %d bytes, %.1f bytes/expression%n", allocated, (double) allocated / EXPRESSIONS);
+    }
+
+    private static long generate(ClassTree classTree, FileSymbolTable symbolTable, NameTable names) {
+        final CountingWriter writer = new CountingWriter();
+        try (final ByteCodeAstGenerator generator = new ByteCodeAstGenerator(symbolTable, writer, names)) {
+            generator.generate(classTree);
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+
+        return writer.instructions;
+    }
+
+    private static final class CountingWriter implements CodeWriter {
+        private long instructions;
+
+        @Override
+        public void writePush(Segment segment, short index) {
+            instructions++;
+        }
+
+        @Override
+        public void writePop(Segment segment, short index) {
+            instructions++;
+        }
+
+        @Override
+        public void writeArithmetic(Command command) {
+            instructions++;
+        }
+
+        @Override
+        public void writeLabel(int label) {
+            instructions++;
+        }
+
+        @Override
+        public void writeGoto(int label) {
+            instructions++;
+        }
+
+        @Override
+        public void writeIf(int label) {
+            instructions++;
+        }
+
+        @Override
+        public void writeCall(String label, int nArgs) {
+            instructions++;
+        }
+
+        @Override
+        public void writeFunction(String label, int nArgs) {
+            instructions++;
+        }
+
+        @Override
+        public void writeReturn() {
+            instructions++;
+        }
+
+        @Override
+        public void close() {
+        }
+    }
+}
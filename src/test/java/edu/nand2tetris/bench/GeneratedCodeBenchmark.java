@@ -0,0 +1,103 @@
+package edu.nand2tetris.bench;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.List;
+
+import edu.nadn2tetris.JackCompiler;
+import edu.nadn2tetris.hack.HackAssembler;
+import edu.nadn2tetris.hack.HackEmulator;
+import edu.nadn2tetris.hack.HackProgram;
+import edu.nadn2tetris.utils.FileUtils;
+import edu.nadn2tetris.vm.VMInterpreter;
+import edu.nadn2tetris.vm.VMProgram;
+
+/**
+ * Runs the non-interactive test programs in the VM interpreter and the Hack emulator with and without {@code -O}
+ * and prints the executed VM instructions, the Hack cycles of the program and its OS calls, whose cycles
+ * the emulator does not know, then the interpreter and emulator speed on the plain build.
+ */
+public final class GeneratedCodeBenchmark {
+    private static final List<String> PROGRAMS = List.of("ComplexArrays", "ConvertToBin", "Seven");
+
+    public static void main(String[] args) throws IOException {
+        System.out.printf(
+                "%-24s %14s %14s %14s %14s %14s %14s%n",
+                "program", "instructions", "with -O", "cycles", "with -O", "OS calls", "with -O"
+        );
+        for (String name : PROGRAMS) {
+            final Path program = Benchmarks.SOURCES.resolve("compiler").resolve(name);
+            final HackEmulator.Result plain = new HackEmulator(assemble(program)).run();
+            final HackEmulator.Result optimized = new HackEmulator(assemble(program, "-O")).run();
+            System.out.printf(
+                    "%-24s %14d %14d %14d %14d %14d %14d%n",
+                    name,
+                    new VMInterpreter(compile(program)).run("Main.main").instructions,
+                    new VMInterpreter(compile(program, "-O")).run("Main.main").instructions,
+                    plain.cycles,
+                    optimized.cycles,
+                    osCalls(plain),
+                    osCalls(optimized)
+            );
+        }
+
+        final VMInterpreter interpreter = new VMInterpreter(compile(Benchmarks.SOURCES.resolve("compiler").resolve("ComplexArrays")));
+        Benchmarks.run("ComplexArrays x1000", 5, 10, () -> {
+            long instructions = 0;
+            for (int i = 0; i < 1000; i++) {
+                instructions += interpreter.run("Main.main").instructions;
+            }
+            return instructions;
+        });
+
+        final HackEmulator emulator = new HackEmulator(assemble(Benchmarks.SOURCES.resolve("compiler").resolve("ComplexArrays")));
+        Benchmarks.run("ComplexArrays x1000 cycles", 5, 10, () -> {
+            long cycles = 0;
+            for (int i = 0; i < 1000; i++) {
+                cycles += emulator.run().cycles;
+            }
+            return cycles;
+        });
+    }
+
+    private static long osCalls(HackEmulator.Result result) {
+        return result.osCalls.values().stream().mapToLong(Long::longValue).sum();
+    }
+
+    private static VMProgram compile(Path program, String... flags) throws IOException {
+        final Path outDir = Files.createTempDirectory("generated-code");
+        try {
+            JackCompiler.main(args(program, outDir, flags));
+
+            return VMProgram.load(outDir);
+        } finally {
+            FileUtils.removeDir(outDir);
+        }
+    }
+
+    private static HackProgram assemble(Path program, String... flags) throws IOException {
+        final Path outDir = Files.createTempDirectory("generated-code");
+        try {
+            final String[] asmFlags = new String[flags.length + 2];
+            asmFlags[0] = "--asm";
+            asmFlags[1] = "--os-traps";
+            System.arraycopy(flags, 0, asmFlags, 2, flags.length);
+            JackCompiler.main(args(program, outDir, asmFlags));
+
+            return HackAssembler.assemble(Files.readString(outDir.resolve(program.getFileName() + ".asm")));
+        } finally {
+            FileUtils.removeDir(outDir);
+        }
+    }
+
+    private static String[] args(Path program, Path outDir, String... flags) {
+        final String[] args = new String[flags.length + 3];
+        args[0] = program.toString();
+        args[1] = outDir.toString();
+        args[2] = "--code";
+        System.arraycopy(flags, 0, args, 3, flags.length);
+
+        return args;
+    }
+}
@@ -0,0 +1,49 @@
+package edu.nand2tetris.bench;
+
+import java.io.BufferedReader;
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.UncheckedIOException;
+import java.util.function.Consumer;
+import java.util.regex.Pattern;
+
+/**
+ * Former per-line regex comment filter of the tokenizer, kept as a benchmark baseline
+ */
+final class LegacyRowFilter {
+    private static final Pattern COMMENTS_LINE_PATTERN = Pattern.compile("^\\s*(//.*|/\\*.*\\*/)$");
+    private static final Pattern COMMENTS_START_BLOCK_PATTERN = Pattern.compile("^\\s*/\\*.*$");
+    private static final Pattern COMMENTS_END_BLOCK_PATTERN = Pattern.compile("^.*\\*/$");
+    private static final Pattern EMPTY_LINE_PATTERN = Pattern.compile("^\\s*$");
+
+    private LegacyRowFilter() {}
+
+    static void forEachRow(byte[] source, Consumer<String> action) {
+        boolean commentBlockStarted = false;
+        try (final BufferedReader reader = new BufferedReader(new InputStreamReader(new ByteArrayInputStream(source)))) {
+            String r;
+            while ((r = reader.readLine()) != null) {
+                if (EMPTY_LINE_PATTERN.matcher(r).matches() || COMMENTS_LINE_PATTERN.matcher(r).matches()) {
+                    continue;
+                }
+
+                if (commentBlockStarted) {
+                    if (COMMENTS_END_BLOCK_PATTERN.matcher(r).matches()) {
+                        commentBlockStarted = false;
+                    }
+                    continue;
+                }
+
+                if (COMMENTS_START_BLOCK_PATTERN.matcher(r).matches()) {
+                    commentBlockStarted = true;
+                    continue;
+                }
+
+                action.accept(r.replaceAll("(//|/\\*).*", "").trim());
+            }
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+}
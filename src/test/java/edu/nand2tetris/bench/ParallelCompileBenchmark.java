@@ -0,0 +1,45 @@
+package edu.nand2tetris.bench;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.List;
+
+import edu.nadn2tetris.JackCompiler;
+import edu.nadn2tetris.utils.FileUtils;
+
+/**
+ * Compilation of a directory with a few hundred classes on one thread against {@code --jobs} = available processors.
+ */
+public final class ParallelCompileBenchmark {
+    private static final int COPIES = 25;
+
+    public static void main(String[] args) throws IOException {
+        final List<Path> files = Benchmarks.jackFiles(Benchmarks.SOURCES);
+        final Path srcDir = Files.createTempDirectory("parallel-benchmark-src");
+        final Path outDir = Files.createTempDirectory("parallel-benchmark-out");
+        try {
+            for (int i = 0; i < COPIES; i++) {
+                for (Path file : files) {
+                    final String name = file.getFileName().toString().replace(".jack", "");
+                    Files.copy(file, srcDir.resolve(name + "_" + files.indexOf(file) + "_" + i + ".jack"));
+                }
+            }
+            final long classes = (long) COPIES * files.size();
+            System.out.printf("classes: %d%n", classes);
+
+            final String jobs = String.valueOf(Runtime.getRuntime().availableProcessors());
+            final double sequential = Benchmarks.run("--jobs 1", 3, 5, () -> compile(srcDir, outDir, "1", classes));
+            final double parallel = Benchmarks.run("--jobs " + jobs, 3, 5, () -> compile(srcDir, outDir, jobs, classes));
+            System.out.printf("speedup: %.2fx%n", sequential / parallel);
+        } finally {
+            FileUtils.removeDir(srcDir);
+            FileUtils.removeDir(outDir);
+        }
+    }
+
+    private static long compile(Path srcDir, Path outDir, String jobs, long classes) {
+        JackCompiler.main(new String[]{srcDir.toString(), outDir.toString(), "--code", "--jobs", jobs});
+        return classes;
+    }
+}
@@ -0,0 +1,60 @@
+package edu.nand2tetris.bench;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+
+import edu.nadn2tetris.ast.AstParser;
+import edu.nadn2tetris.tokenizer.JackTokenizer;
+import edu.nadn2tetris.tokenizer.TokenBuffer;
+
+/**
+ * Repeated parse of the same files: lexing on every parse against parsing of once lexed {@link TokenBuffer}s.
+ */
+public final class ParserBenchmark {
+    private static final int REPEATS = 100;
+
+    public static void main(String[] args) throws IOException {
+        final List<Path> files = Benchmarks.jackFiles(Benchmarks.SOURCES);
+        final List<TokenBuffer> buffers = new ArrayList<>();
+        for (Path file : files) {
+            try (final JackTokenizer tokenizer = JackTokenizer.map(file)) {
+                buffers.add(TokenBuffer.of(tokenizer));
+            }
+        }
+
+        final double lexAndParse = Benchmarks.run("lex + parse", 5, 10, () -> parseFiles(files));
+        final double parse = Benchmarks.run("parse TokenBuffer", 5, 10, () -> parseBuffers(buffers));
+        System.out.printf("speedup: %.2fx%n", lexAndParse / parse);
+    }
+
+    private static long parseFiles(List<Path> files) {
+        long trees = 0;
+        for (int i = 0; i < REPEATS; i++) {
+            for (Path file : files) {
+                try (final AstParser parser = new AstParser(JackTokenizer.map(file))) {
+                    parser.compileClass();
+                    trees++;
+                } catch (IOException e) {
+                    throw new UncheckedIOException(e);
+                }
+            }
+        }
+
+        return trees;
+    }
+
+    private static long parseBuffers(List<TokenBuffer> buffers) {
+        long trees = 0;
+        for (int i = 0; i < REPEATS; i++) {
+            for (TokenBuffer buffer : buffers) {
+                new AstParser(buffer).compileClass();
+                trees++;
+            }
+        }
+
+        return trees;
+    }
+}
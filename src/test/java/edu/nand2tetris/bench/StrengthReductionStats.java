@@ -0,0 +1,68 @@
+package edu.nand2tetris.bench;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.List;
+
+import edu.nadn2tetris.JackCompiler;
+import edu.nadn2tetris.utils.FileUtils;
+
+/**
+ * Compiles every test program with and without {@code -O} and compares Math.multiply / Math.divide call sites.
+ * Each removed call saves the 16 iterations of the OS multiplication loop for a chain of a few adds.
+ */
+public final class StrengthReductionStats {
+
+    public static void main(String[] args) throws IOException {
+        final List<Path> programs = Benchmarks.jackFiles(Benchmarks.SOURCES).stream()
+                .map(Path::getParent)
+                .distinct()
+                .toList();
+
+        System.out.printf("%-24s %14s %14s %14s%n", "program", "mul/div calls", "with -O", "instructions");
+        for (Path program : programs) {
+            final Stats plain = compile(program);
+            final Stats optimized = compile(program, "-O");
+            System.out.printf(
+                    "%-24s %14d %14d %6d -> %5d%n",
+                    program.getFileName(),
+                    plain.calls,
+                    optimized.calls,
+                    plain.instructions,
+                    optimized.instructions
+            );
+        }
+    }
+
+    private static Stats compile(Path program, String... flags) throws IOException {
+        final Path outDir = Files.createTempDirectory("strength-reduction");
+        try {
+            final String[] args = new String[flags.length + 3];
+            args[0] = program.toString();
+            args[1] = outDir.toString();
+            args[2] = "--code";
+            System.arraycopy(flags, 0, args, 3, flags.length);
+            JackCompiler.main(args);
+
+            final Stats stats = new Stats();
+            for (Path vm : Benchmarks.files(outDir, ".vm")) {
+                for (String line : Files.readAllLines(vm)) {
+                    stats.instructions++;
+                    if (line.startsWith("call Math.multiply") || line.startsWith("call Math.divide")) {
+                        stats.calls++;
+                    }
+                }
+            }
+
+            return stats;
+        } finally {
+            FileUtils.removeDir(outDir);
+        }
+    }
+
+    private static final class Stats {
+        private int calls;
+        private int instructions;
+    }
+}
@@ -0,0 +1,152 @@
+package edu.nand2tetris.bench;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.regex.Pattern;
+
+import edu.nadn2tetris.tokenizer.JackTokenizer;
+
+/**
+ * Throughput of {@link JackTokenizer} against the former regex pipeline
+ * (row filter, per char SYMBOL regex, TokenType.parse and Keyword.parse patterns),
+ * and the stream input against the memory mapped one.
+ */
+public final class TokenizerBenchmark {
+    private static final int COPIES = 200;
+
+    public static void main(String[] args) throws IOException {
+        final byte[] source = Benchmarks.concat(Benchmarks.jackFiles(Benchmarks.SOURCES), COPIES);
+        System.out.printf("source: %d KB%n", source.length / 1024);
+
+        final double legacy = Benchmarks.run("regex classification", 5, 10, () -> legacyTokens(source));
+        final double dfa = Benchmarks.run("JackTokenizer", 5, 10, () -> tokens(source));
+        System.out.printf("speedup: %.2fx%n", legacy / dfa);
+
+        final Path file = Files.createTempFile("tokenizer-benchmark", ".jack");
+        try {
+            Files.write(file, source);
+            final double stream = Benchmarks.run("JackTokenizer(InputStream)", 5, 10, () -> streamTokens(file));
+            final double mapped = Benchmarks.run("JackTokenizer.map", 5, 10, () -> mappedTokens(file));
+            System.out.printf("mapped speedup: %.2fx%n", stream / mapped);
+        } finally {
+            Files.delete(file);
+        }
+    }
+
+    private static long streamTokens(Path file) {
+        try {
+            return count(new JackTokenizer(Files.newInputStream(file)));
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    private static long mappedTokens(Path file) {
+        try {
+            return count(JackTokenizer.map(file));
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    private static long count(JackTokenizer tokenizer) throws IOException {
+        long count = 0;
+        try (tokenizer) {
+            while (tokenizer.hasMoreTokens()) {
+                tokenizer.advance();
+                count++;
+            }
+        }
+
+        return count;
+    }
+
+    private static long tokens(byte[] source) {
+        try {
+            return count(new JackTokenizer(new ByteArrayInputStream(source)));
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    private static long legacyTokens(byte[] source) {
+        final long[] count = new long[1];
+        LegacyRowFilter.forEachRow(source, row -> {
+            int i = 0;
+            while (i < row.length()) {
+                final char ch = row.charAt(i);
+                int end = i + 1;
+                if (Character.isLetter(ch)) {
+                    while (end < row.length() && (Character.isLetterOrDigit(row.charAt(end)) || row.charAt(end) == '_')) {
+                        end++;
+                    }
+                } else if (Character.isDigit(ch)) {
+                    while (end < row.length() && Character.isDigit(row.charAt(end))) {
+                        end++;
+                    }
+                } else if (ch == '"') {
+                    while (end < row.length() && row.charAt(end++) != '"') {
+                        // to closing quote
+                    }
+                } else if (!Legacy.SYMBOL.matcher(String.valueOf(ch)).matches()) {
+                    i++;
+                    continue;
+                }
+
+                if (Legacy.classify(row.substring(i, end)) == null) {
+                    throw new IllegalStateException("Unsupported token: " + row.substring(i, end));
+                }
+                i = end;
+                count[0]++;
+            }
+        });
+
+        return count[0];
+    }
+
+    private static final class Legacy {
+        static final String[] KEYWORDS = {
+                "class", "constructor", "function", "method", "field", "static", "var", "int", "char", "boolean",
+                "void", "true", "false", "null", "this", "let", "do", "if", "else", "while", "return"
+        };
+        static final Pattern[] KEYWORD_PATTERNS = new Pattern[KEYWORDS.length];
+        static final Pattern KEYWORD = Pattern.compile("^(" + String.join("|", KEYWORDS) + ")$");
+        static final Pattern SYMBOL = Pattern.compile("^[\\{\\}\\(\\)\\[\\]\\.\\,\\;\\+\\-\\*\\/\\&\\|\\<\\>\\=\\~]$");
+        static final Pattern IDENTIFIER = Pattern.compile("^[_a-zA-Z]+[_a-zA-Z\\d]*$");
+        static final Pattern INT_CONST = Pattern.compile("^\\d{1,5}$");
+        static final Pattern STRING_CONST = Pattern.compile("^(\")(.*)(\")$");
+
+        static {
+            for (int i = 0; i < KEYWORDS.length; i++) {
+                KEYWORD_PATTERNS[i] = Pattern.compile("^" + KEYWORDS[i] + "$");
+            }
+        }
+
+        static Object classify(String token) {
+            if (KEYWORD.matcher(token).matches()) {
+                for (Pattern pattern : KEYWORD_PATTERNS) {
+                    if (pattern.matcher(token).matches()) {
+                        return pattern;
+                    }
+                }
+            }
+
+            if (SYMBOL.matcher(token).matches()) {
+                return token.charAt(0);
+            }
+
+            if (IDENTIFIER.matcher(token).matches()) {
+                return KEYWORD.matcher(token).matches() ? null : token;
+            }
+
+            if (INT_CONST.matcher(token).matches()) {
+                return Short.parseShort(token);
+            }
+
+            return STRING_CONST.matcher(token).matches() ? token.substring(1, token.length() - 1) : null;
+        }
+    }
+}
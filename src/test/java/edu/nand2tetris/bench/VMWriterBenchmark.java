@@ -0,0 +1,84 @@
+package edu.nand2tetris.bench;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.io.Writer;
+
+import edu.nadn2tetris.writer.Command;
+import edu.nadn2tetris.writer.Segment;
+import edu.nadn2tetris.writer.VMWriter;
+
+/**
+ * Emission of a typical instruction mix: the former StringBuilder + String.formatted writer against the streaming one.
+ */
+public final class VMWriterBenchmark {
+    private static final int INSTRUCTIONS = 1_000_000;
+
+    public static void main(String[] args) {
+        final double legacy = Benchmarks.run("formatted StringBuilder", 3, 5, VMWriterBenchmark::legacy);
+        final double streaming = Benchmarks.run("VMWriter", 3, 5, VMWriterBenchmark::streaming);
+        System.out.printf("speedup: %.2fx%n", legacy / streaming);
+    }
+
+    private static long streaming() {
+        final CountingWriter out = new CountingWriter();
+        try (final VMWriter writer = new VMWriter(out)) {
+            for (int i = 0; i < INSTRUCTIONS / 8; i++) {
+                writer.writePush(Segment.LOCAL, (short) (i & 7));
+                writer.writePush(Segment.CONSTANT, (short) (i & 0x7FFF));
+                writer.writeArithmetic(Command.ADD);
+                writer.writePop(Segment.THIS, (short) (i & 3));
+                writer.writeLabel(i & 15);
+                writer.writeIf(i & 15);
+                writer.writeCall("Math.multiply", 2);
+                writer.writeReturn();
+            }
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+
+        return out.chars;
+    }
+
+    private static long legacy() {
+        final StringBuilder code = new StringBuilder();
+        for (int i = 0; i < INSTRUCTIONS / 8; i++) {
+            code.append("push %s %d\n".formatted(Segment.LOCAL.name().toLowerCase(), (short) (i & 7)));
+            code.append("push %s %d\n".formatted(Segment.CONSTANT.name().toLowerCase(), (short) (i & 0x7FFF)));
+            code.append(Command.ADD.name().toLowerCase()).append("\n");
+            code.append("pop %s %d\n".formatted(Segment.THIS.name().toLowerCase(), (short) (i & 3)));
+            code.append("label %s\n".formatted("Main.main_while_check_" + (i & 15)));
+            code.append("if-goto %s\n".formatted("Main.main_while_start_" + (i & 15)));
+            code.append("call %s %d\n".formatted("Math.multiply", 2));
+            code.append("return\n");
+        }
+
+        final CountingWriter out = new CountingWriter();
+        out.append(code);
+
+        return out.chars;
+    }
+
+    private static final class CountingWriter extends Writer {
+        private long chars;
+
+        @Override
+        public void write(char[] cbuf, int off, int len) {
+            chars += len;
+        }
+
+        @Override
+        public Writer append(CharSequence csq) {
+            chars += csq.length();
+            return this;
+        }
+
+        @Override
+        public void flush() {
+        }
+
+        @Override
+        public void close() {
+        }
+    }
+}
@@ -0,0 +1,86 @@
+package edu.nand2tetris.common;
+
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+
+import edu.nadn2tetris.common.NameTable;
+
+public final class NameTableTest {
+
+    @Test
+    public void testIntern() {
+        final NameTable names = new NameTable();
+        final String source = "let square = Square.new(square);";
+
+        final int square = names.intern(source, 4, 6);
+        Assertions.assertEquals(0, square);
+        Assertions.assertEquals(square, names.intern(source, 24, 6));
+        Assertions.assertEquals(square, names.intern("square"));
+        Assertions.assertEquals("square", names.name(square));
+        Assertions.assertEquals(-1, names.find("Square"));
+
+        final int squareClass = names.intern(source, 13, 6);
+        Assertions.assertEquals(1, squareClass);
+        Assertions.assertEquals(2, names.size());
+    }
+
+    @Test
+    public void testQualify() {
+        final NameTable names = new NameTable();
+        final int square = names.intern("Square");
+        final int draw = names.intern("draw");
+
+        final int qualified = names.qualify(square, draw);
+        Assertions.assertEquals("Square.draw", names.name(qualified));
+        Assertions.assertEquals(qualified, names.qualify(square, draw));
+        Assertions.assertEquals(qualified, names.intern("Square.draw"));
+    }
+
+    @Test
+    public void testGrow() {
+        final NameTable names = new NameTable();
+        for (int i = 0; i < 10_000; i++) {
+            Assertions.assertEquals(i, names.intern("name" + i));
+        }
+
+        for (int i = 0; i < 10_000; i++) {
+            Assertions.assertEquals(i + 10_000, names.qualify(i, i));
+        }
+
+        for (int i = 0; i < 10_000; i++) {
+            Assertions.assertEquals(i, names.find("name" + i));
+            Assertions.assertEquals(i + 10_000, names.qualify(i, i));
+            Assertions.assertEquals("name" + i + ".name" + i, names.name(i + 10_000));
+        }
+    }
+
+    @Test
+    public void testConcurrentIntern() throws InterruptedException {
+        final NameTable names = new NameTable();
+        final int threads = 8;
+        final int[][] ids = new int[threads][5_000];
+        final Thread[] workers = new Thread[threads];
+        for (int t = 0; t < threads; t++) {
+            final int[] threadIds = ids[t];
+            final int shift = t;
+            workers[t] = new Thread(() -> {
+                for (int i = 0; i < threadIds.length; i++) {
+                    final int n = (i + shift * 613) % threadIds.length; // different order in every thread
+                    threadIds[n] = names.qualify(names.intern("name" + n), names.intern("sub" + n % 7));
+                }
+            });
+            workers[t].start();
+        }
+        for (Thread worker : workers) {
+            worker.join();
+        }
+
+        for (int i = 0; i < ids[0].length; i++) {
+            for (int t = 1; t < threads; t++) {
+                Assertions.assertEquals(ids[0][i], ids[t][i]);
+            }
+            Assertions.assertEquals("name" + i + ".sub" + i % 7, names.name(ids[0][i]));
+        }
+        Assertions.assertEquals(5_000 * 2 + 7, names.size());
+    }
+}
@@ -0,0 +1,218 @@
+package edu.nand2tetris.hack;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.stream.Stream;
+
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+
+import edu.nadn2tetris.hack.HackAssembler;
+import edu.nadn2tetris.hack.HackEmulator;
+import edu.nadn2tetris.hack.HackProgram;
+import edu.nadn2tetris.vm.VMInterpreter;
+import edu.nadn2tetris.vm.VMProgram;
+import edu.nand2tetris.utils.TestUtils;
+
+public final class HackEmulatorTest {
+    private static final Path PROGRAMS = Paths.get("src", "test", "resources", "src", "compiler");
+
+    @Test
+    public void testInstructions() {
+        final HackProgram program = HackAssembler.assemble("""
+                @256
+                D=A
+                @SP
+                M=D
+                // 3 * 5 by adding
+                @5
+                D=A
+                @R13
+                M=D
+                @R14
+                M=0
+                (LOOP)
+                @R13
+                D=M
+                @DONE
+                D;JEQ
+                @3
+                D=A
+                @R14
+                M=D+M
+                @R13
+                M=M-1
+                @LOOP
+                0;JMP
+                (DONE)
+                @R14
+                D=M
+                @SP
+                AM=M+1
+                A=A-1
+                M=D
+                (END)
+                @END
+                0;JMP
+                """);
+
+        final HackEmulator.Result result = new HackEmulator(program).run();
+
+        Assertions.assertEquals(15, result.value);
+        Assertions.assertEquals(10 + 5 * 12 + 4 + 8, result.cycles);
+        Assertions.assertEquals(result.cycles, result.profile.values().stream().mapToLong(Long::longValue).sum());
+    }
+
+    @Test
+    public void testJumpWithADest() {
+        final HackProgram program = HackAssembler.assemble("""
+                @256
+                D=A
+                @SP
+                M=D
+                // jumps to SECOND, A holds 256 afterwards
+                @SECOND
+                A=D;JGT
+                @WRONG
+                0;JMP
+                (SECOND)
+                // jumps to DONE, A holds 13 afterwards
+                @R13
+                D=A
+                @DONE
+                AM=D;JGT
+                (WRONG)
+                D=0
+                @PUSH
+                0;JMP
+                (DONE)
+                @42
+                D=A
+                (PUSH)
+                @SP
+                AM=M+1
+                A=A-1
+                M=D
+                (END)
+                @END
+                0;JMP
+                """);
+
+        Assertions.assertEquals(42, new HackEmulator(program).run().value);
+    }
+
+    @Test
+    public void testComplexArrays() throws IOException {
+        final HackEmulator.Result plain = run(PROGRAMS.resolve("ComplexArrays"));
+        final HackEmulator.Result optimized = run(PROGRAMS.resolve("ComplexArrays"), "-O");
+
+        Assertions.assertTrue(plain.output.contains("Test 5: expected result: 110; actual result: 110\n"));
+        Assertions.assertEquals(plain.output, optimized.output);
+        Assertions.assertTrue(optimized.cycles < plain.cycles);
+    }
+
+    @Test
+    public void testProfile() throws IOException {
+        final String asm = TestUtils.compileAsm(Map.of("Main", """
+                class Main {
+                    function int main() {
+                        return Main.gcd(1071, 462) + Math.multiply(2, 3);
+                    }
+                    function int gcd(int a, int b) {
+                        if (b = 0) {
+                            return a;
+                        }
+                        return Main.gcd(b, a - ((a / b) * b));
+                    }
+                }
+                """));
+
+        final HackEmulator.Result result = new HackEmulator(HackAssembler.assemble(asm)).run();
+
+        Assertions.assertEquals(21 + 6, result.value);
+        Assertions.assertEquals(result.cycles, result.profile.values().stream().mapToLong(Long::longValue).sum());
+        Assertions.assertTrue(result.profile.get("Main.gcd") > result.profile.get("Main.main"));
+        // OS functions are counted apart, gcd multiplies once per division
+        Assertions.assertFalse(result.profile.containsKey("Math.multiply"));
+        Assertions.assertEquals(4L, (long) result.osCalls.get("Math.multiply"));
+        Assertions.assertEquals(3L, (long) result.osCalls.get("Math.divide"));
+    }
+
+    @Test
+    public void testComparisonOverflow() throws IOException {
+        final Map<String, String> sources = Map.of("Main", """
+                class Main {
+                    function int main() {
+                        var int s;
+                        let s = Main.compare(20000, -20000);
+                        let s = s + (4 * Main.compare(-20000, 20000));
+                        let s = s + (16 * Main.compare(16384, -16385));
+                        let s = s + (64 * Main.compare(-16385, 16384));
+                        let s = s + (256 * Main.compare(32767, -1));
+                        let s = s + (1024 * Main.compare(-32767, 2));
+                        let s = s + (4096 * Main.compare(-16384, -16384));
+                        let s = s - Main.less(-20000, 20000);
+                        return s - Main.less(20000, -20000);
+                    }
+                    function int compare(int x, int y) {
+                        if (x > y) {
+                            return 1;
+                        }
+                        if (x < y) {
+                            return 2;
+                        }
+                        if (x < 20000) {
+                            return 3;
+                        }
+                        return 0;
+                    }
+                    function boolean less(int x, int y) {
+                        return x < y;
+                    }
+                }
+                """);
+
+        final int expected = 1 + 4 * 2 + 16 + 64 * 2 + 256 + 1024 * 2 + 4096 * 3 + 1;
+        for (String level : new String[]{"-O0", "-O"}) {
+            final VMProgram vm = VMProgram.parse(TestUtils.compileVm(sources, level));
+            final HackProgram asm = HackAssembler.assemble(TestUtils.compileAsm(sources, level));
+            Assertions.assertEquals(expected, new VMInterpreter(vm).run("Main.main").value, level);
+            Assertions.assertEquals(expected, new HackEmulator(asm).run().value, level);
+        }
+    }
+
+    @Test
+    public void testErrors() {
+        final HackProgram endless = HackAssembler.assemble("""
+                (LOOP)
+                @LOOP
+                D;JEQ
+                """);
+        Assertions.assertThrows(IllegalStateException.class, () -> new HackEmulator(endless, 1_000).run());
+
+        final HackProgram outOfRom = HackAssembler.assemble("""
+                @32000
+                0;JMP
+                """);
+        Assertions.assertThrows(IllegalStateException.class, () -> new HackEmulator(outOfRom).run());
+
+        Assertions.assertThrows(IllegalStateException.class, () -> HackAssembler.assemble("D=D*A"));
+        Assertions.assertThrows(IllegalStateException.class, () -> HackAssembler.assemble("(A)\n(A)\n"));
+    }
+
+    private static HackEmulator.Result run(Path dir, String... flags) throws IOException {
+        final Map<String, String> sources = new HashMap<>();
+        try (Stream<Path> files = Files.list(dir)) {
+            for (Path file : files.toList()) {
+                final String name = file.getFileName().toString();
+                sources.put(name.substring(0, name.length() - ".jack".length()), Files.readString(file));
+            }
+        }
+
+        return new HackEmulator(HackAssembler.assemble(TestUtils.compileAsm(sources, flags))).run();
+    }
+}
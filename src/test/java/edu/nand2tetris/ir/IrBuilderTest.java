@@ -0,0 +1,119 @@
+package edu.nand2tetris.ir;
+
+import java.io.IOException;
+import java.io.StringWriter;
+import java.util.List;
+import java.util.function.Consumer;
+
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+
+import edu.nadn2tetris.ir.IrBuilder;
+import edu.nadn2tetris.ir.IrPass;
+import edu.nadn2tetris.ir.IrPasses;
+import edu.nadn2tetris.writer.CodeWriter;
+import edu.nadn2tetris.writer.Command;
+import edu.nadn2tetris.writer.Segment;
+import edu.nadn2tetris.writer.VMWriter;
+
+public final class IrBuilderTest {
+
+    @Test
+    public void testRoundTrip() throws IOException {
+        Assertions.assertEquals("""
+                function Main.main 1
+                push constant 7
+                pop local 0
+                label L0
+                neg
+                if-goto L0
+                call Math.multiply 2
+                call Main.main 0
+                call Math.multiply 2
+                return
+                function Main.f 0
+                goto L0
+                label L0
+                return
+                """, build(List.of(), w -> {
+            w.writeFunction("Main.main", 1);
+            w.writePush(Segment.CONSTANT, (short) 7);
+            w.writePop(Segment.LOCAL, (short) 0);
+            w.writeLabel(0);
+            w.writeArithmetic(Command.NEG);
+            w.writeIf(0);
+            w.writeCall("Math.multiply", 2);
+            w.writeCall("Main.main", 0);
+            w.writeCall("Math.multiply", 2);
+            w.writeReturn();
+            w.writeFunction("Main.f", 0);
+            w.writeGoto(0);
+            w.writeLabel(0);
+            w.writeReturn();
+        }));
+    }
+
+    @Test
+    public void testJumpThreading() throws IOException {
+        Assertions.assertEquals("""
+                function Main.main 0
+                label L0
+                push argument 0
+                if-goto L0
+                push argument 1
+                if-goto L0
+                return
+                """, build(IrPasses.defaults(), w -> {
+            w.writeFunction("Main.main", 0);
+            w.writeLabel(0);
+            w.writePush(Segment.ARGUMENT, (short) 0);
+            w.writeIf(1);
+            w.writePush(Segment.ARGUMENT, (short) 1);
+            w.writeIf(2);
+            w.writeReturn();
+            w.writeLabel(1);
+            w.writeLabel(2);
+            w.writeGoto(3);
+            w.writeLabel(3);
+            w.writeGoto(0);
+        }));
+    }
+
+    @Test
+    public void testUnreachableCode() throws IOException {
+        Assertions.assertEquals("""
+                function Main.main 0
+                push argument 0
+                if-goto L0
+                push constant 1
+                return
+                label L0
+                push constant 2
+                return
+                """, build(List.of(IrPasses.UNREACHABLE_CODE), w -> {
+            w.writeFunction("Main.main", 0);
+            w.writePush(Segment.ARGUMENT, (short) 0);
+            w.writeIf(4);
+            w.writePush(Segment.CONSTANT, (short) 1);
+            w.writeGoto(5);
+            w.writeLabel(6); // nothing jumps here
+            w.writePush(Segment.CONSTANT, (short) 3);
+            w.writeReturn();
+            w.writeLabel(5);
+            w.writeReturn();
+            w.writePush(Segment.CONSTANT, (short) 4); // after a return
+            w.writeLabel(4);
+            w.writePush(Segment.CONSTANT, (short) 2);
+            w.writeReturn();
+        }));
+    }
+
+    private static String build(List<IrPass> passes, Consumer<CodeWriter> code) throws IOException {
+        final StringWriter out = new StringWriter();
+        try (final IrBuilder builder = new IrBuilder(new VMWriter(out), passes)) {
+            code.accept(builder);
+        }
+
+        return out.toString();
+    }
+}
@@ -0,0 +1,122 @@
+package edu.nand2tetris.pass;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.stream.Stream;
+
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+
+import edu.nadn2tetris.conf.Flag;
+import edu.nadn2tetris.conf.OptimizationLevel;
+import edu.nadn2tetris.pass.PassManager;
+import edu.nadn2tetris.vm.VMInterpreter;
+import edu.nadn2tetris.vm.VMProgram;
+import edu.nand2tetris.utils.TestUtils;
+
+public final class PassManagerTest {
+    private static final Path PROGRAMS = Paths.get("src", "test", "resources", "src", "compiler");
+
+    @Test
+    public void testLevels() throws IOException {
+        final Map<String, String> sources = sources(PROGRAMS.resolve("ComplexArrays"));
+        final VMInterpreter.Result o0 = run(sources, "-O0");
+        final VMInterpreter.Result o1 = run(sources, "-O1");
+        final VMInterpreter.Result o2 = run(sources, "-O2");
+        final VMInterpreter.Result os = run(sources, "-Os");
+
+        Assertions.assertEquals(o0.output, o1.output);
+        Assertions.assertEquals(o0.output, o2.output);
+        Assertions.assertEquals(o0.output, os.output);
+        Assertions.assertTrue(o1.instructions < o0.instructions);
+        Assertions.assertTrue(o2.instructions < o1.instructions);
+        Assertions.assertEquals(TestUtils.compileVm(sources, "-O"), TestUtils.compileVm(sources, "-O2"));
+    }
+
+    @Test
+    public void testOptimizeForSize() throws IOException {
+        final String source = """
+                class Main {
+                    function int main(int x) {
+                        return x * 10;
+                    }
+                }
+                """;
+
+        Assertions.assertEquals("""
+                function Main.main 0
+                push argument 0
+                push constant 10
+                call Math.multiply 2
+                return
+                """, TestUtils.compileVm(source, "-Os"));
+        Assertions.assertFalse(TestUtils.compileVm(source, "-O2").contains("call Math.multiply"));
+    }
+
+    @Test
+    public void testFlags() {
+        Assertions.assertEquals(OptimizationLevel.O0, OptimizationLevel.of(Map.of()));
+        Assertions.assertEquals(OptimizationLevel.O2, OptimizationLevel.of(Map.of(Flag.OPTIMIZE, "", Flag.OPTIMIZE_2, "")));
+        Assertions.assertThrows(
+                IllegalArgumentException.class,
+                () -> OptimizationLevel.of(Map.of(Flag.OPTIMIZE_1, "", Flag.OPTIMIZE_SIZE, ""))
+        );
+    }
+
+    @Test
+    public void testTiming() {
+        final PassManager passes = new PassManager(OptimizationLevel.O1, true);
+        passes.run("inline", () -> {
+        });
+        passes.run("inline", () -> {
+        });
+        passes.run("fold", () -> {
+        });
+
+        final String[] report = passes.report().split("\n");
+        Assertions.assertEquals(4, report.length);
+        Assertions.assertTrue(report[1].matches("inline +2 .*"));
+        Assertions.assertTrue(report[2].matches("fold +1 .*"));
+        Assertions.assertTrue(report[3].startsWith("not timed: "));
+    }
+
+    @Test
+    public void testNestedTiming() {
+        final PassManager passes = new PassManager(OptimizationLevel.O1, true);
+        passes.run("codegen", () -> passes.run("jump-threading", () -> {
+            try {
+                Thread.sleep(50);
+            } catch (InterruptedException e) {
+                throw new IllegalStateException(e);
+            }
+        }));
+
+        final String[] report = passes.report().split("\n");
+        Assertions.assertTrue(millis(report[1]) < 50, report[1]);
+        Assertions.assertTrue(millis(report[2]) >= 50, report[2]);
+    }
+
+    private static double millis(String reportLine) {
+        return Double.parseDouble(reportLine.trim().split(" +")[2].replace(',', '.'));
+    }
+
+    private static VMInterpreter.Result run(Map<String, String> sources, String level) throws IOException {
+        return new VMInterpreter(VMProgram.parse(TestUtils.compileVm(sources, level))).run("Main.main");
+    }
+
+    private static Map<String, String> sources(Path dir) throws IOException {
+        final Map<String, String> sources = new HashMap<>();
+        try (Stream<Path> files = Files.list(dir)) {
+            for (Path file : files.toList()) {
+                final String name = file.getFileName().toString();
+                sources.put(name.substring(0, name.length() - ".jack".length()), Files.readString(file));
+            }
+        }
+
+        return sources;
+    }
+}
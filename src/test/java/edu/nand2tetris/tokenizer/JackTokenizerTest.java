@@ -1,17 +1,24 @@
 package edu.nand2tetris.tokenizer;
 
+import java.io.ByteArrayInputStream;
 import java.io.IOException;
+import java.nio.charset.StandardCharsets;
 import java.nio.file.Files;
 import java.nio.file.Path;
 import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.List;
 import java.util.Map;
 import java.util.function.UnaryOperator;
 import java.util.stream.Collectors;
 
 import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Assertions;
 import org.junit.jupiter.api.Test;
 
 import edu.nadn2tetris.JackCompiler;
+import edu.nadn2tetris.tokenizer.JackTokenizer;
+import edu.nadn2tetris.tokenizer.TokenBuffer;
 import edu.nadn2tetris.utils.FileUtils;
 import edu.nand2tetris.utils.TestUtils;
 
@@ -66,4 +73,90 @@ public final class JackTokenizerTest {
             TestUtils.compareFiles(testFile.toFile(), compileFileEntry.getValue().toFile());
         }
     }
+
+    @Test
+    public void testComments() throws IOException {
+        final String src = """
+                /* block */ class /* inline */ Main { // line
+                    /** multi
+                     * line * / comment **/
+                    function void main() {
+                        do Output.printString("// not /* a comment");
+                        return 8/2; /**/
+                    }
+                }
+                // last line without newline""";
+
+        Assertions.assertEquals(
+                List.of("class", "Main", "{", "function", "void", "main", "(", ")", "{",
+                        "do", "Output", ".", "printString", "(", "// not /* a comment", ")", ";",
+                        "return", "8", "/", "2", ";", "}", "}"),
+                tokenize(src)
+        );
+    }
+
+    @Test
+    public void testUnterminatedComment() {
+        for (String src : new String[]{"class Main { /* no end", "class Main { /** no end *"}) {
+            final IllegalStateException e = Assertions.assertThrows(IllegalStateException.class, () -> tokenize(src));
+            Assertions.assertEquals("Unterminated comment", e.getMessage());
+        }
+    }
+
+    @Test
+    public void testStringConstants() throws IOException {
+        Assertions.assertEquals(List.of("let", "s", "=", "a b", ";"), tokenize("let s = \"a b\";"));
+
+        final IllegalStateException e = Assertions.assertThrows(
+                IllegalStateException.class,
+                () -> tokenize("let s = \"ab\ncd\";")
+        );
+        Assertions.assertTrue(e.getMessage().startsWith("Unterminated string constant"));
+    }
+
+    @Test
+    public void testTokenBuffer() throws IOException {
+        final Path srcFile = RES_DIR.resolve("src/Square/Square.jack");
+
+        final TokenBuffer tokens;
+        try (final JackTokenizer tokenizer = JackTokenizer.map(srcFile)) {
+            tokens = TokenBuffer.of(tokenizer);
+        }
+
+        int i = 0;
+        try (final JackTokenizer tokenizer = JackTokenizer.map(srcFile)) {
+            while (tokenizer.hasMoreTokens()) {
+                tokenizer.advance();
+                Assertions.assertEquals(tokenizer.tokenType(), tokens.tokenType(i));
+                Assertions.assertEquals(tokenizer.tokenOffset(), tokens.offset(i));
+                switch (tokenizer.tokenType()) {
+                    case KEYWORD -> Assertions.assertEquals(tokenizer.keyword(), tokens.keyword(i));
+                    case SYMBOL -> Assertions.assertEquals(tokenizer.symbol(), tokens.symbol(i));
+                    case INT_CONST -> Assertions.assertEquals(tokenizer.intVal(), tokens.intVal(i));
+                    case IDENTIFIER -> Assertions.assertEquals(tokenizer.identifier(), tokens.identifier(i));
+                    case STRING_CONST -> Assertions.assertEquals(tokenizer.stringVal(), tokens.stringVal(i));
+                }
+                i++;
+            }
+        }
+        Assertions.assertEquals(i, tokens.size());
+
+        // same names share an id
+        Assertions.assertEquals(tokens.nameId(1), tokens.names().find("Square"));
+    }
+
+    private static List<String> tokenize(String src) throws IOException {
+        final List<String> tokens = new ArrayList<>();
+        try (final JackTokenizer tokenizer = new JackTokenizer(new ByteArrayInputStream(src.getBytes(StandardCharsets.US_ASCII)))) {
+            while (tokenizer.hasMoreTokens()) {
+                tokenizer.advance();
+                tokens.add(switch (tokenizer.tokenType()) {
+                    case STRING_CONST -> tokenizer.stringVal();
+                    default -> tokenizer.tokenText().toString();
+                });
+            }
+        }
+
+        return tokens;
+    }
 }
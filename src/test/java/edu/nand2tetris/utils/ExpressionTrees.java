@@ -0,0 +1,62 @@
+package edu.nand2tetris.utils;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import edu.nadn2tetris.ast.AbstractSyntaxTree;
+import edu.nadn2tetris.ast.ClassTree;
+import edu.nadn2tetris.ast.statement.ReturnStatementTree;
+import edu.nadn2tetris.ast.term.ATermSyntaxTree;
+import edu.nadn2tetris.ast.term.IntegerConstantTree;
+import edu.nadn2tetris.ast.term.OperatorTree;
+import edu.nadn2tetris.ast.term.subroutine.SubroutineBodyTree;
+import edu.nadn2tetris.ast.term.subroutine.SubroutineDeclarationTree;
+import edu.nadn2tetris.common.NameTable;
+
+/**
+ * Builds trees which the recursive parser cannot read back, like thousands of nested parentheses
+ */
+public final class ExpressionTrees {
+    private ExpressionTrees() {}
+
+    /**
+     * ((1 + 1) + 1) + ... with the given amount of additions
+     */
+    public static ATermSyntaxTree leftDeep(int depth) {
+        ATermSyntaxTree expression = new IntegerConstantTree((short) 1);
+        for (int i = 0; i < depth; i++) {
+            final OperatorTree add = new OperatorTree(OperatorTree.Op.ADD);
+            add.left = expression;
+            add.right = new IntegerConstantTree((short) 1);
+            add.expression = true;
+            expression = add;
+        }
+
+        return expression;
+    }
+
+    /**
+     * class Main with function Main.main returning every expression in turn
+     */
+    public static ClassTree classWith(NameTable names, ATermSyntaxTree... expressions) {
+        final List<AbstractSyntaxTree> statements = new ArrayList<>();
+        for (ATermSyntaxTree expression : expressions) {
+            final ReturnStatementTree returnStatement = new ReturnStatementTree();
+            returnStatement.expression = expression;
+            statements.add(returnStatement);
+        }
+
+        final SubroutineDeclarationTree main = new SubroutineDeclarationTree();
+        main.subroutineType = SubroutineDeclarationTree.SubroutineType.FUNCTION;
+        main.name = "main";
+        main.nameId = names.intern("main");
+        main.subroutineBodyTree = new SubroutineBodyTree(statements);
+
+        final ClassTree classTree = new ClassTree();
+        classTree.className = "Main";
+        classTree.classNameId = names.intern("Main");
+        classTree.blocks = new ArrayList<>(List.of(main));
+
+        return classTree;
+    }
+}
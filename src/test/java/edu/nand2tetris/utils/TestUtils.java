@@ -4,6 +4,13 @@ import java.io.BufferedReader;
 import java.io.File;
 import java.io.FileReader;
 import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.HashMap;
+import java.util.Map;
+
+import edu.nadn2tetris.JackCompiler;
+import edu.nadn2tetris.utils.FileUtils;
 
 import org.junit.jupiter.api.Assertions;
 
@@ -20,4 +27,74 @@ public final class TestUtils {
             Assertions.assertEquals(first, second);
         }
     }
+
+    /**
+     * Compiles a single Main class to VM code with the given extra flags
+     */
+    public static String compileVm(String source, String... flags) throws IOException {
+        return compileVm(Map.of("Main", source), flags).get("Main");
+    }
+
+    /**
+     * Compiles classes given by name to one Hack assembly program with the given extra flags,
+     * OS functions are left to the traps of the emulator
+     */
+    public static String compileAsm(Map<String, String> sources, String... flags) throws IOException {
+        final Path srcDir = Files.createTempDirectory("jack-src");
+        final Path outDir = Files.createTempDirectory("jack-out");
+        try {
+            for (Map.Entry<String, String> source : sources.entrySet()) {
+                Files.writeString(srcDir.resolve(source.getKey() + ".jack"), source.getValue());
+            }
+
+            final String[] args = new String[flags.length + 5];
+            args[0] = srcDir.toString();
+            args[1] = outDir.toString();
+            args[2] = "--code";
+            args[3] = "--asm";
+            args[4] = "--os-traps";
+            System.arraycopy(flags, 0, args, 5, flags.length);
+            JackCompiler.main(args);
+
+            return Files.readString(outDir.resolve(srcDir.getFileName() + ".asm"));
+        } finally {
+            FileUtils.removeDir(srcDir);
+            FileUtils.removeDir(outDir);
+        }
+    }
+
+    /**
+     * Compiles classes given by name to VM code with the given extra flags
+     *
+     * @return VM code by class name, classes without output are missing
+     */
+    public static Map<String, String> compileVm(Map<String, String> sources, String... flags) throws IOException {
+        final Path srcDir = Files.createTempDirectory("jack-src");
+        final Path outDir = Files.createTempDirectory("jack-out");
+        try {
+            for (Map.Entry<String, String> source : sources.entrySet()) {
+                Files.writeString(srcDir.resolve(source.getKey() + ".jack"), source.getValue());
+            }
+
+            final String[] args = new String[flags.length + 3];
+            args[0] = srcDir.toString();
+            args[1] = outDir.toString();
+            args[2] = "--code";
+            System.arraycopy(flags, 0, args, 3, flags.length);
+            JackCompiler.main(args);
+
+            final Map<String, String> vm = new HashMap<>();
+            for (String className : sources.keySet()) {
+                final Path vmFile = outDir.resolve(className + ".vm");
+                if (Files.exists(vmFile)) {
+                    vm.put(className, Files.readString(vmFile));
+                }
+            }
+
+            return vm;
+        } finally {
+            FileUtils.removeDir(srcDir);
+            FileUtils.removeDir(outDir);
+        }
+    }
 }
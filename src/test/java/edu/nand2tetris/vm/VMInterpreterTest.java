@@ -0,0 +1,180 @@
+package edu.nand2tetris.vm;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.stream.Stream;
+
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+
+import edu.nadn2tetris.vm.VMInterpreter;
+import edu.nadn2tetris.vm.VMProgram;
+import edu.nand2tetris.utils.TestUtils;
+
+public final class VMInterpreterTest {
+    private static final Path PROGRAMS = Paths.get("src", "test", "resources", "src", "compiler");
+
+    @Test
+    public void testInstructions() {
+        final VMProgram program = VMProgram.parse(Map.of("Main", """
+                function Main.main 1
+                push constant 3
+                pop local 0
+                label L0
+                push local 0
+                push constant 0
+                eq
+                if-goto L1
+                push local 0
+                push constant 1
+                sub
+                pop local 0
+                goto L0
+                label L1
+                push constant 7
+                call Main.twice 1
+                return
+                function Main.twice 0
+                push argument 0
+                push argument 0
+                add
+                return
+                """));
+
+        final VMInterpreter.Result result = new VMInterpreter(program).run("Main.main");
+
+        Assertions.assertEquals(14, result.value);
+        Assertions.assertEquals(42, result.instructions);
+        Assertions.assertFalse(result.halted);
+    }
+
+    @Test
+    public void testComplexArrays() throws IOException {
+        final VMInterpreter.Result plain = run(PROGRAMS.resolve("ComplexArrays"));
+        final VMInterpreter.Result optimized = run(PROGRAMS.resolve("ComplexArrays"), "-O");
+
+        Assertions.assertTrue(plain.output.contains("Test 1: expected result: 5; actual result: 5\n"));
+        Assertions.assertTrue(plain.output.contains("Test 2: expected result: 40; actual result: 40\n"));
+        Assertions.assertEquals(plain.output, optimized.output);
+        Assertions.assertTrue(optimized.instructions < plain.instructions);
+    }
+
+    @Test
+    public void testConvertToBin() throws IOException {
+        final VMInterpreter.Result plain = run(PROGRAMS.resolve("ConvertToBin"));
+        final VMInterpreter.Result optimized = run(PROGRAMS.resolve("ConvertToBin"), "-O");
+
+        Assertions.assertEquals(0, plain.value);
+        Assertions.assertTrue(optimized.instructions < plain.instructions);
+    }
+
+    @Test
+    public void testOptimizedRecursion() throws IOException {
+        final Map<String, String> vm = TestUtils.compileVm(Map.of("Main", """
+                class Main {
+                    function int main() {
+                        return Main.gcd(1071, 462) + Main.sum(200, 0);
+                    }
+                    function int gcd(int a, int b) {
+                        if (b = 0) {
+                            return a;
+                        }
+                        return Main.gcd(b, a - ((a / b) * b));
+                    }
+                    function int sum(int n, int acc) {
+                        if (n = 0) {
+                            return acc;
+                        }
+                        return Main.sum(n - 1, acc + n);
+                    }
+                }
+                """), "-O");
+
+        Assertions.assertEquals(21 + 20100, new VMInterpreter(VMProgram.parse(vm)).run("Main.main").value);
+    }
+
+    @Test
+    public void testIntegerConditions() throws IOException {
+        final Map<String, String> sources = Map.of("Main", """
+                class Main {
+                    function int main() {
+                        var int i, x, sum;
+                        let i = 0;
+                        let sum = 0;
+                        while (i < 10) {
+                            let x = i & 1;
+                            if (x) {
+                                let sum = sum + i;
+                            }
+                            if (x = 0) {
+                                let sum = sum + 100;
+                            }
+                            if (i & 6) {
+                                let sum = sum + 1000;
+                            } else {
+                                let sum = sum - 1;
+                            }
+                            let i = i + 1;
+                        }
+                        let x = 5;
+                        while (x = 0) {
+                            let sum = sum + 10000;
+                        }
+                        while (x) {
+                            let x = x - 1;
+                            let sum = sum + 3;
+                        }
+                        return sum;
+                    }
+                }
+                """);
+
+        // odd i: 25, even i: 500, i & 6 for 6 values: 6000, else 4 times: -4, x counts down from 5: 15
+        final int expected = 25 + 500 + 6000 - 4 + 15;
+        for (String level : new String[]{"-O0", "-O1", "-O"}) {
+            final VMProgram program = VMProgram.parse(TestUtils.compileVm(sources, level));
+            Assertions.assertEquals(expected, new VMInterpreter(program, 100_000).run("Main.main").value, level);
+        }
+    }
+
+    @Test
+    public void testErrors() {
+        final VMProgram endless = VMProgram.parse(Map.of("Main", """
+                function Main.main 0
+                label L0
+                goto L0
+                """));
+        Assertions.assertThrows(IllegalStateException.class, () -> new VMInterpreter(endless, 1_000).run("Main.main"));
+
+        final VMProgram divide = VMProgram.parse(Map.of("Main", """
+                function Main.main 0
+                push constant 1
+                push constant 0
+                call Math.divide 2
+                return
+                """));
+        Assertions.assertThrows(IllegalStateException.class, () -> new VMInterpreter(divide).run("Main.main"));
+
+        Assertions.assertThrows(IllegalStateException.class, () -> VMProgram.parse(Map.of("Main", """
+                function Main.main 0
+                call Main.missing 0
+                return
+                """)));
+    }
+
+    private static VMInterpreter.Result run(Path dir, String... flags) throws IOException {
+        final Map<String, String> sources = new HashMap<>();
+        try (Stream<Path> files = Files.list(dir)) {
+            for (Path file : files.toList()) {
+                final String name = file.getFileName().toString();
+                sources.put(name.substring(0, name.length() - ".jack".length()), Files.readString(file));
+            }
+        }
+
+        return new VMInterpreter(VMProgram.parse(TestUtils.compileVm(sources, flags))).run("Main.main");
+    }
+}
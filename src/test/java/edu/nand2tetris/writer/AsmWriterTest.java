@@ -0,0 +1,114 @@
+package edu.nand2tetris.writer;
+
+import java.io.IOException;
+import java.io.StringWriter;
+
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+
+import edu.nadn2tetris.writer.AsmWriter;
+import edu.nadn2tetris.writer.Command;
+import edu.nadn2tetris.writer.Segment;
+
+public final class AsmWriterTest {
+
+    @Test
+    public void testFusedInstructions() throws IOException {
+        final StringWriter out = new StringWriter();
+        try (final AsmWriter writer = new AsmWriter(out, "Main")) {
+            writer.writeFunction("Main.loop", 1);
+            writer.writeLabel(0);
+            writer.writePush(Segment.ARGUMENT, (short) 0);
+            writer.writePush(Segment.CONSTANT, (short) 10);
+            writer.writeArithmetic(Command.LT);
+            writer.writeArithmetic(Command.NOT);
+            writer.writeIf(1);
+            writer.writePush(Segment.STATIC, (short) 2);
+            writer.writePop(Segment.LOCAL, (short) 0);
+            writer.writeGoto(0);
+            writer.writeLabel(1);
+            writer.writePush(Segment.LOCAL, (short) 0);
+            writer.writeReturn();
+        }
+
+        Assertions.assertEquals("""
+                (Main.loop)
+                @SP
+                M=M+1
+                A=M-1
+                M=0
+                (Main.loop$L0)
+                @ARG
+                A=M
+                D=M
+                @SP
+                M=M+1
+                A=M-1
+                M=D
+                @SP
+                AM=M-1
+                D=M
+                @Main.loop$C0
+                D;JLT
+                @10
+                D=D-A
+                (Main.loop$C0)
+                @Main.loop$L1
+                D;JGE
+                @Main.2
+                D=M
+                @LCL
+                A=M
+                M=D
+                @Main.loop$L0
+                0;JMP
+                (Main.loop$L1)
+                @LCL
+                A=M
+                D=M
+                @$RETURN_D
+                0;JMP
+                """, out.toString());
+    }
+
+    @Test
+    public void testPushedComparison() throws IOException {
+        final StringWriter out = new StringWriter();
+        try (final AsmWriter writer = new AsmWriter(out, "Main")) {
+            writer.writeFunction("Main.isZero", 0);
+            writer.writePush(Segment.ARGUMENT, (short) 5);
+            writer.writePush(Segment.CONSTANT, (short) 0);
+            writer.writeArithmetic(Command.EQ);
+            writer.writeReturn();
+        }
+
+        Assertions.assertEquals("""
+                (Main.isZero)
+                @ARG
+                D=M
+                @5
+                A=D+A
+                D=M
+                @SP
+                M=M+1
+                A=M-1
+                M=D
+                @SP
+                AM=M-1
+                D=M
+                @SP
+                A=M
+                M=-1
+                @Main.isZero$T0
+                D;JEQ
+                @SP
+                A=M
+                M=0
+                (Main.isZero$T0)
+                @SP
+                M=M+1
+                @$RETURN
+                0;JMP
+                """, out.toString());
+    }
+}
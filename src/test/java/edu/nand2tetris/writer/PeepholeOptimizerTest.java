@@ -0,0 +1,87 @@
+package edu.nand2tetris.writer;
+
+import java.io.IOException;
+import java.io.StringWriter;
+import java.util.function.Consumer;
+
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+
+import edu.nadn2tetris.writer.CodeWriter;
+import edu.nadn2tetris.writer.Command;
+import edu.nadn2tetris.writer.PeepholeOptimizer;
+import edu.nadn2tetris.writer.Segment;
+import edu.nadn2tetris.writer.VMWriter;
+
+public final class PeepholeOptimizerTest {
+
+    @Test
+    public void testPushPop() throws IOException {
+        Assertions.assertEquals("return\n", optimize(w -> {
+            w.writePush(Segment.LOCAL, (short) 1);
+            w.writePop(Segment.LOCAL, (short) 1);
+            w.writeReturn();
+        }));
+        Assertions.assertEquals("push local 1\npop local 2\n", optimize(w -> {
+            w.writePush(Segment.LOCAL, (short) 1);
+            w.writePop(Segment.LOCAL, (short) 2);
+        }));
+    }
+
+    @Test
+    public void testNegationsAndNeutralOperands() throws IOException {
+        Assertions.assertEquals("push argument 0\nreturn\n", optimize(w -> {
+            w.writePush(Segment.ARGUMENT, (short) 0);
+            w.writeArithmetic(Command.NOT);
+            w.writeArithmetic(Command.NOT);
+            w.writePush(Segment.CONSTANT, (short) 0);
+            w.writeArithmetic(Command.ADD);
+            w.writePush(Segment.CONSTANT, (short) 1);
+            w.writeCall("Math.multiply", 2);
+            w.writeReturn();
+        }));
+    }
+
+    @Test
+    public void testBranches() throws IOException {
+        Assertions.assertEquals("label L0\ngoto L0\nlabel L1\n", optimize(w -> {
+            w.writeLabel(0);
+            w.writePush(Segment.CONSTANT, (short) 0);
+            w.writeIf(1); // never taken
+            w.writePush(Segment.CONSTANT, (short) 0);
+            w.writeArithmetic(Command.NOT);
+            w.writeIf(0); // always taken
+            w.writePush(Segment.LOCAL, (short) 0); // unreachable
+            w.writeGoto(1);
+            w.writeLabel(1);
+        }));
+
+        Assertions.assertEquals("push local 0\npush local 1\nlt\nif-goto L1\nlabel L0\n", optimize(w -> {
+            w.writePush(Segment.LOCAL, (short) 0);
+            w.writePush(Segment.LOCAL, (short) 1);
+            w.writeArithmetic(Command.LT);
+            w.writeArithmetic(Command.NOT);
+            w.writeIf(0);
+            w.writeGoto(1);
+            w.writeLabel(0);
+        }));
+
+        // not of an arbitrary value is not a boolean negation
+        Assertions.assertEquals("push local 0\nnot\nif-goto L0\ngoto L1\nlabel L0\n", optimize(w -> {
+            w.writePush(Segment.LOCAL, (short) 0);
+            w.writeArithmetic(Command.NOT);
+            w.writeIf(0);
+            w.writeGoto(1);
+            w.writeLabel(0);
+        }));
+    }
+
+    private static String optimize(Consumer<CodeWriter> code) throws IOException {
+        final StringWriter out = new StringWriter();
+        try (final PeepholeOptimizer optimizer = new PeepholeOptimizer(new VMWriter(out))) {
+            code.accept(optimizer);
+        }
+
+        return out.toString();
+    }
+}
@@ -0,0 +1,59 @@
+package edu.nand2tetris.writer;
+
+import java.io.IOException;
+import java.io.StringWriter;
+
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+
+import edu.nadn2tetris.writer.Command;
+import edu.nadn2tetris.writer.Segment;
+import edu.nadn2tetris.writer.VMWriter;
+
+public final class VMWriterTest {
+
+    @Test
+    public void testInstructions() throws IOException {
+        final StringWriter out = new StringWriter();
+        try (final VMWriter writer = new VMWriter(out)) {
+            writer.writeFunction("Main.main", 2);
+            writer.writePush(Segment.CONSTANT, (short) 32767);
+            writer.writePop(Segment.LOCAL, (short) 0);
+            writer.writeArithmetic(Command.NOT);
+            writer.writeLabel(0);
+            writer.writeIf(0);
+            writer.writeGoto(1);
+            writer.writeCall("Math.multiply", 2);
+            writer.writeReturn();
+        }
+
+        Assertions.assertEquals("""
+                function Main.main 2
+                push constant 32767
+                pop local 0
+                not
+                label L0
+                if-goto L0
+                goto L1
+                call Math.multiply 2
+                return
+                """, out.toString());
+    }
+
+    @Test
+    public void testChunks() throws IOException {
+        final String longLabel = "L".repeat(20_000);
+        final StringBuilder expected = new StringBuilder();
+        final StringWriter out = new StringWriter();
+        try (final VMWriter writer = new VMWriter(out)) {
+            for (short i = 0; i < 5_000; i++) {
+                writer.writePush(Segment.TEMP, i);
+                expected.append("push temp ").append(i).append('\n');
+            }
+            writer.writeCall(longLabel, 0);
+            expected.append("call ").append(longLabel).append(" 0\n");
+        }
+
+        Assertions.assertEquals(expected.toString(), out.toString());
+    }
+}